@@ -0,0 +1,252 @@
+package de.m_marvin.logicsim.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import de.m_marvin.logicsim.logic.Circuit;
+import de.m_marvin.logicsim.logic.Component;
+import de.m_marvin.logicsim.logic.nodes.Node;
+import de.m_marvin.logicsim.logic.parts.BoolInputComponent;
+import de.m_marvin.logicsim.logic.parts.BoolOutputComponent;
+import de.m_marvin.logicsim.logic.parts.BusInputComponent;
+import de.m_marvin.logicsim.logic.parts.BusOutputComponent;
+import de.m_marvin.logicsim.logic.parts.LogicGateComponent.AndGateComponent;
+import de.m_marvin.logicsim.logic.parts.LogicGateComponent.OrGateComponent;
+import de.m_marvin.logicsim.logic.parts.LogicGateComponent.XorGateComponent;
+import de.m_marvin.logicsim.logic.parts.MemoryComponent;
+import de.m_marvin.logicsim.logic.parts.NotGateComponent;
+import de.m_marvin.logicsim.logic.parts.SubCircuitComponent;
+import de.m_marvin.logicsim.logic.wires.ConnectorWire;
+import de.m_marvin.univec.impl.Vec2i;
+
+/**
+ * Builds circuits for the benchmarks and the unit tests programmatically, so that their size can be scaled freely.
+ * The components are placed on a grid with enough space between them, so that only the nodes connected by wires end up in the same network.
+ *
+ * @author Marvin K.
+ *
+ */
+public class SyntheticCircuits {
+
+	public static final int GRID_SIZE = 200;
+
+	public static enum CircuitType {
+		GATE_CHAIN(SyntheticCircuits::gateChain),
+		RIPPLE_CARRY_ADDER(SyntheticCircuits::rippleCarryAdder),
+		MEMORY_BANK(SyntheticCircuits::memoryBank),
+		NESTED_SUB_CIRCUITS(SyntheticCircuits::nestedSubCircuits);
+
+		private final Function<Integer, SyntheticCircuit> builder;
+
+		private CircuitType(Function<Integer, SyntheticCircuit> builder) {
+			this.builder = builder;
+		}
+
+		public SyntheticCircuit build(int size) {
+			return this.builder.apply(size);
+		}
+	}
+
+	/**
+	 * An generated circuit together with the input components that drive it.
+	 */
+	public static class SyntheticCircuit {
+
+		public final Circuit circuit;
+		public final List<BoolInputComponent> boolInputs = new ArrayList<>();
+		public final List<BusInputComponent> busInputs = new ArrayList<>();
+
+		public SyntheticCircuit(Circuit circuit) {
+			this.circuit = circuit;
+		}
+
+		/**
+		 * Changes the input values depending on the tick number, so that every tick causes some activity in the circuit.
+		 * The bus inputs only change every 16 ticks since rewriting their lane cache is not part of the simulation itself.
+		 */
+		public void stimulate(int tick) {
+			for (int i = 0; i < this.boolInputs.size(); i++) {
+				this.boolInputs.get(i).setState(((tick >>> (i & 15)) & 1) != 0);
+			}
+			if ((tick & 15) == 0) {
+				for (int i = 0; i < this.busInputs.size(); i++) {
+					this.busInputs.get(i).setValue((tick >>> 4) + i);
+				}
+			}
+		}
+
+		/**
+		 * Returns the circuit and all its sub-circuits.
+		 */
+		public List<Circuit> getAllCircuits() {
+			List<Circuit> circuits = new ArrayList<>();
+			collectCircuits(this.circuit, circuits);
+			return circuits;
+		}
+
+		protected static void collectCircuits(Circuit circuit, List<Circuit> circuits) {
+			circuits.add(circuit);
+			for (Component component : circuit.getComponents()) {
+				if (component instanceof SubCircuitComponent subCircuit) collectCircuits(subCircuit.getSubCircuit(), circuits);
+			}
+		}
+
+	}
+
+	public static <T extends Component> T place(T component, int column, int row) {
+		component.setVisualPosition(new Vec2i(column * GRID_SIZE, row * GRID_SIZE));
+		component.getCircuit().add(component);
+		return component;
+	}
+
+	public static ConnectorWire wire(Node nodeA, Node nodeB) {
+		ConnectorWire wire = new ConnectorWire(nodeA.getCircuit());
+		wire.setPosA(nodeA.getVisualPosition());
+		wire.setPosB(nodeB.getVisualPosition());
+		nodeA.getCircuit().add(wire);
+		return wire;
+	}
+
+	/**
+	 * Connects all components the same way as the circuit serializer does after loading an circuit.
+	 */
+	public static void connectAll(Circuit circuit) {
+		circuit.connectAll(circuit.getComponents());
+	}
+
+	/**
+	 * An input followed by an chain of alternating AND and OR gates, the second input of each gate is tied to the input.
+	 */
+	public static SyntheticCircuit gateChain(int length) {
+		return gateChain(length, true);
+	}
+
+	public static SyntheticCircuit gateChain(int length, boolean connect) {
+		SyntheticCircuit synthetic = new SyntheticCircuit(new Circuit());
+		Circuit circuit = synthetic.circuit;
+
+		BoolInputComponent input = place(new BoolInputComponent(circuit), 0, 0);
+		synthetic.boolInputs.add(input);
+
+		Node last = input.getOutputs().get(0);
+		for (int i = 0; i < length; i++) {
+			Component gate = place(i % 2 == 0 ? new AndGateComponent(circuit) : new OrGateComponent(circuit), i + 1, 0);
+			wire(last, gate.getInputs().get(0));
+			wire(input.getOutputs().get(0), gate.getInputs().get(1));
+			last = gate.getOutputs().get(0);
+		}
+		wire(last, place(new BoolOutputComponent(circuit), length + 1, 0).getInputs().get(0));
+
+		if (connect) connectAll(circuit);
+		return synthetic;
+	}
+
+	/**
+	 * An adder built from single full adders, each made of two XOR, two AND and one OR gate.
+	 */
+	public static SyntheticCircuit rippleCarryAdder(int bits) {
+		SyntheticCircuit synthetic = new SyntheticCircuit(new Circuit());
+		Circuit circuit = synthetic.circuit;
+
+		Node carry = null;
+		for (int i = 0; i < bits; i++) {
+			BoolInputComponent inputA = place(new BoolInputComponent(circuit), 0, i * 2);
+			BoolInputComponent inputB = place(new BoolInputComponent(circuit), 0, i * 2 + 1);
+			synthetic.boolInputs.add(inputA);
+			synthetic.boolInputs.add(inputB);
+
+			XorGateComponent halfSum = place(new XorGateComponent(circuit), 1, i * 2);
+			AndGateComponent halfCarry = place(new AndGateComponent(circuit), 1, i * 2 + 1);
+			wire(inputA.getOutputs().get(0), halfSum.getInputs().get(0));
+			wire(inputB.getOutputs().get(0), halfSum.getInputs().get(1));
+			wire(inputA.getOutputs().get(0), halfCarry.getInputs().get(0));
+			wire(inputB.getOutputs().get(0), halfCarry.getInputs().get(1));
+
+			BoolOutputComponent sum = place(new BoolOutputComponent(circuit), 4, i * 2);
+			if (carry == null) {
+				wire(halfSum.getOutputs().get(0), sum.getInputs().get(0));
+				carry = halfCarry.getOutputs().get(0);
+				continue;
+			}
+
+			XorGateComponent fullSum = place(new XorGateComponent(circuit), 2, i * 2);
+			AndGateComponent fullCarry = place(new AndGateComponent(circuit), 2, i * 2 + 1);
+			OrGateComponent carryOut = place(new OrGateComponent(circuit), 3, i * 2 + 1);
+			wire(halfSum.getOutputs().get(0), fullSum.getInputs().get(0));
+			wire(carry, fullSum.getInputs().get(1));
+			wire(halfSum.getOutputs().get(0), fullCarry.getInputs().get(0));
+			wire(carry, fullCarry.getInputs().get(1));
+			wire(halfCarry.getOutputs().get(0), carryOut.getInputs().get(0));
+			wire(fullCarry.getOutputs().get(0), carryOut.getInputs().get(1));
+			wire(fullSum.getOutputs().get(0), sum.getInputs().get(0));
+			carry = carryOut.getOutputs().get(0);
+		}
+		if (carry != null) wire(carry, place(new BoolOutputComponent(circuit), 4, bits * 2).getInputs().get(0));
+
+		connectAll(circuit);
+		return synthetic;
+	}
+
+	/**
+	 * Memory components sharing the same address and data bus, which are alternately written and read.
+	 */
+	public static SyntheticCircuit memoryBank(int memoryCount) {
+		SyntheticCircuit synthetic = new SyntheticCircuit(new Circuit());
+		Circuit circuit = synthetic.circuit;
+
+		BusInputComponent address = place(new BusInputComponent(circuit), 0, 0);
+		BusInputComponent data = place(new BusInputComponent(circuit), 0, 1);
+		BoolInputComponent write = place(new BoolInputComponent(circuit), 0, 2);
+		BoolInputComponent read = place(new BoolInputComponent(circuit), 0, 3);
+		address.setBitCount(5);
+		synthetic.busInputs.add(address);
+		synthetic.busInputs.add(data);
+		synthetic.boolInputs.add(write);
+		synthetic.boolInputs.add(read);
+
+		for (int i = 0; i < memoryCount; i++) {
+			MemoryComponent memory = place(new MemoryComponent(circuit), 1, i);
+			wire(address.getOutputs().get(0), memory.getInputs().get(0));
+			wire(data.getOutputs().get(0), memory.getInputs().get(1));
+			wire(write.getOutputs().get(0), memory.getInputs().get(2));
+			wire(read.getOutputs().get(0), memory.getInputs().get(3));
+			wire(memory.getOutputs().get(0), place(new BusOutputComponent(circuit), 2, i).getInputs().get(0));
+		}
+
+		connectAll(circuit);
+		return synthetic;
+	}
+
+	/**
+	 * Sub-circuits nested into each other, every level inverts the signal once before passing it to the next level.
+	 */
+	public static SyntheticCircuit nestedSubCircuits(int depth) {
+		Circuit inner = null;
+		BoolInputComponent input = null;
+		for (int level = 0; level <= depth; level++) {
+			Circuit circuit = new Circuit();
+			input = place(new BoolInputComponent(circuit), 0, 0);
+			input.setLabel("in");
+			NotGateComponent not = place(new NotGateComponent(circuit), 1, 0);
+			BoolOutputComponent output = place(new BoolOutputComponent(circuit), 3, 0);
+			output.setLabel("out");
+			wire(input.getOutputs().get(0), not.getInputs().get(0));
+			if (inner != null) {
+				SubCircuitComponent subCircuit = new SubCircuitComponent(circuit);
+				subCircuit.setSubCircuit(inner);
+				place(subCircuit, 2, 0);
+				wire(not.getOutputs().get(0), subCircuit.getInputs().get(0));
+				wire(subCircuit.getOutputs().get(0), output.getInputs().get(0));
+			} else {
+				wire(not.getOutputs().get(0), output.getInputs().get(0));
+			}
+			connectAll(circuit);
+			inner = circuit;
+		}
+		SyntheticCircuit synthetic = new SyntheticCircuit(inner);
+		synthetic.boolInputs.add(input);
+		return synthetic;
+	}
+
+}
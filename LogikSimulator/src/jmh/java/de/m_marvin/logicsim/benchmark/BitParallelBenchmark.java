@@ -0,0 +1,57 @@
+package de.m_marvin.logicsim.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.m_marvin.logicsim.logic.simulator.BitParallelSimulator;
+import de.m_marvin.logicsim.logic.simulator.BitParallelSimulator.BatchResult;
+
+/**
+ * Measures the number of input vectors per second the {@link BitParallelSimulator} can test on an ripple carry adder.
+ * One operation is one batch of 64 vectors, simulated until all outputs have settled.
+ *
+ * @author Marvin K.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BitParallelBenchmark {
+
+	@Param({"16", "256"})
+	public int size;
+
+	protected BitParallelSimulator simulator;
+	protected long[][] vectors;
+
+	@Setup
+	public void setup() {
+		this.simulator = new BitParallelSimulator(SyntheticCircuits.rippleCarryAdder(this.size).circuit);
+		Random random = new Random(0);
+		this.vectors = new long[BitParallelSimulator.VECTORS_PER_BATCH][this.simulator.getInputs().size()];
+		for (long[] vector : this.vectors) {
+			for (int i = 0; i < vector.length; i++) vector[i] = random.nextInt(2);
+		}
+	}
+
+	@Benchmark
+	public BatchResult simulateBatch() {
+		return this.simulator.simulate(this.vectors);
+	}
+
+}
@@ -0,0 +1,105 @@
+package de.m_marvin.logicsim.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.m_marvin.logicsim.benchmark.SyntheticCircuits.SyntheticCircuit;
+import de.m_marvin.logicsim.logic.nodes.InputNode;
+import de.m_marvin.logicsim.logic.parts.MemoryComponent;
+import de.m_marvin.logicsim.logic.simulator.AsyncArrayList;
+import de.m_marvin.logicsim.logic.simulator.CircuitProcessor;
+import de.m_marvin.logicsim.logic.simulator.CircuitProcessor.ExecutionBackend;
+import de.m_marvin.logicsim.logic.simulator.FastAsyncMap;
+
+/**
+ * Measures the collections used by the simulation and reading bus values from input nodes.
+ *
+ * @author Marvin K.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CollectionBenchmark {
+
+	@Param({"16", "256"})
+	public int size;
+
+	protected FastAsyncMap<Integer, Integer> map;
+	protected AsyncArrayList<Integer> list;
+	protected Integer[] keys;
+	protected int index;
+
+	protected CircuitProcessor processor;
+	protected InputNode busInput;
+
+	@Setup
+	public void setup() {
+		this.map = new FastAsyncMap<>();
+		this.list = new AsyncArrayList<>();
+		this.keys = new Integer[this.size];
+		for (int i = 0; i < this.size; i++) {
+			this.keys[i] = i;
+			this.map.put(this.keys[i], i);
+			this.list.add(this.keys[i]);
+		}
+
+		SyntheticCircuit memoryBank = SyntheticCircuits.memoryBank(1);
+		this.processor = new CircuitProcessor(ExecutionBackend.SYNCHRONOUS);
+		this.processor.addProcess(null, memoryBank.circuit);
+		this.processor.start();
+		for (int tick = 0; tick < 4; tick++) {
+			memoryBank.stimulate(tick * 16);
+			this.processor.tick();
+		}
+		this.busInput = memoryBank.circuit.getComponents(MemoryComponent.class::isInstance).get(0).getInputs().get(0);
+	}
+
+	@Benchmark
+	public Integer fastAsyncMapGet() {
+		return this.map.get(this.keys[this.index++ % this.size]);
+	}
+
+	@Benchmark
+	public Integer fastAsyncMapPut() {
+		Integer key = this.keys[this.index++ % this.size];
+		return this.map.put(key, key);
+	}
+
+	@Benchmark
+	public void asyncArrayListIterate(Blackhole blackhole) {
+		for (Integer element : this.list) blackhole.consume(element);
+	}
+
+	@Benchmark
+	public Integer asyncArrayListGet() {
+		return this.list.get(this.index++ % this.size);
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.processor.terminate();
+	}
+
+	@Benchmark
+	public int readBusValue() {
+		return this.busInput.readBusValue(MemoryComponent.ADDRESS_BUS_WIDTH);
+	}
+
+}
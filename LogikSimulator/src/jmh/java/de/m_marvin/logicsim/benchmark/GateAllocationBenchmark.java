@@ -0,0 +1,83 @@
+package de.m_marvin.logicsim.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.management.ThreadMXBean;
+
+import de.m_marvin.logicsim.benchmark.SyntheticCircuits.SyntheticCircuit;
+import de.m_marvin.logicsim.logic.Circuit;
+import de.m_marvin.logicsim.logic.Circuit.UpdateMode;
+
+/**
+ * Checks that an tick of an circuit made only of gates does not allocate any memory once the simulation is warmed up.
+ * One operation is one tick of an gate chain, executed by an synchronous circuit processor, the input changes every tick so every gate changes its output.
+ * The allocated bytes of the benchmark thread are measured over each iteration, the run fails if the last measured iteration allocated more than {@link #ALLOCATION_ALLOWANCE} bytes in total.
+ * Comparing the total instead of an average per tick also catches allocations that happen less than once per tick.
+ *
+ * @author Marvin K.
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class GateAllocationBenchmark extends GateChainBenchmark {
+
+	/** The bytes the benchmark harness may allocate on the benchmark thread during one iteration, independent of the number of ticks */
+	public static final long ALLOCATION_ALLOWANCE = 4096;
+
+	@Param({"FULL_SWEEP", "EVENT_DRIVEN", "COMPILED"})
+	public UpdateMode updateMode;
+
+	@Param({"256"})
+	public int size;
+
+	protected final ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+	protected long iterationTicks;
+	protected long iterationStartBytes;
+	protected long lastAllocatedBytes;
+
+	@Override
+	protected SyntheticCircuit buildCircuit() {
+		SyntheticCircuit synthetic = SyntheticCircuits.gateChain(this.size);
+		for (Circuit circuit : synthetic.getAllCircuits()) circuit.setUpdateMode(this.updateMode);
+		return synthetic;
+	}
+
+	@Setup(Level.Iteration)
+	public void startIteration() {
+		this.iterationTicks = 0;
+		this.iterationStartBytes = this.threadBean.getCurrentThreadAllocatedBytes();
+	}
+
+	@TearDown(Level.Iteration)
+	public void finishIteration() {
+		this.lastAllocatedBytes = this.threadBean.getCurrentThreadAllocatedBytes() - this.iterationStartBytes;
+	}
+
+	@Override
+	protected void tearDownSimulation() {
+		if (this.lastAllocatedBytes > ALLOCATION_ALLOWANCE) throw new IllegalStateException("Gate circuit allocated " + this.lastAllocatedBytes + " bytes in " + this.iterationTicks + " ticks in the " + this.updateMode + " mode!");
+	}
+
+	@Benchmark
+	public void tick() {
+		this.iterationTicks++;
+		stimulatedTick();
+	}
+
+}
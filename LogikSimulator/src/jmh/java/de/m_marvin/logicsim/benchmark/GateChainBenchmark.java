@@ -0,0 +1,66 @@
+package de.m_marvin.logicsim.benchmark;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import de.m_marvin.logicsim.benchmark.SyntheticCircuits.SyntheticCircuit;
+import de.m_marvin.logicsim.logic.simulator.CircuitProcessor;
+import de.m_marvin.logicsim.logic.simulator.CircuitProcessor.ExecutionBackend;
+
+/**
+ * Base of the benchmarks that simulate an synthetic circuit with an synchronous circuit processor, the ticks are executed on the benchmark thread.
+ * The benchmarks build the circuit and can prepare the simulation after the circuit was added to the processor.
+ *
+ * @author Marvin K.
+ *
+ */
+@State(Scope.Thread)
+public abstract class GateChainBenchmark {
+
+	protected SyntheticCircuit synthetic;
+	protected CircuitProcessor processor;
+	protected int tick;
+
+	/**
+	 * Builds the simulated circuit, called once before the circuit is added to the processor.
+	 */
+	protected abstract SyntheticCircuit buildCircuit();
+
+	/**
+	 * Called after the circuit was added to the processor and the simulation was started.
+	 */
+	protected void setupSimulation() throws IOException {}
+
+	/**
+	 * Called after the processor was terminated.
+	 */
+	protected void tearDownSimulation() {}
+
+	@Setup
+	public void setup() throws IOException {
+		this.synthetic = buildCircuit();
+		this.processor = new CircuitProcessor(ExecutionBackend.SYNCHRONOUS);
+		this.processor.addProcess(null, this.synthetic.circuit);
+		this.processor.start();
+		setupSimulation();
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.processor.terminate();
+		tearDownSimulation();
+	}
+
+	/**
+	 * Changes the inputs of the circuit and executes one tick.
+	 */
+	protected void stimulatedTick() {
+		this.synthetic.stimulate(this.tick++);
+		this.processor.tick();
+	}
+
+}
@@ -0,0 +1,59 @@
+package de.m_marvin.logicsim.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.m_marvin.logicsim.benchmark.SyntheticCircuits.SyntheticCircuit;
+import de.m_marvin.logicsim.logic.Circuit;
+import de.m_marvin.logicsim.logic.Circuit.UpdateMode;
+import de.m_marvin.logicsim.logic.simulator.NetHistory;
+
+/**
+ * Measures the time of an tick with and without recording the changes of the nets into an {@link NetHistory}.
+ * One operation is one tick of an gate chain, executed by an synchronous circuit processor.
+ *
+ * @author Marvin K.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HistoryBenchmark extends GateChainBenchmark {
+
+	@Param({"FULL_SWEEP", "EVENT_DRIVEN", "COMPILED"})
+	public UpdateMode updateMode;
+
+	@Param({"1000", "10000"})
+	public int size;
+
+	@Param({"false", "true"})
+	public boolean recordHistory;
+
+	@Override
+	protected SyntheticCircuit buildCircuit() {
+		SyntheticCircuit synthetic = SyntheticCircuits.gateChain(this.size);
+		for (Circuit circuit : synthetic.getAllCircuits()) circuit.setUpdateMode(this.updateMode);
+		return synthetic;
+	}
+
+	@Override
+	protected void setupSimulation() {
+		this.processor.setRecordHistory(this.synthetic.circuit, this.recordHistory);
+	}
+
+	@Benchmark
+	public void tick() {
+		stimulatedTick();
+	}
+
+}
@@ -0,0 +1,90 @@
+package de.m_marvin.logicsim.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.m_marvin.logicsim.logic.Circuit;
+import de.m_marvin.logicsim.logic.Component;
+import de.m_marvin.logicsim.logic.parts.LogicGateComponent;
+
+/**
+ * Measures the cost of {@link Circuit#reconnect(boolean, Component...)}, which runs every time a component is placed, moved or deleted in the editor.
+ *
+ * @author Marvin K.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReconnectBenchmark {
+
+	@State(Scope.Thread)
+	public static class ConnectedCircuit {
+
+		@Param({"64", "512"})
+		public int size;
+
+		protected Circuit circuit;
+		protected Component component;
+
+		@Setup
+		public void setup() {
+			this.circuit = SyntheticCircuits.gateChain(this.size).circuit;
+			List<Component> gates = this.circuit.getComponents(LogicGateComponent.class::isInstance);
+			this.component = gates.get(gates.size() / 2);
+		}
+
+	}
+
+	@State(Scope.Thread)
+	public static class UnconnectedCircuit {
+
+		@Param({"64", "512"})
+		public int size;
+
+		protected Circuit circuit;
+
+		@Setup(Level.Invocation)
+		public void setup() {
+			this.circuit = SyntheticCircuits.gateChain(this.size, false).circuit;
+		}
+
+	}
+
+	/**
+	 * Disconnects and connects again a single gate in the middle of the circuit, like moving it in the editor.
+	 */
+	@Benchmark
+	public void reconnectComponent(ConnectedCircuit state) {
+		state.circuit.reconnect(true, state.component);
+		state.circuit.reconnect(false, state.component);
+	}
+
+	/**
+	 * Connects all components of an freshly built circuit, like after loading it from a file.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Measurement(iterations = 10)
+	public Circuit connectCircuit(UnconnectedCircuit state) {
+		SyntheticCircuits.connectAll(state.circuit);
+		return state.circuit;
+	}
+
+}
@@ -0,0 +1,82 @@
+package de.m_marvin.logicsim.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.m_marvin.logicsim.benchmark.SyntheticCircuits.CircuitType;
+import de.m_marvin.logicsim.benchmark.SyntheticCircuits.SyntheticCircuit;
+import de.m_marvin.logicsim.logic.Circuit;
+import de.m_marvin.logicsim.logic.Circuit.UpdateMode;
+import de.m_marvin.logicsim.logic.simulator.CircuitProcessor;
+import de.m_marvin.logicsim.logic.simulator.CircuitProcessor.ExecutionBackend;
+
+/**
+ * Measures the number of simulated ticks per second of the synthetic circuits.
+ * One operation is one tick of the whole circuit hierarchy, executed by an synchronous circuit processor.
+ * Running with the gc profiler (enabled in the build script) also reports the allocated bytes per tick as "gc.alloc.rate.norm".
+ *
+ * @author Marvin K.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimulationBenchmark {
+
+	@Param({"GATE_CHAIN", "RIPPLE_CARRY_ADDER", "MEMORY_BANK", "NESTED_SUB_CIRCUITS"})
+	public CircuitType circuitType;
+
+	@Param({"16", "256"})
+	public int size;
+
+	@Param({"FULL_SWEEP", "EVENT_DRIVEN", "COMPILED"})
+	public UpdateMode updateMode;
+
+	@Param({"false", "true"})
+	public boolean flattenSubCircuits;
+
+	protected SyntheticCircuit synthetic;
+	protected CircuitProcessor processor;
+	protected int tick;
+
+	@Setup
+	public void setup() {
+		this.synthetic = this.circuitType.build(this.size);
+		for (Circuit circuit : this.synthetic.getAllCircuits()) circuit.setUpdateMode(this.updateMode);
+
+		this.processor = new CircuitProcessor(ExecutionBackend.SYNCHRONOUS);
+		this.processor.setFlattenSubCircuits(this.flattenSubCircuits);
+		this.processor.addProcess(null, this.synthetic.circuit);
+		this.processor.start();
+
+		// The sub-circuit processes get registered while simulating the first ticks
+		for (int i = 0; i < 4; i++) this.processor.tick();
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.processor.terminate();
+	}
+
+	@Benchmark
+	public void tick() {
+		this.synthetic.stimulate(this.tick++);
+		this.processor.tick();
+	}
+
+}
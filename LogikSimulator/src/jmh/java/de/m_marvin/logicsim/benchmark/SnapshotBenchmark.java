@@ -0,0 +1,57 @@
+package de.m_marvin.logicsim.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.m_marvin.logicsim.benchmark.SyntheticCircuits.SyntheticCircuit;
+import de.m_marvin.logicsim.logic.simulator.SimulationSnapshot;
+
+/**
+ * Measures how long it takes to capture and restore an {@link SimulationSnapshot} of an simulated circuit.
+ * The largest gate chain has about 100k nets.
+ *
+ * @author Marvin K.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnapshotBenchmark extends GateChainBenchmark {
+
+	@Param({"1000", "100000"})
+	public int size;
+
+	protected byte[] snapshot;
+
+	@Override
+	protected SyntheticCircuit buildCircuit() {
+		return SyntheticCircuits.gateChain(this.size);
+	}
+
+	@Override
+	protected void setupSimulation() {
+		for (int i = 0; i < 64; i++) stimulatedTick();
+		this.snapshot = this.processor.captureSnapshot();
+	}
+
+	@Benchmark
+	public byte[] captureSnapshot() {
+		return this.processor.captureSnapshot();
+	}
+
+	@Benchmark
+	public void restoreSnapshot() {
+		this.processor.restoreSnapshot(this.snapshot);
+	}
+
+}
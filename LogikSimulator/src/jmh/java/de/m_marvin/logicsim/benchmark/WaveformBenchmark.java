@@ -0,0 +1,72 @@
+package de.m_marvin.logicsim.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.m_marvin.logicsim.benchmark.SyntheticCircuits.SyntheticCircuit;
+import de.m_marvin.logicsim.logic.Component;
+import de.m_marvin.logicsim.logic.simulator.WaveformRecorder;
+import de.m_marvin.logicsim.logic.simulator.WaveformRecorder.Probe;
+
+/**
+ * Measures the time of an tick with and without writing the probed nets into an waveform file by an {@link WaveformRecorder}.
+ * One operation is one tick of an gate chain, executed by an synchronous circuit processor, the output of every tenth gate is probed.
+ *
+ * @author Marvin K.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WaveformBenchmark extends GateChainBenchmark {
+
+	@Param({"1000"})
+	public int size;
+
+	@Param({"false", "true"})
+	public boolean recordWaveform;
+
+	protected File waveformFile;
+
+	@Override
+	protected SyntheticCircuit buildCircuit() {
+		SyntheticCircuit synthetic = SyntheticCircuits.gateChain(this.size);
+		int componentNr = 0;
+		for (Component component : synthetic.circuit.getComponents()) {
+			if (componentNr++ % 10 != 0 || component.getOutputs().isEmpty()) continue;
+			synthetic.circuit.addProbe(new Probe(component.getOutputs().get(0), component.getOutputs().get(0).getLaneTag(), 1));
+		}
+		return synthetic;
+	}
+
+	@Override
+	protected void setupSimulation() throws IOException {
+		if (this.recordWaveform) {
+			this.waveformFile = File.createTempFile("waveform", ".vcd");
+			this.processor.startWaveformRecording(this.synthetic.circuit, this.waveformFile);
+		}
+	}
+
+	@Override
+	protected void tearDownSimulation() {
+		if (this.waveformFile != null) this.waveformFile.delete();
+	}
+
+	@Benchmark
+	public void tick() {
+		stimulatedTick();
+	}
+
+}
@@ -0,0 +1,325 @@
+package de.m_marvin.logicsim;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.m_marvin.commandlineparser.CommandLineParser;
+import de.m_marvin.logicsim.logic.Circuit;
+import de.m_marvin.logicsim.logic.Component;
+import de.m_marvin.logicsim.logic.parts.BoolInputComponent;
+import de.m_marvin.logicsim.logic.parts.BoolOutputComponent;
+import de.m_marvin.logicsim.logic.parts.BusInputComponent;
+import de.m_marvin.logicsim.logic.parts.BusOutputComponent;
+import de.m_marvin.logicsim.logic.parts.SubCircuitComponent;
+import de.m_marvin.logicsim.logic.simulator.BitParallelSimulator;
+import de.m_marvin.logicsim.logic.simulator.BitParallelSimulator.BatchResult;
+import de.m_marvin.logicsim.logic.simulator.CircuitProcessor;
+import de.m_marvin.logicsim.logic.simulator.CircuitProcessor.ExecutionBackend;
+import de.m_marvin.logicsim.logic.simulator.SettleDetector.OscillatingNet;
+import de.m_marvin.logicsim.logic.simulator.SettleDetector.SettleResult;
+import de.m_marvin.logicsim.logic.simulator.SimulationSnapshot;
+import de.m_marvin.logicsim.logic.simulator.WaveformRecorder;
+import de.m_marvin.logicsim.logic.simulator.WaveformRecorder.Probe;
+import de.m_marvin.logicsim.util.CircuitSerializer;
+import de.m_marvin.logicsim.util.CircuitTemplateCache;
+
+/**
+ * Runs circuit simulations without any user interface, for example to test circuit files automatically.
+ * The circuits are simulated by an synchronous circuit processor for a fixed number of ticks, until their outputs did not change for some ticks or until all their nets have settled.
+ * After that, the values of all bool and bus outputs of the main circuit are printed to the console.
+ * If an vector file is given, the circuits are instead simulated by the {@link BitParallelSimulator} once for every line of input values in the file.
+ * No LogicSim instance, display or editor window is created, so this also runs on machines without graphical environment.
+ *
+ * @author Marvin K.
+ *
+ */
+public class HeadlessRunner {
+
+	/**
+	 * The settings of an simulation run by {@link HeadlessRunner#simulate(Circuit, SimulationOptions)}.
+	 *
+	 * @param maxTicks The maximum number of ticks to simulate
+	 * @param settleTicks The number of ticks the outputs have to stay unchanged to stop the simulation early, zero to always simulate maxTicks ticks
+	 * @param flattenSubCircuits If the sub-circuits should be simulated flattened into the main circuit instead of in own processes
+	 * @param untilSettled If the simulation should run until all nets have settled or started to oscillate, settleTicks is ignored in this case
+	 * @param initialState An snapshot of the circuit to continue the simulation from, or null to start from the reset state
+	 * @param captureState If an snapshot of the circuit should be taken after the simulation
+	 * @param waveformFile An VCD file to record the inputs and outputs of the main circuit into, or null to record nothing
+	 * @see SimulationSnapshot
+	 * @see WaveformRecorder
+	 */
+	public static record SimulationOptions(int maxTicks, int settleTicks, boolean flattenSubCircuits, boolean untilSettled, byte[] initialState, boolean captureState, File waveformFile) {
+		/**
+		 * Simulates the sub-circuits in own processes from the reset state, without snapshots and waveform recording.
+		 */
+		public SimulationOptions(int maxTicks, int settleTicks) {
+			this(maxTicks, settleTicks, false, false, null, false, null);
+		}
+	}
+
+	public static record SimulationResult(Circuit circuit, List<Component> outputs, long[] outputValues, int ticks, int settledTick, long simulationTime, SettleResult settleResult, byte[] finalState) {
+		public boolean hasSettled() {
+			return this.settledTick >= 0;
+		}
+		public double getTicksPerSecond() {
+			return this.simulationTime > 0 ? this.ticks / (this.simulationTime / 1000000000.0) : 0;
+		}
+	}
+
+	public static void main(String... args) {
+
+		CommandLineParser parser = new CommandLineParser();
+		parser.addOption("sub-circuit-folder", "");
+		parser.addOption("circuit-files", "");
+		parser.addOption("ticks", "1000");
+		parser.addOption("settle-ticks", "0");
+		parser.addOption("flatten-sub-circuits", "false");
+		parser.addOption("until-settled", "false");
+		parser.addOption("vector-file", "");
+		parser.addOption("load-state", "");
+		parser.addOption("save-state", "");
+		parser.addOption("vcd-file", "");
+		parser.parseInput(args);
+
+		if (!parser.getOption("sub-circuit-folder").isEmpty()) SubCircuitComponent.setFallbackSubCircuitFolder(new File(parser.getOption("sub-circuit-folder")));
+		int maxTicks = Integer.parseInt(parser.getOption("ticks"));
+		int settleTicks = Integer.parseInt(parser.getOption("settle-ticks"));
+		boolean flattenSubCircuits = Boolean.parseBoolean(parser.getOption("flatten-sub-circuits"));
+		boolean untilSettled = Boolean.parseBoolean(parser.getOption("until-settled"));
+		long[][] vectors = null;
+		if (!parser.getOption("vector-file").isEmpty()) {
+			try {
+				vectors = readVectors(new File(parser.getOption("vector-file")));
+			} catch (IOException | NumberFormatException e) {
+				System.err.println("Failed to load vector file '" + parser.getOption("vector-file") + "'!");
+				e.printStackTrace();
+				System.exit(1);
+			}
+		}
+
+		byte[] initialState = null;
+		File saveStateFile = parser.getOption("save-state").isEmpty() ? null : new File(parser.getOption("save-state"));
+		if ((saveStateFile != null || !parser.getOption("load-state").isEmpty()) && parser.getOption("circuit-files").contains(",")) {
+			System.err.println("Simulation states can only be loaded or saved for an single circuit file!");
+			System.exit(1);
+		}
+		File waveformFile = parser.getOption("vcd-file").isEmpty() ? null : new File(parser.getOption("vcd-file"));
+		if (waveformFile != null && parser.getOption("circuit-files").contains(",")) {
+			System.err.println("Waveforms can only be recorded for an single circuit file!");
+			System.exit(1);
+		}
+		if (!parser.getOption("load-state").isEmpty()) {
+			try {
+				initialState = SimulationSnapshot.load(new File(parser.getOption("load-state")));
+			} catch (IOException e) {
+				System.err.println("Failed to load simulation state '" + parser.getOption("load-state") + "'!");
+				e.printStackTrace();
+				System.exit(1);
+			}
+		}
+
+		int failedCircuits = 0;
+		for (String circuitFile : parser.getOption("circuit-files").split(",")) {
+			if (circuitFile.isEmpty()) continue;
+			File file = new File(circuitFile);
+			if (!file.isFile()) {
+				System.err.println("Circuit file '" + file + "' not found!");
+				failedCircuits++;
+				continue;
+			}
+			try {
+				System.out.println("Simulate circuit '" + file + "' ...");
+				Circuit circuit = CircuitSerializer.loadCircuit(file, statistics -> System.out.println(statistics));
+				if (vectors != null) {
+					BitParallelSimulator simulator = new BitParallelSimulator(circuit);
+					simulator.setMaxTicks(maxTicks);
+					long simulationStart = System.nanoTime();
+					BatchResult result = simulator.simulate(vectors);
+					printVectorResult(simulator, result, System.nanoTime() - simulationStart);
+				} else {
+					SimulationResult result = simulate(circuit, new SimulationOptions(maxTicks, settleTicks, flattenSubCircuits, untilSettled, initialState, saveStateFile != null, waveformFile));
+					printResult(result);
+					if (saveStateFile != null) saveState(saveStateFile, result.finalState());
+				}
+			} catch (IOException e) {
+				System.err.println("Failed to load circuit '" + file + "'!");
+				e.printStackTrace();
+				failedCircuits++;
+			} catch (IllegalArgumentException e) {
+				System.err.println("Failed to simulate circuit '" + file + "': " + e.getMessage());
+				failedCircuits++;
+			}
+		}
+
+		System.out.println("Sub-circuit template cache: " + CircuitTemplateCache.getTemplateCount() + " templates, " + CircuitTemplateCache.getHitCount() + " hits, " + CircuitTemplateCache.getMissCount() + " misses");
+		System.exit(failedCircuits > 0 ? 1 : 0);
+
+	}
+
+	/**
+	 * Simulates the circuit and all its sub-circuits on the calling thread.
+	 *
+	 * @param circuit The main circuit
+	 * @param options The settings of the simulation
+	 * @return The result containing the last values of the outputs of the main circuit
+	 */
+	public static SimulationResult simulate(Circuit circuit, SimulationOptions options) {
+
+		int maxTicks = options.maxTicks();
+		int settleTicks = options.settleTicks();
+		boolean untilSettled = options.untilSettled();
+		File waveformFile = options.waveformFile();
+
+		List<Component> outputs = new ArrayList<>();
+		circuit.getComponents().forEach(component -> {
+			if (component instanceof BoolOutputComponent || component instanceof BusOutputComponent) outputs.add(component);
+		});
+		long[] outputValues = new long[outputs.size()];
+		long[] lastOutputValues = new long[outputs.size()];
+
+		CircuitProcessor processor = new CircuitProcessor(ExecutionBackend.SYNCHRONOUS);
+		processor.setFlattenSubCircuits(options.flattenSubCircuits());
+		processor.addProcess(null, circuit);
+		processor.start();
+		if (options.initialState() != null) processor.restoreSnapshot(options.initialState());
+		if (waveformFile != null) {
+			probeIO(circuit);
+			processor.startWaveformRecording(circuit, waveformFile);
+		}
+
+		int ticks = 0;
+		int unchangedTicks = 0;
+		int settledTick = -1;
+		SettleResult settleResult = null;
+		long simulationStart = System.nanoTime();
+		if (untilSettled) {
+			settleResult = processor.tickUntilSettled(maxTicks);
+			ticks = settleResult.ticks();
+			if (settleResult.settled()) settledTick = ticks;
+			readOutputs(outputs, outputValues);
+		}
+		while (!untilSettled && ticks < maxTicks) {
+			processor.tick();
+			ticks++;
+
+			readOutputs(outputs, outputValues);
+			if (Arrays.equals(outputValues, lastOutputValues)) {
+				unchangedTicks++;
+			} else {
+				unchangedTicks = 0;
+				System.arraycopy(outputValues, 0, lastOutputValues, 0, outputValues.length);
+			}
+			if (settleTicks > 0 && unchangedTicks >= settleTicks) {
+				settledTick = ticks - unchangedTicks;
+				break;
+			}
+		}
+		long simulationTime = System.nanoTime() - simulationStart;
+
+		byte[] finalState = options.captureState() ? processor.captureSnapshot() : null;
+		if (waveformFile != null) {
+			processor.stopWaveformRecording(circuit);
+			System.out.println("Recorded waveform of " + circuit.getProbes().size() + " signals to '" + waveformFile + "'");
+		}
+		processor.terminate();
+		return new SimulationResult(circuit, outputs, outputValues, ticks, settledTick, simulationTime, settleResult, finalState);
+
+	}
+
+	/**
+	 * Probes the nets connected to all bool and bus inputs and outputs of the circuit for waveform recording.
+	 */
+	public static void probeIO(Circuit circuit) {
+		for (Component component : circuit.getComponents()) {
+			if (component instanceof BoolInputComponent) circuit.addProbe(new Probe(component.getOutputs().get(0), component.getOutputs().get(0).getLaneTag(), 1));
+			if (component instanceof BoolOutputComponent) circuit.addProbe(new Probe(component.getInputs().get(0), component.getInputs().get(0).getLaneTag(), 1));
+			if (component instanceof BusInputComponent busInput) circuit.addProbe(new Probe(busInput.getOutputs().get(0), busInput.getOutputs().get(0).getLaneTag(), busInput.getBitCount()));
+			if (component instanceof BusOutputComponent busOutput) circuit.addProbe(new Probe(busOutput.getInputs().get(0), busOutput.getInputs().get(0).getLaneTag(), busOutput.getBitCount()));
+		}
+	}
+
+	public static void saveState(File file, byte[] state) {
+		try {
+			SimulationSnapshot.save(file, state);
+			System.out.println("Saved simulation state to '" + file + "' (" + state.length + " bytes)");
+		} catch (IOException e) {
+			System.err.println("Failed to save simulation state '" + file + "'!");
+			e.printStackTrace();
+		}
+	}
+
+	public static void readOutputs(List<Component> outputs, long[] outputValues) {
+		for (int i = 0; i < outputs.size(); i++) {
+			if (outputs.get(i) instanceof BoolOutputComponent boolOutput) {
+				outputValues[i] = boolOutput.getState() ? 1 : 0;
+			} else if (outputs.get(i) instanceof BusOutputComponent busOutput) {
+				outputValues[i] = busOutput.getValue() & 0xFFFFFFFFL;
+			}
+		}
+	}
+
+	/**
+	 * Reads the input values for the bit-parallel simulation, one vector per line.
+	 * The values are separated by commas or spaces and given in the order of the input components of the main circuit, hexadecimal values start with "0x".
+	 * Empty lines and lines starting with "#" are ignored.
+	 */
+	public static long[][] readVectors(File vectorFile) throws IOException {
+		List<long[]> vectors = new ArrayList<>();
+		for (String line : Files.readAllLines(vectorFile.toPath())) {
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#")) continue;
+			String[] values = line.split("[,\\s]+");
+			long[] vector = new long[values.length];
+			for (int i = 0; i < values.length; i++) {
+				vector[i] = values[i].startsWith("0x") ? Long.parseUnsignedLong(values[i].substring(2), 16) : Long.parseLong(values[i]);
+			}
+			vectors.add(vector);
+		}
+		return vectors.toArray(new long[vectors.size()][]);
+	}
+
+	public static void printVectorResult(BitParallelSimulator simulator, BatchResult result, long simulationTime) {
+		List<Component> outputs = simulator.getOutputs();
+		int settledVectors = 0;
+		for (int v = 0; v < result.getVectorCount(); v++) {
+			StringBuilder builder = new StringBuilder("  vector " + v + ":");
+			for (int o = 0; o < outputs.size(); o++) {
+				builder.append(" " + outputs.get(o).getLabel() + " = " + result.outputValues()[v][o]);
+				if (result.outputErrors()[v][o] != 0) builder.append(" (error bits 0x" + Long.toHexString(result.outputErrors()[v][o]) + ")");
+			}
+			if (result.hasSettled(v)) {
+				settledVectors++;
+			} else {
+				builder.append(" (not settled)");
+			}
+			System.out.println(builder);
+		}
+		System.out.println(String.format("Simulated %d vectors in %d ms (%.0f vectors/s), %d settled", result.getVectorCount(), simulationTime / 1000000, simulationTime > 0 ? result.getVectorCount() / (simulationTime / 1000000000.0) : 0, settledVectors));
+	}
+
+	public static void printResult(SimulationResult result) {
+		for (int i = 0; i < result.outputs().size(); i++) {
+			Component output = result.outputs().get(i);
+			long value = result.outputValues()[i];
+			if (output instanceof BusOutputComponent) {
+				System.out.println("  " + output.getLabel() + " = " + value + " (0x" + Long.toHexString(value) + ")");
+			} else {
+				System.out.println("  " + output.getLabel() + " = " + value);
+			}
+		}
+		String settleInfo = result.hasSettled() ? "outputs settled after " + result.settledTick() + " ticks" : "outputs not settled";
+		if (result.settleResult() != null) {
+			SettleResult settleResult = result.settleResult();
+			settleInfo = settleResult.settled() ? "nets settled after " + settleResult.ticks() + " ticks" : settleResult.isOscillating() ? "nets oscillate with a period of " + settleResult.period() + " ticks" : "nets not settled";
+			for (OscillatingNet net : settleResult.oscillatingNets()) {
+				System.out.println("  oscillating net " + net.netId() + " in circuit '" + (net.circuit().getCircuitFile() != null ? net.circuit().getCircuitFile() : "main") + "'");
+			}
+		}
+		System.out.println(String.format("Simulated %d ticks in %d ms (%.0f ticks/s), %s", result.ticks(), result.simulationTime() / 1000000, result.getTicksPerSecond(), settleInfo));
+	}
+
+}
@@ -31,6 +31,8 @@ import de.m_marvin.logicsim.logic.parts.MemoryComponent;
 import de.m_marvin.logicsim.logic.parts.NotGateComponent;
 import de.m_marvin.logicsim.logic.parts.SubCircuitComponent;
 import de.m_marvin.logicsim.logic.simulator.CircuitProcessor;
+import de.m_marvin.logicsim.logic.simulator.CircuitProcessor.ExecutionBackend;
+import de.m_marvin.logicsim.logic.simulator.NetHistory;
 import de.m_marvin.logicsim.logic.simulator.SimulationMonitor;
 import de.m_marvin.logicsim.logic.wires.ConnectorWire;
 import de.m_marvin.logicsim.ui.TextRenderer;
@@ -39,6 +41,7 @@ import de.m_marvin.logicsim.ui.windows.CircuitOptions;
 import de.m_marvin.logicsim.ui.windows.CircuitViewer;
 import de.m_marvin.logicsim.ui.windows.Editor;
 import de.m_marvin.logicsim.util.CircuitSerializer;
+import de.m_marvin.logicsim.util.CircuitTemplateCache;
 import de.m_marvin.logicsim.util.ConfigFile;
 import de.m_marvin.logicsim.util.Registries;
 import de.m_marvin.logicsim.util.Registries.ComponentFolder;
@@ -54,6 +57,8 @@ public class LogicSim {
 	
 	public static final String LOGIC_SIM_ICON = "iVBORw0KGgoAAAANSUhEUgAAADAAAAAwCAYAAABXAvmHAAAA40lEQVRoge2YwQ2DMAxF3Yqhshy3LsIQrNFzJJbIBu0BoVZIUeLEIf7B78IFJH/5/9iEyDCqeGS+92laRZxkfc8rqmiJCejNVPhdbna4sLMWE9ArtGxua6EfrzW/W9t7fy6zmAXhOwAvoN5Chy06ERNw9qjaU6l0F7pqDtgupJ76EP/hnMvOSgiBiIi891V2hO8AvABRCx22ECR5KsF3QPscODNeB+AFwM8BUQENGH8X0j4HksB3QPscGD8D8AJEb+bsf6AAeAE2B3oTCxB7LxeCPQfgb+ZKM6BGEHwGTIBhgPMFj3A0g04XsBUAAAAASUVORK5CYII=";
 	public static final String CIRCUIT_FILE_EXTENSION = "lcf";
+	public static final String BINARY_CIRCUIT_FILE_EXTENSION = "lcb";
+	public static final String WAVEFORM_FILE_EXTENSION = "vcd";
 	
 	private static LogicSim INSTANCE;
 	
@@ -154,7 +159,27 @@ public class LogicSim {
 		Translator.changeLanguage(ConfigFile.getValue(configFile, "language", "lang_en"));
 		
 		this.display = new Display();
-		this.processor = new CircuitProcessor();
+		ExecutionBackend backend;
+		try {
+			backend = ExecutionBackend.valueOf(ConfigFile.getValue(configFile, "processor_backend", ExecutionBackend.WORK_STEALING.toString()));
+		} catch (IllegalArgumentException e) {
+			System.err.println("Unknown processor backend in config file, use default!");
+			backend = ExecutionBackend.WORK_STEALING;
+		}
+		boolean lockStep = Boolean.parseBoolean(ConfigFile.getValue(configFile, "processor_lock_step", "false"));
+		this.processor = new CircuitProcessor(backend, lockStep);
+		this.processor.setBusySpin(Boolean.parseBoolean(ConfigFile.getValue(configFile, "processor_busy_spin", "false")));
+		try {
+			this.processor.setTickDuration(Long.parseLong(ConfigFile.getValue(configFile, "simulated_tick_time", Long.toString(CircuitProcessor.DEFAULT_TICK_DURATION))));
+		} catch (NumberFormatException e) {
+			System.err.println("Invalid simulated tick time in config file, use default!");
+		}
+		this.processor.setFlattenSubCircuits(Boolean.parseBoolean(ConfigFile.getValue(configFile, "flatten_sub_circuits", "false")));
+		try {
+			this.processor.setHistorySize(Integer.parseInt(ConfigFile.getValue(configFile, "history_ticks", Integer.toString(NetHistory.DEFAULT_TICK_CAPACITY))), Integer.parseInt(ConfigFile.getValue(configFile, "history_changes", Integer.toString(NetHistory.DEFAULT_CHANGE_CAPACITY))));
+		} catch (NumberFormatException e) {
+			System.err.println("Invalid history size in config file, use default!");
+		}
 		this.simulationMonitor = new SimulationMonitor(processor);
 		
 		if (filesToOpen.length == 0) {
@@ -344,6 +369,7 @@ public class LogicSim {
 		System.out.println("Load integrated circuits from file ...");
 		
 		Registries.clearSubCircuitCache();
+		CircuitTemplateCache.clear();
 		scanForFiles(this.subCircuitFolder, file -> {
 			if (!isCircuitFile(file)) return;
 			String name = Translator.translate(getFileName(file.getName()));
@@ -375,7 +401,12 @@ public class LogicSim {
 	
 	public static boolean isCircuitFile(File file) {
 		String[] s = file.getName().split("\\.");
-		return s[s.length - 1].equals(CIRCUIT_FILE_EXTENSION);
+		return s[s.length - 1].equals(CIRCUIT_FILE_EXTENSION) || s[s.length - 1].equals(BINARY_CIRCUIT_FILE_EXTENSION);
+	}
+	
+	public static boolean isBinaryCircuitFile(File file) {
+		String[] s = file.getName().split("\\.");
+		return s[s.length - 1].equals(BINARY_CIRCUIT_FILE_EXTENSION);
 	}
 	
 }
@@ -2,17 +2,34 @@ package de.m_marvin.logicsim.logic;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.OptionalInt;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BooleanSupplier;
 import java.util.function.Predicate;
-import java.util.function.Supplier;
 
 import de.m_marvin.logicsim.logic.nodes.Node;
 import de.m_marvin.logicsim.logic.simulator.AsyncArrayList;
-import de.m_marvin.logicsim.logic.simulator.FastAsyncMap;
+import de.m_marvin.logicsim.logic.simulator.CircuitPartition;
+import de.m_marvin.logicsim.logic.simulator.CircuitProcessor;
+import de.m_marvin.logicsim.logic.simulator.CompiledCircuit;
+import de.m_marvin.logicsim.logic.simulator.LaneStateMap;
+import de.m_marvin.logicsim.logic.simulator.LaneTable;
+import de.m_marvin.logicsim.logic.simulator.NetHistory;
+import de.m_marvin.logicsim.logic.simulator.SettleDetector;
+import de.m_marvin.logicsim.logic.simulator.SettleDetector.SettleResult;
+import de.m_marvin.logicsim.logic.simulator.UnionFind;
+import de.m_marvin.logicsim.logic.simulator.WaveformRecorder;
+import de.m_marvin.logicsim.logic.simulator.WaveformRecorder.Probe;
 import de.m_marvin.univec.impl.Vec2i;
 import de.m_marvin.univec.impl.Vec4i;
 
@@ -28,6 +45,8 @@ import de.m_marvin.univec.impl.Vec4i;
 public class Circuit {
 	
 	public static final String DEFAULT_BUS_LANE = "bus0";
+	public static final int AUTOMATIC_PARTITIONING = 0;
+	public static final int MIN_PARTITION_SIZE = 1000;
 	
 	public static Random floatingValue = new Random();
 	public static boolean shortCircuitValue = false;
@@ -62,6 +81,25 @@ public class Circuit {
 		}
 	}
 	
+	protected static final int[][] LANE_CODE_COMBINATIONS = new int[ShortCircuitType.values().length][16];
+	
+	static {
+		for (ShortCircuitType type : ShortCircuitType.values()) {
+			for (int codeA = 0; codeA < 4; codeA++) {
+				for (int codeB = 0; codeB < 4; codeB++) {
+					LANE_CODE_COMBINATIONS[type.ordinal()][codeA << 2 | codeB] = combineStates(NetState.fromLaneCode(codeA), NetState.fromLaneCode(codeB), type).getLaneCode();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Same as {@link #combineStates(NetState, NetState, ShortCircuitType)} but working with the lane codes used by the packed lane arrays.
+	 */
+	public static int combineLaneCodes(int codeA, int codeB, ShortCircuitType type) {
+		return LANE_CODE_COMBINATIONS[type.ordinal()][codeA << 2 | codeB];
+	}
+	
 	public static NetState safeLaneRead(Map<String, NetState> laneData, String lane) {
 		NetState state = laneData.get(lane);
 		if (state == null) return NetState.FLOATING;
@@ -72,17 +110,43 @@ public class Circuit {
 		HIGH_LOW_SHORT,PREFER_HIGH,PREFER_LOW;
 	}
 	
+	/**
+	 * Describes which components get updated in each tick.
+	 * <br>FULL_SWEEP - Every component gets updated in every tick.
+	 * <br>EVENT_DRIVEN - Only components that read from an network that changed in the last tick get updated, see {@link Component#isCombinational()}.
+	 * <br>COMPILED - Every component gets updated in every tick, by code generated at runtime, see {@link CompiledCircuit}.
+	 */
+	public static enum UpdateMode {
+		FULL_SWEEP,EVENT_DRIVEN,COMPILED;
+	}
+	
 	public static enum NetState {
-		LOW(() -> false),HIGH(() -> true),FLOATING(Circuit::getFloatingValue),SHORT_CIRCUIT(Circuit::getShortCircuitValue);
+		LOW(1, () -> false),HIGH(2, () -> true),FLOATING(0, Circuit::getFloatingValue),SHORT_CIRCUIT(3, Circuit::getShortCircuitValue);
+		
+		private static final NetState[] LANE_CODES = new NetState[] {FLOATING, LOW, HIGH, SHORT_CIRCUIT};
 		
-		private final Supplier<Boolean> logicValue;
+		private final int laneCode;
+		private final BooleanSupplier logicValue;
 		
-		NetState(Supplier<Boolean> logicValueSupplier) {
+		NetState(int laneCode, BooleanSupplier logicValueSupplier) {
+			this.laneCode = laneCode;
 			this.logicValue = logicValueSupplier;
 		}
 		
+		public static NetState fromLaneCode(int laneCode) {
+			return LANE_CODES[laneCode];
+		}
+		
+		/**
+		 * Returns the two bit code used to store this state in the packed lane arrays.
+		 * FLOATING is always zero, so an cleared array represents an net without any signal on it.
+		 */
+		public int getLaneCode() {
+			return laneCode;
+		}
+		
 		public boolean getLogicState() {
-			return this.logicValue.get();
+			return this.logicValue.getAsBoolean();
 		}
 		
 		public boolean isLogicalState() {
@@ -126,20 +190,80 @@ public class Circuit {
 		
 	}
 	
-	protected final List<List<Node>> networks = new AsyncArrayList<>();
-	protected List<Map<String, NetState>> valuesSec = new AsyncArrayList<>();
-	protected List<Map<String, NetState>> valuesPri = new AsyncArrayList<>();
+	protected final AsyncArrayList<List<Node>> networks = new AsyncArrayList<>();
+	protected AsyncArrayList<LaneStateMap> valuesSec = new AsyncArrayList<>();
+	protected AsyncArrayList<LaneStateMap> valuesPri = new AsyncArrayList<>();
+	protected final LaneTable laneTable;
 	protected final List<Component> components = new AsyncArrayList<>();
+	
+	/* Index of all connected nodes, by their position and by their identity, used to (dis)connect nodes without searching trough all networks */
+	protected final Map<Long, List<Node>> nodesByPosition = new HashMap<>();
+	protected final Map<Long, List<Node>> nodesByIdentity = new HashMap<>();
+	protected final Map<Node, Long> connectedPositions = new IdentityHashMap<>();
+	/* Cached result of nextFreeId(), -1 if it has to be recalculated */
+	protected int nextComponentNr = -1;
+	/* Incremented every time the components or networks of this circuit change */
+	protected volatile int modificationCount;
+	/* The number of ticks simulated since the last reset, the time base of clocks running in simulation time */
+	protected volatile long simulationTick;
+	/* The processor simulating this circuit, set when the circuit is added to an processor */
+	protected volatile CircuitProcessor processor = null;
+	
 	protected File circuitFile;
 	protected final boolean virtual;
 	protected ShortCircuitType shortCircuitType = ShortCircuitType.HIGH_LOW_SHORT;
+	protected volatile UpdateMode updateMode = UpdateMode.FULL_SWEEP;
+	/* The update mode the current tick was evaluated in, so an mode change between the two halfs of an tick does not mix them */
+	protected UpdateMode tickMode = UpdateMode.FULL_SWEEP;
+	
+	/* Fan-out index and work queue of the event driven update mode, rebuild on the next tick after the circuit was modified */
+	protected volatile boolean netIndexValid = false;
+	protected Component[] indexedComponents = new Component[0];
+	protected int[] alwaysUpdatedComponents = new int[0];
+	protected int[][] componentDrivenNets = new int[0][];
+	protected int[][] netReaders = new int[0][];
+	protected int[][] netDrivers = new int[0][];
+	protected int[] componentQueue = new int[0];
+	protected final BitSet scheduledComponents = new BitSet();
+	protected final BitSet touchedNets = new BitSet();
+	protected final BitSet unstableNets = new BitSet();
+	protected final BitSet unstableComponents = new BitSet();
+	protected boolean randomStateRead = false;
+	protected Thread updatingThread = null;
+	protected final BitSet requestedComponents = new BitSet();
+	
+	/* Partitions of the full sweep mode, rebuild on the next tick after the circuit was modified */
+	protected int partitionCount = AUTOMATIC_PARTITIONING;
+	protected volatile boolean partitionsValid = false;
+	protected CircuitPartition[] partitions = new CircuitPartition[0];
+	protected ForkJoinTask<?>[] partitionTasks = new ForkJoinTask<?>[0];
+	protected final ForkJoinTask<?> partitionPhaseTask = ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(this.partitionTasks));
+	
+	/* Generated evaluation code of the compiled mode, generated again on the next tick after the circuit was modified */
+	protected volatile boolean compiledValid = false;
+	protected volatile CompiledCircuit compiledCircuit = null;
+	
+	/* Records the lane changes of every tick if not null */
+	protected volatile NetHistory history = null;
+	
+	/* Nets marked for waveform recording and the recorder writing their changes if not null */
+	protected final List<Probe> probes = new AsyncArrayList<>();
+	protected volatile WaveformRecorder waveformRecorder = null;
 	
 	public Circuit() {
 		this(false);
 	}
 
 	public Circuit(boolean virtual) {
+		this(virtual, new LaneTable());
+	}
+	
+	/**
+	 * Creates an circuit using the given lane table, used for sub-circuits which use the lane table of their parent circuit.
+	 */
+	public Circuit(boolean virtual, LaneTable laneTable) {
 		this.virtual = virtual;
+		this.laneTable = laneTable;
 	}
 	
 	public File getCircuitFile() {
@@ -157,142 +281,592 @@ public class Circuit {
 	public synchronized void setShortCircuitMode(ShortCircuitType shortCircuitType) {
 		this.shortCircuitType = shortCircuitType;
 	}
+	
+	public UpdateMode getUpdateMode() {
+		return this.updateMode;
+	}
+	
+	/**
+	 * Changes the update mode used for the next tick.
+	 * The generated code of the compiled mode is released by the next tick, so it is never removed while an tick is evaluating it.
+	 */
+	public synchronized void setUpdateMode(UpdateMode updateMode) {
+		this.updateMode = updateMode;
+		invalidateSimulationIndex();
+	}
+	
+	public int getPartitionCount() {
+		return this.partitionCount;
+	}
+	
+	/**
+	 * Sets the number of partitions the components of this circuit are split into in the full sweep mode.
+	 * The partitions get simulated in parallel, {@link #AUTOMATIC_PARTITIONING} creates one partition per {@link #MIN_PARTITION_SIZE} components, but not more than available cores.
+	 */
+	public synchronized void setPartitionCount(int partitionCount) {
+		this.partitionCount = Math.max(AUTOMATIC_PARTITIONING, partitionCount);
+		invalidateSimulationIndex();
+	}
+	
+	/**
+	 * Returns the partitions used in the last tick, this array is replaced when the circuit gets modified.
+	 */
+	public CircuitPartition[] getPartitions() {
+		return this.partitions;
+	}
+	
+	protected void invalidateSimulationIndex() {
+		this.netIndexValid = false;
+		this.partitionsValid = false;
+		this.compiledValid = false;
+		this.modificationCount++;
+	}
+	
+	/**
+	 * Called if the lane of an node was changed, the lane ids are part of the generated code of the compiled mode.
+	 */
+	public void laneTagChanged(Node node) {
+		this.compiledValid = false;
+	}
+	
+	/**
+	 * Returns the generated evaluation code used in the last tick, or null if the last tick was not simulated in the compiled mode.
+	 */
+	public CompiledCircuit getCompiledCircuit() {
+		return this.compiledCircuit;
+	}
+	
+	/**
+	 * Returns an counter which is incremented every time components or networks get added or removed, used to detect modifications of the circuit.
+	 */
+	public int getModificationCount() {
+		return this.modificationCount;
+	}
+
+	/**
+	 * Returns the number of ticks this circuit was simulated since its networks were reset.
+	 * The counter is incremented at the start of every tick, so all components read the same value during an tick.
+	 */
+	public long getSimulationTick() {
+		return this.simulationTick;
+	}
+	
+	/**
+	 * Returns the processor simulating this circuit, or null if the circuit was not added to an processor.
+	 */
+	public CircuitProcessor getProcessor() {
+		return this.processor;
+	}
+	
+	/**
+	 * Should only be called by the processor when adding the circuit as process, or when it is simulated as part of an flattened process.
+	 */
+	public void setProcessor(CircuitProcessor processor) {
+		this.processor = processor;
+	}
+	
+	/**
+	 * Increments the tick counter, used to advance circuits that are not simulated by {@link #evaluateCircuit()}, like the sub-circuits of an flattened circuit.
+	 */
+	public void advanceSimulationTick() {
+		this.simulationTick++;
+	}
 
+	/**
+	 * Sets the tick counter, used to restore an saved simulation state.
+	 */
+	public void setSimulationTick(long simulationTick) {
+		this.simulationTick = simulationTick;
+	}
+
+	/**
+	 * Sets the history recording the lane changes of every tick, or null to stop recording.
+	 * 
+	 * @see NetHistory
+	 */
+	public void setHistory(NetHistory history) {
+		this.history = history;
+	}
+	
+	public NetHistory getHistory() {
+		return this.history;
+	}
+	
+	/**
+	 * Records the lane changes of the current tick if an history is set, called before the new lane states are committed.
+	 * 
+	 * @param changedNets The nets that can have changed in this tick, or null if all nets have to be compared
+	 */
+	public void recordHistory(BitSet changedNets) {
+		NetHistory history = this.history;
+		if (history != null) history.recordTick(this, changedNets);
+	}
+	
+	/**
+	 * Marks the lanes of the network of the node for waveform recording, replaces the probe already set on this node.
+	 * Probes set while recording are only recorded after the recording was started again.
+	 * 
+	 * @see WaveformRecorder
+	 */
+	public synchronized void addProbe(Probe probe) {
+		removeProbe(probe.node());
+		this.probes.add(probe);
+	}
+	
+	public synchronized void removeProbe(Node node) {
+		for (int i = this.probes.size() - 1; i >= 0; i--) if (this.probes.get(i).node() == node) this.probes.remove(i);
+	}
+	
+	public synchronized Probe getProbe(Node node) {
+		for (Probe probe : this.probes) if (probe.node() == node) return probe;
+		return null;
+	}
+	
+	public List<Probe> getProbes() {
+		return this.probes;
+	}
+	
+	/**
+	 * Sets the recorder writing the changes of the probed nets into an waveform file, or null to stop recording.
+	 */
+	public void setWaveformRecorder(WaveformRecorder waveformRecorder) {
+		this.waveformRecorder = waveformRecorder;
+	}
+	
+	public WaveformRecorder getWaveformRecorder() {
+		return this.waveformRecorder;
+	}
+	
+	/**
+	 * Passes the changes of the probed nets to the waveform recorder if one is set, called before the new lane states are committed.
+	 */
+	public void recordWaveform() {
+		WaveformRecorder waveformRecorder = this.waveformRecorder;
+		if (waveformRecorder != null) waveformRecorder.recordTick(this);
+	}
+	
+	/**
+	 * Writes the states held by the generated code of the compiled mode back into the components, so they can be read or saved.
+	 */
+	public synchronized void flushComponentStates() {
+		if (this.compiledCircuit != null) this.compiledCircuit.release();
+	}
+
+	/**
+	 * Called after the states of the networks and components were replaced, for example by restoring an simulation snapshot.
+	 * The generated code of the compiled mode reads the component states again and the next tick in the event driven mode updates all components.
+	 */
+	public synchronized void reloadComponentStates() {
+		if (this.compiledCircuit != null) this.compiledCircuit.reload();
+		this.netIndexValid = false;
+	}
+	
 	public boolean isVirtual() {
 		return this.virtual;
 	}
 	
+	public LaneTable getLaneTable() {
+		return this.laneTable;
+	}
+	
 	
 	
+	/**
+	 * Removes the network with the given id.
+	 * To keep the ids of all other networks stable, the last network is moved into the free slot, only the nodes of this network get a new id assigned.
+	 * The nodes of the removed network are not modified.
+	 * 
+	 * @param netId The id of the network to remove
+	 * @return The removed network
+	 */
 	protected synchronized List<Node> removeNet(int netId) {
-		if (this.valuesPri.size() > netId) this.valuesPri.remove(netId);
-		if (this.valuesSec.size() > netId) this.valuesSec.remove(netId);
-		return this.networks.remove(netId);
+		int lastNet = this.networks.size() - 1;
+		List<Node> network = this.networks.get(netId);
+		if (netId < lastNet) {
+			List<Node> movedNetwork = this.networks.get(lastNet);
+			this.networks.set(netId, movedNetwork);
+			this.valuesPri.set(netId, this.valuesPri.get(lastNet));
+			this.valuesSec.set(netId, this.valuesSec.get(lastNet));
+			for (Node n : movedNetwork) n.setNetId(netId);
+		}
+		this.networks.remove(lastNet);
+		this.valuesPri.remove(lastNet);
+		this.valuesSec.remove(lastNet);
+		return network;
+	}
+	
+	/**
+	 * Adds an new network containing the given node.
+	 * 
+	 * @param node The first node of the network
+	 * @return The id of the new network
+	 */
+	protected synchronized int addNet(Node node) {
+		List<Node> network = new AsyncArrayList<>();
+		network.add(node);
+		node.setNetId(this.networks.size());
+		return addNet(network);
+	}
+	
+	/**
+	 * Adds the network, the nodes have to be assigned the id of the new network already.
+	 * 
+	 * @param network The nodes of the network
+	 * @return The id of the new network
+	 */
+	protected synchronized int addNet(List<Node> network) {
+		this.networks.add(network);
+		this.valuesPri.add(new LaneStateMap(this.laneTable));
+		this.valuesSec.add(new LaneStateMap(this.laneTable));
+		return this.networks.size() - 1;
 	}
 	
-	protected OptionalInt findNet(Node node) {
-		for (int i = 0; i < this.networks.size(); i++) {
-			for (Node n : this.networks.get(i)) {
-				if (n.equals(node)) return OptionalInt.of(i);
+	/**
+	 * Merges the two networks into one.
+	 * The nodes of the smaller network are moved into the bigger one, the smaller one gets removed.
+	 * 
+	 * @return The id of the resulting network
+	 */
+	protected synchronized int mergeNets(int netIdA, int netIdB) {
+		if (netIdA == netIdB) return netIdA;
+		List<Node> networkA = this.networks.get(netIdA);
+		List<Node> networkB = this.networks.get(netIdB);
+		if (networkA.size() < networkB.size()) return mergeNets(netIdB, netIdA);
+		for (Node n : networkB) {
+			n.setNetId(netIdA);
+			networkA.add(n);
+		}
+		removeNet(netIdB);
+		return networkA.get(0).getNetId();
+	}
+	
+	/**
+	 * Returns the id of the network the node is connected to.
+	 * The id is cached in the node itself and kept up to date by {@link #reconnect(boolean, Component...)}, so this does not have to search trough the networks.
+	 * 
+	 * @param node The node to find the network for
+	 * @return The id of the network or -1 if the node is not connected
+	 */
+	protected int findNet(Node node) {
+		int netId = node.getNetId();
+		if (netId < 0 || netId >= this.networks.size()) return -1;
+		return netId;
+	}
+	
+	/**
+	 * Returns the key of the node position in the position index.
+	 */
+	protected static long positionKey(Vec2i position) {
+		return ((long) position.x << 32) | (position.y & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * Returns the key of the node in the identity index, nodes with the same key are equal (see {@link Node#equals(Object)}) and always connected.
+	 * This is used by the wires, which have two nodes with the same number.
+	 */
+	protected static long identityKey(Node node) {
+		return ((long) node.getComponent().getComponentNr() << 32) | (node.getNodeNr() & 0xFFFFFFFFL);
+	}
+	
+	protected static void removeIdentical(List<Node> nodes, Node node) {
+		for (int i = 0; i < nodes.size(); i++) {
+			if (nodes.get(i) == node) {
+				nodes.remove(i);
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Adds the node to the position and identity index, using its current position.
+	 * 
+	 * @return false if the node is already indexed
+	 */
+	protected boolean indexNode(Node node) {
+		long position = positionKey(node.getVisualPosition());
+		if (this.connectedPositions.putIfAbsent(node, position) != null) return false;
+		this.nodesByPosition.computeIfAbsent(position, k -> new ArrayList<>(2)).add(node);
+		this.nodesByIdentity.computeIfAbsent(identityKey(node), k -> new ArrayList<>(2)).add(node);
+		return true;
+	}
+	
+	/**
+	 * Removes the node from the position and identity index, using the position it had when it got indexed.
+	 * 
+	 * @return false if the node was not indexed
+	 */
+	protected boolean unindexNode(Node node) {
+		Long position = this.connectedPositions.remove(node);
+		if (position == null) return false;
+		List<Node> samePosition = this.nodesByPosition.get(position);
+		removeIdentical(samePosition, node);
+		if (samePosition.isEmpty()) this.nodesByPosition.remove(position);
+		long identity = identityKey(node);
+		List<Node> sameIdentity = this.nodesByIdentity.get(identity);
+		removeIdentical(sameIdentity, node);
+		if (sameIdentity.isEmpty()) this.nodesByIdentity.remove(identity);
+		return true;
+	}
+	
+	/**
+	 * Connects the node to all networks containing an node at the same position or an node equal to it.
+	 * If there are multiple such networks, they get merged, if there are none, an new network is created.
+	 */
+	protected void connectNode(Node node) {
+		if (!indexNode(node)) return;
+		int netId = -1;
+		for (Node other : this.nodesByPosition.get(this.connectedPositions.get(node))) {
+			if (other != node) netId = netId < 0 ? other.getNetId() : mergeNets(netId, other.getNetId());
+		}
+		for (Node other : this.nodesByIdentity.get(identityKey(node))) {
+			if (other != node) netId = netId < 0 ? other.getNetId() : mergeNets(netId, other.getNetId());
+		}
+		if (netId < 0) {
+			addNet(node);
+		} else {
+			node.setNetId(netId);
+			this.networks.get(netId).add(node);
+		}
+	}
+	
+	/**
+	 * Collects all nodes reachable from the start node over the position and identity index which are not yet connected and assigns them the network id.
+	 * Reached nodes which are already connected to an other network are added to the linked nodes list, together with the node they were reached from.
+	 * 
+	 * @param start The first node of the network, has to be indexed and not connected
+	 * @param netId The id to assign to the collected nodes
+	 * @param linkedNodes The list to add pairs of linked nodes to, or null if there can not be any
+	 * @return The collected nodes
+	 */
+	protected List<Node> collectNet(Node start, int netId, List<Node> linkedNodes) {
+		List<Node> network = new AsyncArrayList<>();
+		List<Node> pending = new ArrayList<>();
+		start.setNetId(netId);
+		network.add(start);
+		pending.add(start);
+		while (!pending.isEmpty()) {
+			Node node = pending.remove(pending.size() - 1);
+			for (int i = 0; i < 2; i++) {
+				for (Node other : i == 0 ? this.nodesByPosition.get(this.connectedPositions.get(node)) : this.nodesByIdentity.get(identityKey(node))) {
+					if (other.getNetId() < 0) {
+						other.setNetId(netId);
+						network.add(other);
+						pending.add(other);
+					} else if (other.getNetId() != netId && linkedNodes != null) {
+						linkedNodes.add(node);
+						linkedNodes.add(other);
+					}
+				}
+			}
+		}
+		return network;
+	}
+	
+	/**
+	 * Connects all components at once, like after loading an circuit from a file.
+	 * Other than calling {@link #reconnect(boolean, Component...)} for each component, this puts all nodes into the index first and then collects every network in a single pass over the nodes.
+	 * The new networks get appended to the network lists, which are allocated at their final size.
+	 * 
+	 * @param components The components to connect, which have to be added to the circuit already
+	 */
+	public synchronized void connectAll(Collection<Component> components) {
+		
+		List<Node> nodes = new ArrayList<>();
+		for (Component c : components) {
+			for (Node n : c.getAllNodes()) {
+				if (indexNode(n)) nodes.add(n);
+			}
+		}
+		
+		int firstNet = this.networks.size();
+		List<List<Node>> newNetworks = new ArrayList<>();
+		List<Node> linkedNodes = new ArrayList<>();
+		for (Node n : nodes) {
+			if (n.getNetId() < 0) newNetworks.add(collectNet(n, firstNet + newNetworks.size(), linkedNodes));
+		}
+		
+		int netCount = firstNet + newNetworks.size();
+		this.networks.ensureCapacity(netCount);
+		this.valuesPri.ensureCapacity(netCount);
+		this.valuesSec.ensureCapacity(netCount);
+		for (List<Node> network : newNetworks) {
+			this.networks.add(network);
+			this.valuesPri.add(new LaneStateMap(this.laneTable));
+			this.valuesSec.add(new LaneStateMap(this.laneTable));
+		}
+		
+		// Nodes placed onto already connected nodes join their networks
+		for (int i = 0; i < linkedNodes.size(); i += 2) {
+			mergeNets(linkedNodes.get(i).getNetId(), linkedNodes.get(i + 1).getNetId());
+		}
+		
+		invalidateSimulationIndex();
+		
+	}
+	
+	/**
+	 * Connects the components of this circuit the same way as the components of the template circuit, without searching the networks again.
+	 * This circuit has to contain copies of the template components in the same order and must not be connected yet.
+	 * If the nodes of the components do not match the template, the components are connected by {@link #connectAll(Collection)} instead.
+	 * 
+	 * @param template The circuit to copy the networks from
+	 * @return true if the networks could be copied from the template
+	 */
+	public synchronized boolean copyNetworks(Circuit template) {
+		
+		synchronized (template) {
+			
+			Map<Node, Node> copiedNodes = new IdentityHashMap<>();
+			boolean matching = template.components.size() == this.components.size();
+			for (int i = 0; i < this.components.size() && matching; i++) {
+				List<Node> templateNodes = template.components.get(i).getAllNodes();
+				List<Node> nodes = this.components.get(i).getAllNodes();
+				matching = templateNodes.size() == nodes.size();
+				for (int j = 0; j < nodes.size() && matching; j++) {
+					matching = templateNodes.get(j).getNodeNr() == nodes.get(j).getNodeNr();
+					copiedNodes.put(templateNodes.get(j), nodes.get(j));
+				}
+			}
+			if (!matching) {
+				connectAll(this.components);
+				return false;
+			}
+			
+			for (Component c : this.components) {
+				for (Node n : c.getAllNodes()) indexNode(n);
 			}
+			
+			int netCount = this.networks.size() + template.networks.size();
+			this.networks.ensureCapacity(netCount);
+			this.valuesPri.ensureCapacity(netCount);
+			this.valuesSec.ensureCapacity(netCount);
+			for (List<Node> templateNetwork : template.networks) {
+				int netId = this.networks.size();
+				List<Node> network = new AsyncArrayList<>();
+				for (Node templateNode : templateNetwork) {
+					Node node = copiedNodes.get(templateNode);
+					node.setNetId(netId);
+					network.add(node);
+				}
+				addNet(network);
+			}
+			
 		}
-		return OptionalInt.empty();
+		
+		invalidateSimulationIndex();
+		return true;
+		
 	}
 	
-	public void reconnect(boolean disconnect, Component... components) {
+	/**
+	 * Connects or disconnects the nodes of the components to the networks of the circuit.
+	 * Nodes are connected if they are on the same position or are equal (see {@link Node#equals(Object)}), which is how the two ends of a wire are connected.
+	 * The nodes are kept in an index by their position, so connecting a node only looks at the nodes on the same position and merges their networks, the smaller one into the bigger one.
+	 * On disconnect, only the networks the components were connected to get split up again, by collecting the remaining nodes trough the index.
+	 * 
+	 * @param disconnect True if the components should be disconnected, false if they should be connected
+	 * @param components The components to (dis)connect
+	 */
+	public synchronized void reconnect(boolean disconnect, Component... components) {
 		
 		if (!disconnect) {
 			
 			for (Component c : components) {
-				
 				for (Node n : c.getAllNodes()) {
-					
-					List<Node> newNet = null;
-					
-					Vec2i pos = n.getVisualPosition();
-					
-					for (int net = 0; net < this.networks.size(); net++) {
-						List<Node> network = this.networks.get(net);
-						for (Node n2 : network) {
-							
-							if (n2.getVisualPosition().equals(pos) || n2.equals(n)) {
-								
-								if (newNet == null) {
-									newNet = network;
-								} else {
-									removeNet(net);
-									newNet.addAll(network);
-									
-
-								}
-								
-								break;
-								
-							}
-							
-						}
-					}
-
-					if (newNet == null) {
-						newNet = new AsyncArrayList<>();
-						newNet.add(n);
-						this.networks.add(newNet);
-						this.valuesPri.add(new FastAsyncMap<>());
-						this.valuesSec.add(new FastAsyncMap<>());
-					} else {
-						newNet.add(n);
-					}
-					
+					connectNode(n);
 				}
-				
 			}
 			
 		} else {
 			
-			List<Component> disconnectedComponents = new ArrayList<>();
+			List<List<Node>> affectedNets = new ArrayList<>();
 			
 			for (Component c : components) {
 				for (Node n : c.getAllNodes()) {
 					
+					if (!unindexNode(n)) continue;
+					int netId = findNet(n);
+					if (netId < 0) continue;
 					
-					for (int net = 0; net < this.networks.size(); net++) {
-						List<Node> network = this.networks.get(net);
-						
-						if (network.contains(n)) {
-							
-							removeNet(net);
-							for (Node n2 : network) {
-								if (!disconnectedComponents.contains(n2.getComponent())) disconnectedComponents.add(n2.getComponent());
-							}
-							
-						}
-						
-					}
-					
+					List<Node> network = this.networks.get(netId);
+					if (!affectedNets.stream().anyMatch(affectedNet -> affectedNet == network)) affectedNets.add(network);
 					
 				}
 			}
 			
-			for (Component c : components) {
-				disconnectedComponents.remove(c);
+			for (List<Node> network : affectedNets) {
+				removeNet(network.get(0).getNetId());
 			}
-			
-			if (!disconnectedComponents.isEmpty()) {
-				reconnect(false, disconnectedComponents.toArray(i -> new Component[i]));
+			for (List<Node> network : affectedNets) {
+				for (Node n : network) n.setNetId(-1);
+			}
+			for (List<Node> network : affectedNets) {
+				for (Node n : network) {
+					if (n.getNetId() < 0 && this.connectedPositions.containsKey(n)) addNet(collectNet(n, this.networks.size(), null));
+				}
 			}
 			
 		}
 		
+		invalidateSimulationIndex();
+		
 	}
 	
-	protected NetState getNetValue(int netId, String lane) {
-		return this.valuesSec.size() > netId ? safeLaneRead(valuesSec.get(netId), lane) : NetState.FLOATING;
+	public int getNetCount() {
+		return this.networks.size();
 	}
-
-	protected Map<String, NetState> getNetLanes(int netId) {
+	
+	public LaneStateMap getNetValuesPri(int netId) {
+		return this.valuesPri.size() > netId ? this.valuesPri.get(netId) : null;
+	}
+	
+	public LaneStateMap getNetValuesSec(int netId) {
+		return this.valuesSec.size() > netId ? this.valuesSec.get(netId) : null;
+	}
+	
+	/**
+	 * Replaces the lane states of the network, used to share the states of an network with networks of other circuits.
+	 * This does not count as modification of the circuit, the state maps are replaced again when the network gets modified.
+	 */
+	public synchronized void setNetValues(int netId, LaneStateMap valuesPri, LaneStateMap valuesSec) {
+		if (netId >= this.valuesPri.size() || netId >= this.valuesSec.size()) return;
+		this.valuesPri.set(netId, valuesPri);
+		this.valuesSec.set(netId, valuesSec);
+		this.netIndexValid = false;
+		this.partitionsValid = false;
+		this.compiledValid = false;
+	}
+	
+	protected NetState getNetValue(int netId, int lane) {
+		return this.valuesSec.size() > netId ? this.valuesSec.get(netId).getState(lane) : NetState.FLOATING;
+	}
+	
+	protected LaneStateMap getNetLanes(int netId) {
 		return this.valuesSec.size() > netId ? this.valuesSec.get(netId) : null;
 	}
 
-	protected Map<String, NetState> getNetLanesPri(int netId) {
+	protected LaneStateMap getNetLanesPri(int netId) {
 		return this.valuesSec.size() > netId ? this.valuesSec.get(netId) : null;
 	}
 
-	protected void applyNetValue(int netId, NetState state, String lane) {
+	protected void applyNetValue(int netId, NetState state, int lane) {
 		if (netId >= this.valuesPri.size()) return;
-		NetState resultingState = combineStates(safeLaneRead(this.valuesPri.get(netId), lane), state, this.shortCircuitType);
-		this.valuesPri.get(netId).put(lane, resultingState);
-		//this.valuesSec.get(netId).put(lane, resultingState);
+		this.valuesPri.get(netId).combineLaneCode(lane, state.getLaneCode(), this.shortCircuitType);
 	}
 	
 	protected void applyNetLanes(int netId, Map<String, NetState> laneStates) {
 		if (netId >= this.valuesPri.size()) return;
-		Map<String, NetState> laneStatesPri = this.valuesPri.get(netId);
-		//Map<String, NetState> laneStatesSec = this.valuesSec.get(netId);
-		for (String lane : laneStates.keySet()) {
-			NetState resultingState = combineStates(safeLaneRead(laneStatesPri, lane), laneStates.get(lane), this.shortCircuitType);
-			if (lane != null && resultingState != null) {
-				laneStatesPri.put(lane, resultingState);
-				//laneStatesSec.put(lane, resultingState);
+		LaneStateMap laneStatesPri = this.valuesPri.get(netId);
+		if (laneStates instanceof LaneStateMap laneStateMap) {
+			LaneTable sourceLanes = laneStateMap.getLaneTable();
+			for (int lane = laneStateMap.nextLane(0); lane >= 0; lane = laneStateMap.nextLane(lane + 1)) {
+				int targetLane = sourceLanes == this.laneTable ? lane : this.laneTable.intern(sourceLanes.getLaneName(lane));
+				laneStatesPri.combineLaneCode(targetLane, laneStateMap.getLaneCode(lane), this.shortCircuitType);
+			}
+		} else {
+			for (String lane : laneStates.keySet()) {
+				NetState state = laneStates.get(lane);
+				if (lane != null && state != null) laneStatesPri.combineLaneCode(this.laneTable.intern(lane), state.getLaneCode(), this.shortCircuitType);
 			}
 		}
 	}
@@ -302,21 +876,26 @@ public class Circuit {
 	}
 	
 	public NetState getNetState(Node node, String lane) {
-		OptionalInt netId = findNet(node);
-		if (netId.isEmpty()) return NetState.FLOATING;
-		return getNetValue(netId.getAsInt(), lane);
+		return getNetState(node, this.laneTable.lookup(lane));
 	}
 	
-	public Map<String, NetState> getLaneMapReference(Node node) {
-		OptionalInt netId = findNet(node);
-		if (netId.isEmpty()) return null;
-		return getNetLanes(netId.getAsInt());
+	public NetState getNetState(Node node, int lane) {
+		int netId = findNet(node);
+		NetState state = netId < 0 ? NetState.FLOATING : getNetValue(netId, lane);
+		if (state == NetState.FLOATING || state == NetState.SHORT_CIRCUIT) this.randomStateRead = true;
+		return state;
+	}
+	
+	public LaneStateMap getLaneMapReference(Node node) {
+		int netId = findNet(node);
+		if (netId < 0) return null;
+		return getNetLanes(netId);
 	}
 
-	public Map<String, NetState> getLaneMapReferencePri(Node node) {
-		OptionalInt netId = findNet(node);
-		if (netId.isEmpty()) return null;
-		return getNetLanesPri(netId.getAsInt());
+	public LaneStateMap getLaneMapReferencePri(Node node) {
+		int netId = findNet(node);
+		if (netId < 0) return null;
+		return getNetLanesPri(netId);
 	}
 	
 	public void setNetState(Node node, NetState state) {
@@ -325,42 +904,108 @@ public class Circuit {
 	
 	public void writeLanes(Node node, Map<String, NetState> laneStates) {
 		if (laneStates == null || laneStates.isEmpty()) return;
-		OptionalInt netId = findNet(node);
-		if (netId.isPresent()) applyNetLanes(netId.getAsInt(), laneStates);
+		int netId = findNet(node);
+		if (netId >= 0) applyNetLanes(netId, laneStates);
 	}
 	
 	public void setNetState(Node node, NetState state, String lane) {
-		OptionalInt netId = findNet(node);
-		if (netId.isPresent()) applyNetValue(netId.getAsInt(), state, lane);
+		setNetState(node, state, this.laneTable.intern(lane));
+	}
+	
+	public void setNetState(Node node, NetState state, int lane) {
+		int netId = findNet(node);
+		if (netId >= 0) applyNetValue(netId, state, lane);
 	}
 
 	public void resetNetworks() {
+		this.simulationTick = 0;
+		if (this.history != null) this.history.clear();
 		for (int i = 0; i < this.valuesPri.size(); i++) this.valuesPri.get(i).clear();
-		for (int i = 0; i < this.valuesSec.size(); i++) {
-			for (String lane : this.valuesSec.get(i).keySet()) {
-				this.valuesSec.get(i).put(lane, NetState.LOW);
-			}
-		}
+		for (int i = 0; i < this.valuesSec.size(); i++) this.valuesSec.get(i).setPresentLanes(NetState.LOW);
 		this.components.forEach(Component::reset);
 	}
 	
 	public void updateCircuit() {
+		evaluateCircuit();
+		commitCircuit();
+	}
+	
+	/**
+	 * Updates the circuit until its nets stop changing or start to oscillate, sub-circuits are not simulated.
+	 * Use {@link CircuitProcessor#tickUntilSettled(int)} to simulate an circuit together with its sub-circuits.
+	 * 
+	 * @param maxTicks The maximum number of ticks to simulate
+	 * @see SettleDetector
+	 */
+	public SettleResult updateUntilSettled(int maxTicks) {
+		return new SettleDetector(() -> List.of(this), this::updateCircuit).run(maxTicks);
+	}
+	
+	/**
+	 * Executes the first half of an tick, the primary lane states are cleared and written again by the components.
+	 * The components only read the secondary lane states, which are not modified until {@link #commitCircuit()} is called.
+	 * This allows the circuit processor to evaluate all circuits of an hierarchy before any of them gets committed, so the results do not depend on the order in which the circuits are processed.
+	 */
+	public void evaluateCircuit() {
 		assert !this.virtual : "Can't simulate virtual circuit!";
+		this.simulationTick++;
+		UpdateMode updateMode = this.updateMode;
+		this.tickMode = updateMode;
+		if (updateMode == UpdateMode.COMPILED) {
+			evaluateCompiled();
+			return;
+		}
+		if (this.compiledCircuit != null) releaseCompiledCircuit();
+		if (updateMode == UpdateMode.EVENT_DRIVEN) {
+			evaluateEventDriven();
+			return;
+		}
+		if (!this.partitionsValid) rebuildPartitions();
+		if (this.partitions.length > 1) {
+			evaluatePartitioned();
+			return;
+		}
 		this.valuesPri.forEach(holder -> holder.clear());
 		this.components.forEach(Component::updateIO);
-		
-		
+	}
+	
+	/**
+	 * Executes the second half of an tick, the new lane states are copied to the secondary lane states to be read in the next tick.
+	 */
+	public void commitCircuit() {
+		recordWaveform();
+		if (this.tickMode == UpdateMode.EVENT_DRIVEN) {
+			recordHistory(this.touchedNets);
+			commitEventDriven();
+			return;
+		}
+		if (this.partitions.length > 1 && this.tickMode != UpdateMode.COMPILED) {
+			recordHistory(null);
+			commitPartitioned();
+			return;
+		}
 		
 //		List<Map<String, NetState>> temp = this.valuesSec;
 //		this.valuesSec = this.valuesPri;
 //		this.valuesPri = temp;
 //		this.valuesPri.forEach(m -> m.keySet().forEach(k -> m.put(k, NetState.FLOATING)));
 		
+		NetHistory history = this.history;
+		if (history != null) {
+			// Compare the nets while they get committed, so every net is only read once
+			history.beginTick(this);
+			for (int i = 0; i < this.valuesPri.size(); i++) {
+				LaneStateMap valuesSec = this.valuesSec.get(i);
+				LaneStateMap valuesPri = this.valuesPri.get(i);
+				if (i < this.networks.size()) history.recordNet(i, valuesSec, valuesPri);
+				valuesSec.copyFrom(valuesPri);
+			}
+			history.endTick();
+			return;
+		}
+		
 		for (int i = 0; i < this.valuesPri.size(); i++) {
-			Map<String, NetState> laneDataSec = this.valuesSec.get(i);
-			Map<String, NetState> laneDataPri = this.valuesPri.get(i);
-			laneDataSec.putAll(laneDataPri);
-			laneDataSec.keySet().stream().filter(lane -> !laneDataPri.containsKey(lane)).toList().forEach(laneDataSec::remove);
+			this.valuesSec.get(i).copyFrom(this.valuesPri.get(i));
 		}
 		
 //		for (int i = 0; i < this.valuesPri.size(); i++) {
@@ -374,25 +1019,338 @@ public class Circuit {
 	
 	
 	
-	public synchronized boolean isNodeConnected(Node node) {
-		for (int i = 0; i < this.networks.size(); i++) {
-			for (Node n : this.networks.get(i)) {
-				if (n.equals(node)) {
-					return networks.size() > i ?  networks.get(i).size() > 1 : false;
+	/**
+	 * Splits the components in partitions that can be updated in parallel.
+	 * All components driving the same net are placed in the same partition, the resulting groups are distributed over the partitions by their size.
+	 * If the circuit is too small or consists of only one group, only one partition is created and the circuit is updated without partitioning.
+	 */
+	protected synchronized void rebuildPartitions() {
+		this.partitionsValid = true;
+		Component[] components = this.components.toArray(new Component[this.components.size()]);
+		int netCount = Math.min(this.networks.size(), Math.min(this.valuesPri.size(), this.valuesSec.size()));
+		
+		int partitionCount = this.partitionCount == AUTOMATIC_PARTITIONING ? Math.min(Runtime.getRuntime().availableProcessors(), components.length / MIN_PARTITION_SIZE) : this.partitionCount;
+		if (partitionCount <= 1) {
+			this.partitions = new CircuitPartition[0];
+			this.partitionTasks = new ForkJoinTask<?>[0];
+			return;
+		}
+		
+		// Group all components driving the same net
+		UnionFind groups = new UnionFind(components.length);
+		int[] netDrivers = new int[netCount];
+		Arrays.fill(netDrivers, -1);
+		for (int i = 0; i < components.length; i++) {
+			for (Node node : components[i].getOutputs()) {
+				int netId = findNet(node);
+				if (netId < 0 || netId >= netCount) continue;
+				if (netDrivers[netId] == -1) {
+					netDrivers[netId] = i;
+				} else {
+					groups.union(i, netDrivers[netId]);
 				}
 			}
 		}
-		return false;
+		int[] groupSizes = new int[components.length];
+		for (int i = 0; i < components.length; i++) groupSizes[groups.find(i)]++;
+		
+		// Distribute the groups over the partitions, largest first
+		Integer[] groupOrder = new Integer[components.length];
+		for (int i = 0; i < groupOrder.length; i++) groupOrder[i] = i;
+		Arrays.sort(groupOrder, (a, b) -> groupSizes[a] != groupSizes[b] ? Integer.compare(groupSizes[b], groupSizes[a]) : Integer.compare(a, b));
+		int[] partitionSizes = new int[partitionCount];
+		int[] groupPartitions = new int[components.length];
+		for (int group : groupOrder) {
+			if (groupSizes[group] == 0) break;
+			int partition = 0;
+			for (int i = 1; i < partitionCount; i++) if (partitionSizes[i] < partitionSizes[partition]) partition = i;
+			groupPartitions[group] = partition;
+			partitionSizes[partition] += groupSizes[group];
+		}
+		
+		List<List<Component>> partitionComponents = new ArrayList<>();
+		List<List<Integer>> partitionNets = new ArrayList<>();
+		for (int i = 0; i < partitionCount; i++) {
+			partitionComponents.add(new ArrayList<>());
+			partitionNets.add(new ArrayList<>());
+		}
+		for (int i = 0; i < components.length; i++) partitionComponents.get(groupPartitions[groups.find(i)]).add(components[i]);
+		for (int net = 0; net < netCount; net++) {
+			int partition = netDrivers[net] >= 0 ? groupPartitions[groups.find(netDrivers[net])] : net % partitionCount;
+			partitionNets.get(partition).add(net);
+		}
+		
+		List<CircuitPartition> partitions = new ArrayList<>();
+		for (int i = 0; i < partitionCount; i++) {
+			if (partitionComponents.get(i).isEmpty() && partitionNets.get(i).isEmpty()) continue;
+			List<Integer> nets = partitionNets.get(i);
+			partitions.add(new CircuitPartition(
+					partitionComponents.get(i).toArray(new Component[partitionComponents.get(i).size()]),
+					nets.stream().map(this.valuesPri::get).toArray(LaneStateMap[]::new),
+					nets.stream().map(this.valuesSec::get).toArray(LaneStateMap[]::new)
+			));
+		}
+		this.partitions = partitions.toArray(new CircuitPartition[partitions.size()]);
+		this.partitionTasks = new ForkJoinTask<?>[this.partitions.length];
+	}
+	
+	/**
+	 * Evaluates the components split into partitions, all partitions are evaluated in parallel.
+	 * After all of them finished, the new net states are committed in parallel by {@link #commitPartitioned()}.
+	 */
+	protected void evaluatePartitioned() {
+		CircuitPartition[] partitions = this.partitions;
+		ForkJoinTask<?>[] tasks = this.partitionTasks;
+		if (tasks.length != partitions.length) return;
+		for (int i = 0; i < partitions.length; i++) tasks[i] = partitions[i].getEvaluationTask();
+		invokePartitionTasks();
+	}
+	
+	protected void commitPartitioned() {
+		CircuitPartition[] partitions = this.partitions;
+		ForkJoinTask<?>[] tasks = this.partitionTasks;
+		if (tasks.length != partitions.length) return;
+		for (int i = 0; i < partitions.length; i++) tasks[i] = partitions[i].getCommitTask();
+		invokePartitionTasks();
+	}
+	
+	/**
+	 * Executes the partition tasks on the partition pool of the processor simulating this circuit and waits until all of them are completed.
+	 * Circuits that were not added to an processor use the common pool.
+	 */
+	protected void invokePartitionTasks() {
+		CircuitProcessor processor = this.processor;
+		ForkJoinPool pool = processor != null ? processor.getPartitionPool() : ForkJoinPool.commonPool();
+		if (ForkJoinTask.getPool() == pool) {
+			// Already running on an worker of the pool, which helps executing the tasks
+			ForkJoinTask.invokeAll(this.partitionTasks);
+		} else {
+			this.partitionPhaseTask.reinitialize();
+			try {
+				pool.invoke(this.partitionPhaseTask);
+			} catch (RejectedExecutionException e) {
+				// The processor was terminated while executing this tick
+				for (ForkJoinTask<?> task : this.partitionTasks) task.invoke();
+			}
+		}
+	}
+	
+	/**
+	 * Requests an update of the component in the next tick, even if none of its inputs changed.
+	 * Only has an effect in the {@link UpdateMode#EVENT_DRIVEN} mode, used by components that change their outputs without an input change.
+	 */
+	public void scheduleUpdate(Component component) {
+		if (this.updateMode != UpdateMode.EVENT_DRIVEN) return;
+		int index = component.getSimulationIndex();
+		if (Thread.currentThread() == this.updatingThread) {
+			// Requested while the components get updated, the component is updated again in the next tick like an component that read random values
+			if (isIndexed(component, index)) this.unstableComponents.set(index);
+		} else {
+			synchronized (this.requestedComponents) {
+				if (isIndexed(component, index)) this.requestedComponents.set(index);
+			}
+		}
+	}
+	
+	protected boolean isIndexed(Component component, int index) {
+		// Components not indexed yet get updated anyway when the index is rebuild
+		Component[] components = this.indexedComponents;
+		return index >= 0 && index < components.length && components[index] == component;
+	}
+	
+	/**
+	 * Rebuilds the fan-out index of the event driven update mode.
+	 * For each network the components reading from it and the components writing to it are collected.
+	 * All components get updated in the next tick.
+	 */
+	protected synchronized void rebuildNetIndex() {
+		this.netIndexValid = true;
+		Component[] components = this.components.toArray(new Component[this.components.size()]);
+		int netCount = this.networks.size();
+		
+		List<List<Integer>> readers = new ArrayList<>(netCount);
+		List<List<Integer>> drivers = new ArrayList<>(netCount);
+		for (int i = 0; i < netCount; i++) {
+			readers.add(new ArrayList<>());
+			drivers.add(new ArrayList<>());
+		}
+		List<Integer> alwaysUpdated = new ArrayList<>();
+		this.componentDrivenNets = new int[components.length][];
+		
+		for (int i = 0; i < components.length; i++) {
+			components[i].setSimulationIndex(i);
+			if (!components[i].isCombinational()) alwaysUpdated.add(i);
+			for (Node node : components[i].getInputs()) {
+				int netId = findNet(node);
+				// The components are visited in order, so an component reading the net twice was always added last
+				List<Integer> readerList = netId >= 0 ? readers.get(netId) : null;
+				if (readerList != null && (readerList.isEmpty() || readerList.get(readerList.size() - 1) != i)) readerList.add(i);
+			}
+			List<Integer> drivenNets = new ArrayList<>();
+			for (Node node : components[i].getOutputs()) {
+				int netId = findNet(node);
+				if (netId >= 0 && !drivenNets.contains(netId)) {
+					drivenNets.add(netId);
+					drivers.get(netId).add(i);
+				}
+			}
+			this.componentDrivenNets[i] = drivenNets.stream().mapToInt(Integer::intValue).toArray();
+		}
+		
+		this.netReaders = readers.stream().map(l -> l.stream().mapToInt(Integer::intValue).toArray()).toArray(int[][]::new);
+		this.netDrivers = drivers.stream().map(l -> l.stream().mapToInt(Integer::intValue).toArray()).toArray(int[][]::new);
+		this.alwaysUpdatedComponents = alwaysUpdated.stream().mapToInt(Integer::intValue).toArray();
+		this.componentQueue = new int[components.length];
+		
+		synchronized (this.requestedComponents) {
+			this.indexedComponents = components;
+			this.requestedComponents.clear();
+		}
+		this.scheduledComponents.clear();
+		this.scheduledComponents.set(0, components.length);
+		this.touchedNets.clear();
+		this.touchedNets.set(0, netCount);
+		this.unstableNets.clear();
+		this.unstableComponents.clear();
+		for (int i = 0; i < netCount; i++) {
+			if (this.valuesSec.get(i).hasShortCircuit()) this.unstableNets.set(i);
+		}
+	}
+	
+	/**
+	 * Evaluates one tick in the compiled mode, the evaluation code is generated again if the circuit was modified since the last tick.
+	 */
+	protected void evaluateCompiled() {
+		CompiledCircuit compiledCircuit = this.compiledCircuit;
+		if (!this.compiledValid || compiledCircuit == null) compiledCircuit = rebuildCompiledCircuit();
+		compiledCircuit.evaluate(this.shortCircuitType);
+	}
+	
+	/**
+	 * Writes the states held by the generated code back into the components after the circuit left the compiled mode.
+	 */
+	protected synchronized void releaseCompiledCircuit() {
+		if (this.compiledCircuit == null) return;
+		this.compiledCircuit.release();
+		this.compiledCircuit = null;
+	}
+	
+	protected synchronized CompiledCircuit rebuildCompiledCircuit() {
+		this.compiledValid = true;
+		if (this.compiledCircuit != null) this.compiledCircuit.release();
+		Component[] components = this.components.toArray(new Component[this.components.size()]);
+		int netCount = Math.min(this.networks.size(), Math.min(this.valuesPri.size(), this.valuesSec.size()));
+		LaneStateMap[] valuesPri = new LaneStateMap[netCount];
+		LaneStateMap[] valuesSec = new LaneStateMap[netCount];
+		for (int i = 0; i < netCount; i++) {
+			valuesPri[i] = this.valuesPri.get(i);
+			valuesSec[i] = this.valuesSec.get(i);
+		}
+		this.compiledCircuit = CompiledCircuit.compile(components, valuesPri, valuesSec);
+		return this.compiledCircuit;
+	}
+	
+	/**
+	 * Evaluates one tick in the event driven mode.
+	 * Only the components reading from an network that changed in the last tick, the components that can not be event driven and components that requested an update get updated.
+	 * The networks written by these components get cleared and recalculated, so all other components writing to the same networks have to be updated too.
+	 * Components that read random values (floating or short circuited lanes) get updated again in the next tick, to keep the same behavior as an full sweep.
+	 */
+	protected void evaluateEventDriven() {
+		boolean fullUpdate = false;
+		if (!this.netIndexValid) {
+			rebuildNetIndex();
+			fullUpdate = true;
+		}
+		
+		Component[] components = this.indexedComponents;
+		int netCount = Math.min(this.netReaders.length, this.valuesPri.size());
+		BitSet scheduled = this.scheduledComponents;
+		BitSet touched = this.touchedNets;
+		
+		if (!fullUpdate) {
+			touched.clear();
+			for (int i : this.alwaysUpdatedComponents) scheduled.set(i);
+			scheduled.or(this.unstableComponents);
+			this.unstableComponents.clear();
+			for (int net = this.unstableNets.nextSetBit(0); net >= 0 && net < netCount; net = this.unstableNets.nextSetBit(net + 1)) {
+				for (int i : this.netReaders[net]) scheduled.set(i);
+			}
+			synchronized (this.requestedComponents) {
+				scheduled.or(this.requestedComponents);
+				this.requestedComponents.clear();
+			}
+			
+			// All drivers of an network that gets recalculated have to write to it again
+			int[] queue = this.componentQueue;
+			int queueSize = 0;
+			for (int i = scheduled.nextSetBit(0); i >= 0; i = scheduled.nextSetBit(i + 1)) queue[queueSize++] = i;
+			while (queueSize > 0) {
+				int component = queue[--queueSize];
+				for (int net : this.componentDrivenNets[component]) {
+					if (touched.get(net)) continue;
+					touched.set(net);
+					for (int driver : this.netDrivers[net]) {
+						if (scheduled.get(driver)) continue;
+						scheduled.set(driver);
+						queue[queueSize++] = driver;
+					}
+				}
+			}
+		}
+		
+		for (int net = touched.nextSetBit(0); net >= 0 && net < netCount; net = touched.nextSetBit(net + 1)) this.valuesPri.get(net).clear();
+		this.updatingThread = Thread.currentThread();
+		try {
+			for (int i = scheduled.nextSetBit(0); i >= 0; i = scheduled.nextSetBit(i + 1)) {
+				this.randomStateRead = false;
+				components[i].updateIO();
+				if (this.randomStateRead) this.unstableComponents.set(i);
+			}
+		} finally {
+			this.updatingThread = null;
+		}
+		scheduled.clear();
+	}
+	
+	/**
+	 * Commits the networks recalculated in the event driven mode and schedules the components reading from the networks that changed.
+	 */
+	protected void commitEventDriven() {
+		int netCount = Math.min(this.netReaders.length, this.valuesPri.size());
+		BitSet scheduled = this.scheduledComponents;
+		BitSet touched = this.touchedNets;
+		for (int net = touched.nextSetBit(0); net >= 0 && net < netCount; net = touched.nextSetBit(net + 1)) {
+			LaneStateMap laneDataSec = this.valuesSec.get(net);
+			if (laneDataSec.copyFrom(this.valuesPri.get(net))) {
+				for (int i : this.netReaders[net]) scheduled.set(i);
+			}
+			if (laneDataSec.hasShortCircuit()) {
+				this.unstableNets.set(net);
+			} else {
+				this.unstableNets.clear(net);
+			}
+		}
+	}
+	
+	public synchronized boolean isNodeConnected(Node node) {
+		int netId = findNet(node);
+		return netId >= 0 ? this.networks.get(netId).size() > 1 : false;
 	}
 	
 	public synchronized void add(Component component) {
 		if (!this.virtual) component.created();
 		this.components.add(component);
+		if (this.nextComponentNr >= 0) this.nextComponentNr = Math.max(this.nextComponentNr, component.getComponentNr() + 1);
+		invalidateSimulationIndex();
 	}
 	
 	public synchronized void remove(Component component) {
 		if (!this.virtual) component.dispose();
 		this.components.remove(component);
+		for (int i = this.probes.size() - 1; i >= 0; i--) if (this.probes.get(i).node().getComponent() == component) this.probes.remove(i);
+		this.nextComponentNr = -1;
+		invalidateSimulationIndex();
 	}
 	
 	
@@ -406,16 +1364,24 @@ public class Circuit {
 	}
 	
 	public synchronized void clear() {
+		this.networks.forEach(network -> network.forEach(node -> node.setNetId(-1)));
 		this.components.clear();
+		this.nextComponentNr = -1;
 		this.networks.clear();
+		this.nodesByPosition.clear();
+		this.nodesByIdentity.clear();
+		this.connectedPositions.clear();
 		this.valuesPri.clear();
 		this.valuesSec.clear();
+		invalidateSimulationIndex();
 	}
 	
 	public int nextFreeId() {
-		OptionalInt lastId = this.components.stream().mapToInt(Component::getComponentNr).max();
-		if (lastId.isEmpty()) return 0;
-		return lastId.getAsInt() + 1;
+		if (this.nextComponentNr < 0) {
+			OptionalInt lastId = this.components.stream().mapToInt(Component::getComponentNr).max();
+			this.nextComponentNr = lastId.isEmpty() ? 0 : lastId.getAsInt() + 1;
+		}
+		return this.nextComponentNr;
 	}
 	
 	public Vec4i getCircuitBounds(Predicate<Component> componentPredicate) {
@@ -1,5 +1,8 @@
 package de.m_marvin.logicsim.logic;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
@@ -71,6 +74,7 @@ public abstract class Component {
 	protected final List<PassivNode> passives = new ArrayList<>();
 	protected final Circuit circuit;
 	protected final int componentNr;
+	protected int simulationIndex = -1;
 	
 	public Component(Circuit circuit) {
 		this.circuit = circuit;
@@ -101,6 +105,22 @@ public abstract class Component {
 		return componentNr;
 	}
 	
+	/**
+	 * Returns the index of this component in the update index of its circuit, used to request updates without searching the component.
+	 * 
+	 * @return The index or -1 if the circuit did not index this component yet
+	 */
+	public int getSimulationIndex() {
+		return simulationIndex;
+	}
+	
+	/**
+	 * Should only be called by the circuit when rebuilding its update index.
+	 */
+	public void setSimulationIndex(int simulationIndex) {
+		this.simulationIndex = simulationIndex;
+	}
+	
 	public String getLabel() {
 		return label;
 	}
@@ -131,6 +151,16 @@ public abstract class Component {
 	public abstract void render();
 	public abstract void updateIO();
 	
+	/**
+	 * Returns true if the outputs of this component only depend on the current states of its input nodes.
+	 * In the event driven update mode of the circuit, such components only get updated if one of the networks they read from changed.
+	 * Components with internal timing, user controlled states or connections to other circuits have to return false, they get updated every tick.
+	 * A combinational component can still request an update by calling {@link Circuit#scheduleUpdate(Component)}.
+	 */
+	public boolean isCombinational() {
+		return false;
+	}
+	
 	/**
 	 * Gets triggered when the component is clicked in the editor
 	 * @param clickPosition The position of the courser on the editor-area
@@ -189,6 +219,32 @@ public abstract class Component {
 		}
 	}
 	
+	/**
+	 * Read an raw data block from an binary circuit file, called before {@link #deserialize(JsonObject)}.
+	 * In the binary format, JSON arrays containing only byte values are stored as raw data blocks.
+	 * If this method returns true, the data has been consumed and the array is not part of the JSON entry passed to deserialize.
+	 * @param key The key of the array in the components JSON entry
+	 * @param data The data of the block, an slice of the read file and only valid during this call
+	 * @return true if the component has read the data
+	 */
+	public boolean deserializeRawData(String key, ByteBuffer data) {
+		return false;
+	}
+	
+	/**
+	 * Writes the internal simulation state of this component that is not stored in the networks, for example the content of an memory, into an simulation snapshot.
+	 * The configuration of the component is not part of the state, it is stored by {@link #serialize(JsonObject)}.
+	 * @param output The stream of the snapshot
+	 * @see de.m_marvin.logicsim.logic.simulator.SimulationSnapshot
+	 */
+	public void writeState(DataOutputStream output) throws IOException {}
+	
+	/**
+	 * Restores the state written by {@link #writeState(DataOutputStream)}, exactly the same number of bytes has to be read.
+	 * @param state The data of the snapshot, positioned at the state of this component
+	 */
+	public void readState(ByteBuffer state) {}
+	
 	@Override
 	public boolean equals(Object obj) {
 		if (obj instanceof Component other) return
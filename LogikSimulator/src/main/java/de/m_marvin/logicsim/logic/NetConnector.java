@@ -19,6 +19,11 @@ public abstract class NetConnector extends Component {
 		super(circuit);
 	}
 	
+	@Override
+	public boolean isCombinational() {
+		return true;
+	}
+	
 	@Override
 	public void updateIO() {}
 	
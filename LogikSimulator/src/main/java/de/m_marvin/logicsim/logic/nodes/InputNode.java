@@ -1,11 +1,10 @@
 package de.m_marvin.logicsim.logic.nodes;
 
-import java.util.Map;
-
 import de.m_marvin.logicsim.LogicSim;
 import de.m_marvin.logicsim.logic.Circuit.NetState;
-import de.m_marvin.logicsim.logic.Circuit;
 import de.m_marvin.logicsim.logic.Component;
+import de.m_marvin.logicsim.logic.simulator.LaneStateMap;
+import de.m_marvin.logicsim.logic.simulator.LaneTable;
 import de.m_marvin.logicsim.ui.widgets.InputDialog;
 import de.m_marvin.logicsim.ui.windows.Editor;
 import de.m_marvin.univec.impl.Vec2i;
@@ -33,23 +32,18 @@ public class InputNode extends Node {
 	}
 		
 	public boolean getState() {
-		return this.getCircuit().getNetState(this, getLaneTag()).getLogicState();
+		return this.getCircuit().getNetState(this, getLaneId()).getLogicState();
 	}
 	
 	public int readBusValue(int bitCount) {
-		String[] s = this.getLaneTag().split("(?<=\\D)(?=\\d)");
-		String inputBus = s[0];
-		int indexOffset = s.length > 1 ? Integer.valueOf(s[1]) : 0;
-		Map<String, NetState> laneData = this.getLaneReference();
+		LaneStateMap laneData = this.getLaneReference();
+		if (laneData == null) return 0;
+		LaneTable lanes = laneData.getLaneTable();
 		
-		// TODO Optimize
 		int value = 0;
-		for (String lane : laneData.keySet()) {
-			String[] busTag = lane.split("(?<=\\D)(?=\\d)");
-			if (busTag.length == 2 && busTag[0].equals(inputBus)) {
-				int bitIndex = Integer.parseInt(busTag[1]);
-				if (bitIndex >= indexOffset && bitIndex < indexOffset + bitCount && Circuit.safeLaneRead(laneData, lane).getLogicState()) value |= (1 << (bitIndex - indexOffset));
-			}
+		for (int i = 0; i < bitCount; i++) {
+			int laneCode = laneData.getLaneCode(lanes.lookup(this.laneBus, this.laneBitOffset + i));
+			if (laneCode != 0 && NetState.fromLaneCode(laneCode).getLogicState()) value |= (1 << i);
 		}
 		
 		return value;
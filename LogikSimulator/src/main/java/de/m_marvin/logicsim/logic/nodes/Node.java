@@ -1,11 +1,11 @@
 package de.m_marvin.logicsim.logic.nodes;
 
-import java.util.Map;
 import java.util.Objects;
 
 import de.m_marvin.logicsim.logic.Circuit;
 import de.m_marvin.logicsim.logic.Component;
-import de.m_marvin.logicsim.logic.Circuit.NetState;
+import de.m_marvin.logicsim.logic.simulator.LaneStateMap;
+import de.m_marvin.logicsim.logic.simulator.LaneTable;
 import de.m_marvin.univec.impl.Vec2i;
 
 /**
@@ -27,24 +27,69 @@ public abstract class Node {
 	protected final Vec2i visualOffset;
 	
 	protected String laneTag;
+	protected String laneBus;
+	protected int laneBitOffset;
+	protected LaneTable laneTable;
+	protected int laneId;
+	protected int netId = -1;
 	
 	public Node(Component component, int nodeNr, String label, Vec2i visualOffset) {
 		this.component = component;
 		this.nodeNr = nodeNr;
 		this.label = label;
 		this.visualOffset = visualOffset;
-		this.laneTag = Circuit.DEFAULT_BUS_LANE;
+		updateLaneTag(Circuit.DEFAULT_BUS_LANE);
 	}
 	
-	public void setLaneTag(String laneTag) {
+	protected void updateLaneTag(String laneTag) {
+		String[] s = LaneTable.splitLane(laneTag);
+		int bitOffset = 0;
+		try {
+			if (s.length > 1) bitOffset = Integer.valueOf(s[1]);
+		} catch (NumberFormatException e) {}
+		this.laneBus = s[0];
+		this.laneBitOffset = bitOffset;
+		this.laneTable = null;
 		this.laneTag = laneTag;
+	}
+	
+	public void setLaneTag(String laneTag) {
+		updateLaneTag(laneTag);
 		this.component.nodeChanged();
+		this.component.getCircuit().laneTagChanged(this);
 	}
 	
 	public String getLaneTag() {
 		return laneTag;
 	}
 	
+	/**
+	 * Returns the bus name of the lane tag, "bus12" results in "bus".
+	 */
+	public String getLaneBus() {
+		return laneBus;
+	}
+	
+	/**
+	 * Returns the bit index of the lane tag, "bus12" results in 12.
+	 */
+	public int getLaneBitOffset() {
+		return laneBitOffset;
+	}
+	
+	/**
+	 * Returns the id of the lane tag in the lane table of the circuit.
+	 * The id is cached and only looked up again if the lane tag changes.
+	 */
+	public int getLaneId() {
+		LaneTable lanes = this.getCircuit().getLaneTable();
+		if (this.laneTable != lanes) {
+			this.laneId = lanes.intern(this.laneTag);
+			this.laneTable = lanes;
+		}
+		return this.laneId;
+	}
+	
 	public Component getComponent() {
 		return component;
 	}
@@ -69,11 +114,28 @@ public abstract class Node {
 		return this.component.getCircuit();
 	}
 	
-	public Map<String, NetState> getLaneReference() {
+	/**
+	 * Returns the id of the network this node is currently connected to in its circuit.
+	 * The id is assigned by the circuit when it connects the node and stays the same until the network gets modified.
+	 * 
+	 * @return The id of the network or -1 if the node is not connected
+	 */
+	public int getNetId() {
+		return netId;
+	}
+	
+	/**
+	 * Should only be called by the circuit when (re)connecting its networks.
+	 */
+	public void setNetId(int netId) {
+		this.netId = netId;
+	}
+	
+	public LaneStateMap getLaneReference() {
 		return this.getCircuit().getLaneMapReference(this);
 	}
 
-	public Map<String, NetState> getLaneReferencePri() {
+	public LaneStateMap getLaneReferencePri() {
 		return this.getCircuit().getLaneMapReferencePri(this);
 	}
 	
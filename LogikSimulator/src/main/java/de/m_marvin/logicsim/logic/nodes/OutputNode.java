@@ -4,8 +4,9 @@ import java.util.Map;
 
 import de.m_marvin.logicsim.LogicSim;
 import de.m_marvin.logicsim.logic.Circuit.NetState;
-import de.m_marvin.logicsim.logic.simulator.FastAsyncMap;
+import de.m_marvin.logicsim.logic.Circuit;
 import de.m_marvin.logicsim.logic.Component;
+import de.m_marvin.logicsim.logic.simulator.LaneTable;
 import de.m_marvin.logicsim.ui.widgets.InputDialog;
 import de.m_marvin.logicsim.ui.windows.Editor;
 import de.m_marvin.univec.impl.Vec2i;
@@ -37,20 +38,16 @@ public class OutputNode extends Node {
 	}
 	
 	public void setState(boolean state) {
-		this.getCircuit().setNetState(this, state ? NetState.HIGH : NetState.LOW, getLaneTag());
+		this.getCircuit().setNetState(this, state ? NetState.HIGH : NetState.LOW, getLaneId());
 	}
 	
-	protected static Map<String, NetState> writeCache = new FastAsyncMap<>();
-	
 	public void writeBusValue(int value, int bitCount) {
-		String[] s = getLaneTag().split("(?<=\\D)(?=\\d)");
-		String outputBus = s[0];
-		int indexOffset = s.length > 1 ? Integer.valueOf(s[1]) : 0;
+		Circuit circuit = this.getCircuit();
+		LaneTable lanes = circuit.getLaneTable();
 		for (int i = 0; i < bitCount; i++) {
-			boolean state = (value & (1 << i + indexOffset)) > 0;
-			writeCache.put(outputBus + (i + indexOffset), state ? NetState.HIGH : NetState.LOW);
+			boolean state = (value & (1 << i + this.laneBitOffset)) > 0;
+			circuit.setNetState(this, state ? NetState.HIGH : NetState.LOW, lanes.intern(this.laneBus, i + this.laneBitOffset));
 		}
-		writeLanes(writeCache);
 	}
 	
 }
@@ -40,6 +40,10 @@ public class BoolConstComponent extends Component {
 		return 40;
 	}
 
+	public boolean getState() {
+		return this.toggle;
+	}
+	
 	@Override
 	public void updateIO() {
 		this.outputs.get(0).setState(this.toggle);
@@ -1,5 +1,8 @@
 package de.m_marvin.logicsim.logic.parts;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.Optional;
 
@@ -46,6 +49,14 @@ public class BoolInputComponent extends Component implements ISubCircuitIO {
 	public int getVisualHeight() {
 		return 40;
 	}
+	
+	public boolean getState() {
+		return this.toggle;
+	}
+	
+	public void setState(boolean state) {
+		this.toggle = state;
+	}
 
 	@Override
 	public void updateIO() {
@@ -78,6 +89,18 @@ public class BoolInputComponent extends Component implements ISubCircuitIO {
 		this.toggle = false;
 	}
 	
+	@Override
+	public void writeState(DataOutputStream output) throws IOException {
+		output.writeBoolean(this.toggle);
+	}
+	
+	@Override
+	public void readState(ByteBuffer state) {
+		this.toggle = state.get() != 0;
+		// The lane reference is only updated while the parent circuit is simulated, it has to be valid for the first tick after restoring
+		queryIO();
+	}
+	
 	@Override
 	public void render()  {
 		
@@ -104,6 +127,11 @@ public class BoolInputComponent extends Component implements ISubCircuitIO {
 		}
 	}
 	
+	@Override
+	public boolean isPassThrough() {
+		return true;
+	}
+	
 	@Override
 	public Node makeNode(Component subCircuitComponent, int id, Vec2i offset, boolean connectToCircuit) {
 		InputNode overrideNode = new InputNode(subCircuitComponent, id, this.label, offset);
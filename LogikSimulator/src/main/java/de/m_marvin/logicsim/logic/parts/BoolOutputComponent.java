@@ -1,5 +1,8 @@
 package de.m_marvin.logicsim.logic.parts;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.Optional;
 
@@ -47,6 +50,10 @@ public class BoolOutputComponent extends Component implements ISubCircuitIO {
 		return 40;
 	}
 
+	public boolean getState() {
+		return this.state;
+	}
+	
 	@Override
 	public void updateIO() {
 		this.state = this.inputs.get(0).getState();
@@ -77,6 +84,18 @@ public class BoolOutputComponent extends Component implements ISubCircuitIO {
 		this.state = false;
 	}
 	
+	@Override
+	public void writeState(DataOutputStream output) throws IOException {
+		output.writeBoolean(this.state);
+	}
+	
+	@Override
+	public void readState(ByteBuffer state) {
+		this.state = state.get() != 0;
+		// The lane reference is only updated while this circuit is simulated, it has to be valid for the first tick after restoring
+		if (this.subCircuitOutput.isPresent()) this.laneReferenceCache = this.inputs.get(0).getLaneReferencePri();
+	}
+	
 	@Override
 	public void queryIO() {
 		if (this.subCircuitOutput.isPresent() && this.laneReferenceCache != null) {
@@ -92,6 +111,11 @@ public class BoolOutputComponent extends Component implements ISubCircuitIO {
 		}
 	}
 	
+	@Override
+	public boolean isPassThrough() {
+		return true;
+	}
+	
 	@Override
 	public Node makeNode(Component subCircuitComponent, int id, Vec2i offset, boolean connectToCircuit) {
 		OutputNode overrideNode = new OutputNode(subCircuitComponent, id, this.label, offset);
@@ -1,7 +1,5 @@
 package de.m_marvin.logicsim.logic.parts;
 
-import java.util.Map;
-
 import com.google.gson.JsonObject;
 
 import de.m_marvin.logicsim.LogicSim;
@@ -9,7 +7,8 @@ import de.m_marvin.logicsim.logic.Circuit;
 import de.m_marvin.logicsim.logic.Circuit.NetState;
 import de.m_marvin.logicsim.logic.Component;
 import de.m_marvin.logicsim.logic.nodes.OutputNode;
-import de.m_marvin.logicsim.logic.simulator.FastAsyncMap;
+import de.m_marvin.logicsim.logic.simulator.LaneStateMap;
+import de.m_marvin.logicsim.logic.simulator.LaneTable;
 import de.m_marvin.logicsim.ui.TextRenderer;
 import de.m_marvin.logicsim.ui.widgets.EditorArea;
 import de.m_marvin.logicsim.ui.widgets.InputDialog;
@@ -31,7 +30,7 @@ public class BusConstComponent extends Component {
 	protected int value;
 	protected int bitCount = 8;
 	
-	protected Map<String, NetState> writeLaneCache = new FastAsyncMap<>();
+	protected LaneStateMap writeLaneCache = new LaneStateMap(this.circuit.getLaneTable());
 	
 	public BusConstComponent(Circuit circuit) {
 		super(circuit);
@@ -60,6 +59,14 @@ public class BusConstComponent extends Component {
 		return 0;
 	}
 	
+	public int getValue() {
+		return this.value;
+	}
+	
+	public int getBitCount() {
+		return this.bitCount;
+	}
+	
 	@Override
 	public void nodeChanged() {
 		rewriteCache();
@@ -67,12 +74,12 @@ public class BusConstComponent extends Component {
 	
 	public void rewriteCache() {
 		writeLaneCache.clear();
-		String[] s = getOutputBus().split("(?<=\\D)(?=\\d)");
-		String outputBus = s[0];
-		int indexOffset = s.length > 1 ? Integer.valueOf(s[1]) : 0;
+		OutputNode output = this.outputs.get(0);
+		LaneTable lanes = writeLaneCache.getLaneTable();
+		int indexOffset = output.getLaneBitOffset();
 		for (int i = 0; i < bitCount; i++) {
 			boolean state = (value & (1 << i + indexOffset)) > 0;
-			writeLaneCache.put(outputBus + (i + indexOffset), state ? NetState.HIGH : NetState.LOW);
+			writeLaneCache.setLaneCode(lanes.intern(output.getLaneBus(), i + indexOffset), state ? NetState.HIGH.getLaneCode() : NetState.LOW.getLaneCode());
 		}
 	}
 	
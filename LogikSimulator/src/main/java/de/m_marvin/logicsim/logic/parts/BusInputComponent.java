@@ -1,6 +1,8 @@
 package de.m_marvin.logicsim.logic.parts;
 
-import java.util.Map;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Optional;
 
 import com.google.gson.JsonObject;
@@ -13,7 +15,8 @@ import de.m_marvin.logicsim.logic.nodes.InputNode;
 import de.m_marvin.logicsim.logic.nodes.Node;
 import de.m_marvin.logicsim.logic.nodes.OutputNode;
 import de.m_marvin.logicsim.logic.parts.SubCircuitComponent.ISubCircuitIO;
-import de.m_marvin.logicsim.logic.simulator.FastAsyncMap;
+import de.m_marvin.logicsim.logic.simulator.LaneStateMap;
+import de.m_marvin.logicsim.logic.simulator.LaneTable;
 import de.m_marvin.logicsim.ui.TextRenderer;
 import de.m_marvin.logicsim.ui.widgets.EditorArea;
 import de.m_marvin.logicsim.ui.widgets.InputDialog;
@@ -33,11 +36,11 @@ public class BusInputComponent extends Component implements ISubCircuitIO {
 	/* End of factory methods */
 	
 	protected Optional<InputNode> subCircuitInput = Optional.empty();
-	protected Map<String, NetState> laneReferenceCache;
+	protected LaneStateMap laneReferenceCache;
 	protected int value;
 	protected int bitCount = 8;
 	
-	protected Map<String, NetState> writeLaneCache = new FastAsyncMap<>();
+	protected LaneStateMap writeLaneCache = new LaneStateMap(this.circuit.getLaneTable());
 	
 	public BusInputComponent(Circuit circuit) {
 		super(circuit);
@@ -66,6 +69,24 @@ public class BusInputComponent extends Component implements ISubCircuitIO {
 		return 0;
 	}
 	
+	public int getValue() {
+		return this.value;
+	}
+	
+	public void setValue(int value) {
+		this.value = value;
+		rewriteCache();
+	}
+	
+	public int getBitCount() {
+		return this.bitCount;
+	}
+	
+	public void setBitCount(int bitCount) {
+		this.bitCount = bitCount;
+		rewriteCache();
+	}
+	
 	@Override
 	public void nodeChanged() {
 		rewriteCache();
@@ -73,12 +94,12 @@ public class BusInputComponent extends Component implements ISubCircuitIO {
 	
 	public void rewriteCache() {
 		writeLaneCache.clear();
-		String[] s = getOutputBus().split("(?<=\\D)(?=\\d)");
-		String outputBus = s[0];
-		int indexOffset = s.length > 1 ? Integer.valueOf(s[1]) : 0;
+		OutputNode output = this.outputs.get(0);
+		LaneTable lanes = writeLaneCache.getLaneTable();
+		int indexOffset = output.getLaneBitOffset();
 		for (int i = 0; i < bitCount; i++) {
 			boolean state = (value & (1 << i + indexOffset)) > 0;
-			writeLaneCache.put(outputBus + (i + indexOffset), state ? NetState.HIGH : NetState.LOW);
+			writeLaneCache.setLaneCode(lanes.intern(output.getLaneBus(), i + indexOffset), state ? NetState.HIGH.getLaneCode() : NetState.LOW.getLaneCode());
 		}
 	}
 	
@@ -125,6 +146,19 @@ public class BusInputComponent extends Component implements ISubCircuitIO {
 		rewriteCache();
 	}
 	
+	@Override
+	public void writeState(DataOutputStream output) throws IOException {
+		output.writeInt(this.value);
+	}
+	
+	@Override
+	public void readState(ByteBuffer state) {
+		this.value = state.getInt();
+		rewriteCache();
+		// The lane reference is only updated while the parent circuit is simulated, it has to be valid for the first tick after restoring
+		queryIO();
+	}
+	
 	@Override
 	public void render()  {
 
@@ -1,6 +1,6 @@
 package de.m_marvin.logicsim.logic.parts;
 
-import java.util.Map;
+import java.nio.ByteBuffer;
 import java.util.Optional;
 
 import com.google.gson.JsonObject;
@@ -13,7 +13,8 @@ import de.m_marvin.logicsim.logic.nodes.InputNode;
 import de.m_marvin.logicsim.logic.nodes.Node;
 import de.m_marvin.logicsim.logic.nodes.OutputNode;
 import de.m_marvin.logicsim.logic.parts.SubCircuitComponent.ISubCircuitIO;
-import de.m_marvin.logicsim.logic.simulator.FastAsyncMap;
+import de.m_marvin.logicsim.logic.simulator.LaneStateMap;
+import de.m_marvin.logicsim.logic.simulator.LaneTable;
 import de.m_marvin.logicsim.ui.TextRenderer;
 import de.m_marvin.logicsim.ui.widgets.EditorArea;
 import de.m_marvin.logicsim.ui.widgets.InputDialog;
@@ -33,10 +34,10 @@ public class BusOutputComponent extends Component implements ISubCircuitIO {
 	/* End of factory methods */
 	
 	protected Optional<OutputNode> subCircuitOutput = Optional.empty();
-	protected Map<String, NetState> laneReferenceCache;
+	protected LaneStateMap laneReferenceCache;
 	protected int bitCount = 8;
 	
-	protected Map<String, NetState> writeLaneCache = new FastAsyncMap<>();
+	protected LaneStateMap writeLaneCache;
 	
 	public BusOutputComponent(Circuit circuit) {
 		super(circuit);
@@ -66,42 +67,39 @@ public class BusOutputComponent extends Component implements ISubCircuitIO {
 	}
 	
 	public int getValue() {
-		if (this.laneReferenceCache == null) return 0;
-		String[] s = this.inputs.get(0).getLaneTag().split("(?<=\\D)(?=\\d)");
-		String inputBus = s[0];
-		int indexOffset = s.length > 1 ? Integer.valueOf(s[1]) : 0;
+		LaneStateMap laneData = this.laneReferenceCache;
+		if (laneData == null) return 0;
+		InputNode input = this.inputs.get(0);
+		LaneTable lanes = laneData.getLaneTable();
 		int value = 0;
-		for (String lane : this.laneReferenceCache.keySet()) {
-			String[] busTag = lane.split("(?<=\\D)(?=\\d)");
-			if (busTag.length == 2 && busTag[0].equals(inputBus)) {
-				int bitIndex = Integer.parseInt(busTag[1]);
-				if (bitIndex >= indexOffset && bitIndex < indexOffset + this.bitCount && Circuit.safeLaneRead(laneReferenceCache, lane).getLogicState()) value |= (1 << (bitIndex - indexOffset));
-			}
+		for (int i = 0; i < this.bitCount; i++) {
+			int laneCode = laneData.getLaneCode(lanes.lookup(input.getLaneBus(), input.getLaneBitOffset() + i));
+			if (laneCode != 0 && NetState.fromLaneCode(laneCode).getLogicState()) value |= (1 << i);
 		}
 		return value;
 	}
 	
+	public int getBitCount() {
+		return this.bitCount;
+	}
+	
 	public void rewriteCache() {
-		writeLaneCache.clear();
 		if (this.subCircuitOutput.isEmpty()) return;
+		OutputNode output = this.subCircuitOutput.get();
+		LaneTable lanes = output.getCircuit().getLaneTable();
+		if (this.writeLaneCache == null || this.writeLaneCache.getLaneTable() != lanes) this.writeLaneCache = new LaneStateMap(lanes);
+		this.writeLaneCache.clear();
 		int value = getValue();
-		String[] s = this.subCircuitOutput.get().getLaneTag().split("(?<=\\D)(?=\\d)");
-		String outputBus = s[0];
-		int indexOffset = s.length > 1 ? Integer.valueOf(s[1]) : 0;
+		int indexOffset = output.getLaneBitOffset();
 		for (int i = 0; i < bitCount; i++) {
 			boolean state = (value & (1 << i)) > 0;
-			writeLaneCache.put(outputBus + (i + indexOffset), state ? NetState.HIGH : NetState.LOW);
+			writeLaneCache.setLaneCode(lanes.intern(output.getLaneBus(), i + indexOffset), state ? NetState.HIGH.getLaneCode() : NetState.LOW.getLaneCode());
 		}
 	}
 	
 	@Override
 	public void updateIO() {
-		if (this.subCircuitOutput.isPresent() && this.laneReferenceCache != null) {
-			// Write the current value onto the bus lanes of the parent circuit
-			// TODO Optimize
-			rewriteCache();
-			this.subCircuitOutput.get().writeLanes(writeLaneCache);
-		}
+		// The value is written onto the bus lanes of the parent circuit by queryIO, which is executed by the process of the parent circuit
 		this.laneReferenceCache = this.inputs.get(0).getLaneReferencePri();
 	}
 	
@@ -134,6 +132,12 @@ public class BusOutputComponent extends Component implements ISubCircuitIO {
 		rewriteCache();
 	}
 	
+	@Override
+	public void readState(ByteBuffer state) {
+		// The value is only stored in the net, but the lane reference is only updated while this circuit is simulated, it has to be valid for the first tick after restoring
+		this.laneReferenceCache = this.inputs.get(0).getLaneReferencePri();
+	}
+	
 	@Override
 	public void render()  {
 		
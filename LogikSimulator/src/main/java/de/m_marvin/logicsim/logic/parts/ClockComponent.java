@@ -1,5 +1,9 @@
 package de.m_marvin.logicsim.logic.parts;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 import com.google.gson.JsonObject;
 
 import de.m_marvin.logicsim.LogicSim;
@@ -7,14 +11,30 @@ import de.m_marvin.logicsim.logic.Circuit;
 import de.m_marvin.logicsim.logic.Component;
 import de.m_marvin.logicsim.logic.nodes.InputNode;
 import de.m_marvin.logicsim.logic.nodes.OutputNode;
+import de.m_marvin.logicsim.logic.simulator.CircuitProcessor;
 import de.m_marvin.logicsim.ui.TextRenderer;
 import de.m_marvin.logicsim.ui.widgets.EditorArea;
 import de.m_marvin.logicsim.ui.widgets.InputDialog;
 import de.m_marvin.logicsim.ui.windows.Editor;
 import de.m_marvin.univec.impl.Vec2i;
 
+/**
+ * Generates an clock signal with an configurable on and off time.
+ * The times are measured in one of three time bases:
+ * In real time (the default), the times are milliseconds of wall time, so the clock does not depend on the speed of the simulation.
+ * In ticks, the times are numbers of simulated ticks, in simulation time they are nanoseconds of simulated time (the ticks times the tick duration of the processor).
+ * Both simulated time bases are derived from the tick counter of the circuit, so the results are reproducible and clocks of the same circuit stay in phase.
+ * Clocks with periods of an integer ratio in ticks keep this ratio exactly.
+ * 
+ * @author Marvin K.
+ *
+ */
 public class ClockComponent extends Component {
 	
+	public static enum ClockDomain {
+		REAL_TIME,TICKS,SIMULATION_TIME;
+	}
+	
 	public static final String ICON_B64 = "iVBORw0KGgoAAAANSUhEUgAAACAAAAAgCAYAAABzenr0AAAAAXNSR0IArs4c6QAAAARnQU1BAACxjwv8YQUAAAAJcEhZcwAADsIAAA7CARUoSoAAAAFqSURBVFhHzZeLboMwDEVLu279/6+d1m2pT+AiYyhKEQk90hWBqOZi59UupXTruu771PNhSn0z49uw1neyWJ92Ofd3ZUQD/6aub75MqfGL6Wr65Sa6/XNXhCEvAkkRjEvE9eKl0hQyMDThbloKvheKT6kzygAP5L4mij9+pAzgjBTPU1QZGVDtmyMDtVMvnpaAKZGnRWtk4MvE3GQcNEUG1iBdUZ7SftD7xg+NBp6NBZ5LS5T0L4KB5mn3nG0f+Bnah1Bagr1hTLD4FQ3CWuT94EgDmbcyoPrHeVyDccq+dQn8ChZR39b+RTDDD2ptzYo/MaUMMCXGY1JrvLPDMnAYGIjL78ThjsyWeTuRX5QBXtrqRORLfMUAD7hyImqOHwOaBSoBR3T6vbSCzdJZgM4dkxL7QBjIW+RGfOA4jvxHUeqc7fy/lMaADPgaxS/191uyAJjJmc8Gwn9Dz91OS6+sCWvmYl8e8Cml2wMeUHNLjQvU1wAAAABJRU5ErkJggg==";
 
 	/* Factory methods */
@@ -25,10 +45,11 @@ public class ClockComponent extends Component {
 	
 	/* End of factory methods */
 	
-	protected int ontime;
-	protected int offtime;
-	protected int timer;
+	protected long ontime;
+	protected long offtime;
+	protected long timer;
 	protected long tstep;
+	protected ClockDomain domain = ClockDomain.REAL_TIME;
 	
 	public ClockComponent(Circuit circuit) {
 		super(circuit);
@@ -53,13 +74,40 @@ public class ClockComponent extends Component {
 		return 120;
 	}
 	
+	public ClockDomain getDomain() {
+		return domain;
+	}
+	
+	/**
+	 * Changes the time base of the on and off time, the timer restarts with the next update.
+	 */
+	public void setDomain(ClockDomain domain) {
+		this.domain = domain;
+		this.tstep = -1;
+		this.timer = 0;
+	}
+	
+	/**
+	 * Returns the current time in the unit of the time base of this clock.
+	 * The simulation time uses the tick duration of the processor simulating the circuit of this clock, or the default if the circuit is not simulated.
+	 */
+	protected long getTime() {
+		switch (this.domain) {
+		case TICKS: return this.circuit.getSimulationTick();
+		case SIMULATION_TIME:
+			CircuitProcessor processor = this.circuit.getProcessor();
+			return this.circuit.getSimulationTick() * (processor != null ? processor.getTickDuration() : CircuitProcessor.DEFAULT_TICK_DURATION);
+		default: return System.currentTimeMillis();
+		}
+	}
+	
 	@Override
 	public void updateIO() {
 		if (this.inputs.get(1).getState()) {
 			if (!this.inputs.get(0).getState()) {
-				if (this.tstep < 0) this.tstep = System.currentTimeMillis();
-				long now = System.currentTimeMillis();
-				this.timer += (int) (now - this.tstep);
+				long now = getTime();
+				if (this.tstep < 0 || now < this.tstep) this.tstep = now;
+				this.timer += now - this.tstep;
 				this.tstep = now;
 				if (this.timer > this.ontime + this.offtime) this.timer %= (this.ontime + this.offtime);
 			} else {
@@ -84,8 +132,11 @@ public class ClockComponent extends Component {
 			configDialog.setLocation(clickPosition.x, clickPosition.y);
 		} else {
 			InputDialog configDialog = new InputDialog(editor.getShell());
-			configDialog.addConfig(new InputDialog.NumberConfigField("editor.config.clock.ontime", this.ontime, 1, Integer.MAX_VALUE, i -> { this.ontime = i; }));
-			configDialog.addConfig(new InputDialog.NumberConfigField("editor.config.clock.offtime", this.offtime, 1, Integer.MAX_VALUE, i -> { this.offtime = i; }));
+			configDialog.addConfig(new InputDialog.NumberConfigField("editor.config.clock.ontime", (int) Math.min(this.ontime, Integer.MAX_VALUE), 1, Integer.MAX_VALUE, i -> { this.ontime = i; }));
+			configDialog.addConfig(new InputDialog.NumberConfigField("editor.config.clock.offtime", (int) Math.min(this.offtime, Integer.MAX_VALUE), 1, Integer.MAX_VALUE, i -> { this.offtime = i; }));
+			InputDialog.ButtonConfigField domainField = new InputDialog.ButtonConfigField("editor.config.clock.domain");
+			for (ClockDomain domain : ClockDomain.values()) domainField.addButton("editor.config.clock.domain." + domain.name().toLowerCase(), () -> setDomain(domain));
+			configDialog.addConfig(domainField);
 			configDialog.open();
 			configDialog.setLocation(clickPosition.x, clickPosition.y);
 		}
@@ -94,6 +145,19 @@ public class ClockComponent extends Component {
 	@Override
 	public void reset() {}
 	
+	@Override
+	public void writeState(DataOutputStream output) throws IOException {
+		output.writeLong(this.timer);
+		// The real time clock continues with the time of the restore
+		output.writeLong(this.domain == ClockDomain.REAL_TIME ? -1 : this.tstep);
+	}
+	
+	@Override
+	public void readState(ByteBuffer state) {
+		this.timer = state.getLong();
+		this.tstep = state.getLong();
+	}
+	
 	@Override
 	public void render()  {
 		
@@ -119,13 +183,15 @@ public class ClockComponent extends Component {
 		super.serialize(json);
 		json.addProperty("ontime", this.ontime);
 		json.addProperty("offtime", this.offtime);
+		json.addProperty("domain", this.domain.name());
 	}
 	
 	@Override
 	public void deserialize(JsonObject json) {
 		super.deserialize(json);
-		this.ontime = json.get("ontime").getAsInt();
-		this.offtime = json.get("offtime").getAsInt();
+		this.ontime = json.get("ontime").getAsLong();
+		this.offtime = json.get("offtime").getAsLong();
+		if (json.has("domain")) this.domain = ClockDomain.valueOf(json.get("domain").getAsString());
 	}
 	
 }
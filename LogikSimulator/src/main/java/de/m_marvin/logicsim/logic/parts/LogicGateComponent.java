@@ -1,14 +1,22 @@
 package de.m_marvin.logicsim.logic.parts;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.function.BiFunction;
 
+import com.google.gson.JsonObject;
+
 import de.m_marvin.univec.impl.Vec2i;
+import de.m_marvin.logicsim.LogicSim;
 import de.m_marvin.logicsim.logic.Circuit;
 import de.m_marvin.logicsim.logic.Component;
 import de.m_marvin.logicsim.logic.nodes.InputNode;
 import de.m_marvin.logicsim.logic.nodes.OutputNode;
 import de.m_marvin.logicsim.ui.TextRenderer;
 import de.m_marvin.logicsim.ui.widgets.EditorArea;
+import de.m_marvin.logicsim.ui.widgets.InputDialog;
+import de.m_marvin.logicsim.ui.windows.Editor;
 
 public abstract class LogicGateComponent extends Component {
 	
@@ -89,28 +97,92 @@ public abstract class LogicGateComponent extends Component {
 		NOR((a, b) -> !a || !b),
 		NAND((a, b) -> !a && !b);
 		
-		private final BiFunction<Boolean, Boolean, Boolean> logicalFuntion;
+		private final int truthTable;
 		
 		private GateType(BiFunction<Boolean, Boolean, Boolean> logicalFuntion) {
-			this.logicalFuntion = logicalFuntion;
+			this.truthTable = toTruthTable(logicalFuntion);
+		}
+		
+		public int getTruthTable() {
+			return this.truthTable;
 		}
 		
 		public boolean apply(boolean logicA, boolean logicB) {
-			return this.logicalFuntion.apply(logicA, logicB);
+			return applyTruthTable(this.truthTable, logicA, logicB);
+		}
+	}
+	
+	/**
+	 * Evaluates the logical function for all four input combinations, bit (a * 2 + b) of the result is set if the function is true for the inputs a and b.
+	 * The function is only called when the gate is created, the simulation only uses the resulting table to avoid boxing the input and output values.
+	 */
+	public static int toTruthTable(BiFunction<Boolean, Boolean, Boolean> logicalFuntion) {
+		int table = 0;
+		for (int i = 0; i < 4; i++) {
+			if (logicalFuntion.apply((i & 2) != 0, (i & 1) != 0)) table |= 1 << i;
 		}
+		return table;
 	}
 	
-	protected final BiFunction<Boolean, Boolean, Boolean> logicalFuntion;
+	public static boolean applyTruthTable(int truthTable, boolean logicA, boolean logicB) {
+		return ((truthTable >>> ((logicA ? 2 : 0) | (logicB ? 1 : 0))) & 1) != 0;
+	}
+	
+	/**
+	 * Evaluates the truth table for the packed states of all inputs, bit i of the mask is the state of input i.
+	 * The tables of the gates are symmetric, so for more than two inputs only the number of HIGH inputs is relevant:
+	 * Bit 0 of the table applies if no input is HIGH, bit 3 if all inputs are HIGH and bit 1 otherwise.
+	 * The only exception is the XOR table, which is true for an odd number of HIGH inputs.
+	 */
+	public static boolean applyTruthTable(int truthTable, int inputMask, int inputCount) {
+		if (inputCount == 2) return ((truthTable >>> (((inputMask & 1) << 1) | ((inputMask >>> 1) & 1))) & 1) != 0;
+		int highInputs = Integer.bitCount(inputMask);
+		if (truthTable == XOR_TRUTH_TABLE) return (highInputs & 1) != 0;
+		return ((truthTable >>> (highInputs == 0 ? 0 : highInputs == inputCount ? 3 : 1)) & 1) != 0;
+	}
+	
+	public static final int XOR_TRUTH_TABLE = 0b0110;
+	public static final int MIN_INPUTS = 2;
+	public static final int MAX_INPUTS = 32;
+	
+	protected final int truthTable;
 	protected boolean lastState = false;
 	
 	public LogicGateComponent(Circuit circuit, BiFunction<Boolean, Boolean, Boolean> logicalFuntion) {
+		this(circuit, toTruthTable(logicalFuntion));
+	}
+	
+	public LogicGateComponent(Circuit circuit, int truthTable) {
 		super(circuit);
-		this.logicalFuntion = logicalFuntion;
+		this.truthTable = truthTable;
 		
 		this.label = "logic_gate";
-		this.inputs.add(new InputNode(this, 0, "in1", new Vec2i(-10, 10)));
-		this.inputs.add(new InputNode(this, 1, "in2", new Vec2i(-10, 30)));
-		this.outputs.add(new OutputNode(this, 2, "out", new Vec2i(50, 20)));
+		setInputCount(MIN_INPUTS);
+	}
+	
+	/**
+	 * Changes the number of inputs, the component has to be disconnected from the circuit while the nodes change.
+	 * The first two inputs keep the node numbers 0 and 1 and the output keeps the number 2, additional inputs get the numbers 3, 4, ...
+	 * This keeps the nodes (and their lane tags) of circuits saved with two input gates unchanged.
+	 */
+	public void setInputCount(int inputCount) {
+		inputCount = Math.max(MIN_INPUTS, Math.min(MAX_INPUTS, inputCount));
+		while (this.inputs.size() > inputCount) this.inputs.remove(this.inputs.size() - 1);
+		while (this.inputs.size() < inputCount) {
+			int i = this.inputs.size();
+			this.inputs.add(new InputNode(this, i < 2 ? i : i + 1, "in" + (i + 1), new Vec2i(-10, 10 + i * 20)));
+		}
+		OutputNode output = new OutputNode(this, 2, "out", new Vec2i(50, inputCount * 10));
+		if (!this.outputs.isEmpty()) {
+			String laneTag = this.outputs.get(0).getLaneTag();
+			if (!laneTag.equals(Circuit.DEFAULT_BUS_LANE)) output.setLaneTag(laneTag);
+		}
+		this.outputs.clear();
+		this.outputs.add(output);
+	}
+	
+	public int getInputCount() {
+		return this.inputs.size();
 	}
 	
 	@Override
@@ -120,20 +192,88 @@ public abstract class LogicGateComponent extends Component {
 
 	@Override
 	public int getVisualHeight() {
-		return 40;
+		return Math.max(40, this.inputs.size() * 20);
 	}
 	
 	public abstract String getTextLabel();
 	
+	/**
+	 * Returns the truth table of the logical function, bit (a * 2 + b) is set if the function is true for the inputs a and b.
+	 * See {@link #applyTruthTable(int, int, int)} for gates with more than two inputs.
+	 */
+	public int getTruthTable() {
+		return this.truthTable;
+	}
+	
+	/**
+	 * Returns true if the logical function was true in the last update, used to hold an falling output HIGH for one more tick.
+	 */
+	public boolean getLastState() {
+		return this.lastState;
+	}
+	
+	public void setLastState(boolean lastState) {
+		this.lastState = lastState;
+	}
+	
+	@Override
+	public boolean isCombinational() {
+		return true;
+	}
+	
+	@Override
+	public void click(Vec2i clickPosition, boolean leftClick) {
+		if (leftClick) {
+			Editor editor = LogicSim.getInstance().getLastInteractedEditor();
+			InputDialog configDialog = new InputDialog(editor.getShell());
+			configDialog.addConfig(new InputDialog.StringConfigField("editor.config.change_component_name", getLabel(), this::setLabel));
+			configDialog.addConfig(new InputDialog.NumberConfigField("editor.config.logic_gate.input_count", getInputCount(), MIN_INPUTS, MAX_INPUTS, i -> {
+				this.circuit.reconnect(true, this);
+				setInputCount(i);
+				this.circuit.reconnect(false, this);
+			}));
+			configDialog.open();
+			configDialog.setLocation(clickPosition.x, clickPosition.y);
+		}
+	}
+	
+	@Override
+	public void serialize(JsonObject json) {
+		super.serialize(json);
+		json.addProperty("inputCount", getInputCount());
+	}
+	
+	@Override
+	public void deserialize(JsonObject json) {
+		// The nodes have to exist before the lane tags are loaded
+		if (json.has("inputCount")) setInputCount(json.get("inputCount").getAsInt());
+		super.deserialize(json);
+	}
+	
+	@Override
+	public void writeState(DataOutputStream output) throws IOException {
+		output.writeBoolean(this.lastState);
+	}
+	
+	@Override
+	public void readState(ByteBuffer state) {
+		this.lastState = state.get() != 0;
+	}
+	
 	@Override
 	public void updateIO() {
-		boolean rstate = this.logicalFuntion.apply(this.inputs.get(0).getState(), this.inputs.get(1).getState());
+		int inputMask = 0;
+		for (int i = 0; i < this.inputs.size(); i++) {
+			if (this.inputs.get(i).getState()) inputMask |= 1 << i;
+		}
+		boolean rstate = applyTruthTable(this.truthTable, inputMask, this.inputs.size());
 		if (rstate) {
 			this.lastState = true;
 			this.outputs.get(0).setState(true);
 		} else if (this.lastState) {
 			this.lastState = false;
 			this.outputs.get(0).setState(true);
+			this.circuit.scheduleUpdate(this);
 		} else {
 			this.outputs.get(0).setState(false);
 		}
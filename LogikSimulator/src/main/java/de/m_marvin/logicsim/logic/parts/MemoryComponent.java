@@ -1,11 +1,13 @@
 package de.m_marvin.logicsim.logic.parts;
 
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.widgets.FileDialog;
@@ -122,6 +124,7 @@ public class MemoryComponent extends Component {
 				this.data[p++] = (byte) i ;
 			}
 			is.close();
+			this.circuit.scheduleUpdate(this);
 		} catch (IOException e) {
 			System.err.println("Failed to load data from file!");
 			e.printStackTrace();
@@ -163,10 +166,12 @@ public class MemoryComponent extends Component {
 			this.data = newDataArr;
 			this.dataRowCount = this.minDataRowCount;
 		}
+		this.circuit.scheduleUpdate(this);
 	}
 	
 	public void clearMemory() {
 		for (int i = 0; i < this.data.length; i++) this.data[i] = 0;
+		this.circuit.scheduleUpdate(this);
 	}
 	
 	@Override
@@ -192,13 +197,36 @@ public class MemoryComponent extends Component {
 		this.isVolatile = json.get("isVolatile").getAsBoolean();
 		this.minDataRowCount = json.get("minDataRows").getAsInt();
 		this.dataRowWidth = json.get("dataRowWidth").getAsInt();
-		JsonArray arr = json.get("data").getAsJsonArray();
-		this.dataRowCount = arr.size() / this.dataRowWidth;
-		this.data = new byte[arr.size()];
-		for (int i = 0; i < arr.size(); i++) this.data[i] = arr.get(i).getAsByte();
+		if (json.has("data")) {
+			JsonArray arr = json.get("data").getAsJsonArray();
+			this.data = new byte[arr.size()];
+			for (int i = 0; i < arr.size(); i++) this.data[i] = arr.get(i).getAsByte();
+		}
 		verifyMemory();
 	}
 	
+	@Override
+	public void writeState(DataOutputStream output) throws IOException {
+		output.writeInt(this.data.length);
+		output.write(this.data);
+	}
+	
+	@Override
+	public void readState(ByteBuffer state) {
+		int length = state.getInt();
+		if (this.data.length != length) this.data = new byte[length];
+		state.get(this.data);
+		this.dataRowCount = this.data.length / this.dataRowWidth;
+	}
+	
+	@Override
+	public boolean deserializeRawData(String key, ByteBuffer data) {
+		if (!key.equals("data")) return false;
+		this.data = new byte[data.remaining()];
+		data.get(this.data);
+		return true;
+	}
+	
 	@Override
 	public void click(Vec2i clickPosition, boolean leftClick) {
 		Editor editor = LogicSim.getInstance().getLastInteractedEditor();
@@ -233,6 +261,11 @@ public class MemoryComponent extends Component {
 		
 	}
 
+	@Override
+	public boolean isCombinational() {
+		return true;
+	}
+	
 	@Override
 	public void updateIO() {
 		
@@ -38,6 +38,11 @@ public class NotGateComponent extends Component {
 		return 40;
 	}
 
+	@Override
+	public boolean isCombinational() {
+		return true;
+	}
+	
 	@Override
 	public void updateIO() {
 		this.outputs.get(0).setState(!this.inputs.get(0).getState());
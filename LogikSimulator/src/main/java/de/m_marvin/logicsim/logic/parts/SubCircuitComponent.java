@@ -1,9 +1,12 @@
 package de.m_marvin.logicsim.logic.parts;
 
 import java.io.File;
+import java.util.ArrayDeque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 
 import com.google.gson.JsonObject;
@@ -20,7 +23,7 @@ import de.m_marvin.logicsim.ui.TextRenderer;
 import de.m_marvin.logicsim.ui.Translator;
 import de.m_marvin.logicsim.ui.widgets.EditorArea;
 import de.m_marvin.logicsim.ui.windows.Editor;
-import de.m_marvin.logicsim.util.CircuitSerializer;
+import de.m_marvin.logicsim.util.CircuitTemplateCache;
 import de.m_marvin.univec.impl.Vec2f;
 import de.m_marvin.univec.impl.Vec2i;
 import de.m_marvin.univec.impl.Vec4i;
@@ -51,11 +54,58 @@ public class SubCircuitComponent extends Component {
 		public Node makeNode(Component subCircuitComponent, int id, Vec2i offset, boolean connectToCircuit);
 		
 		public default boolean isTransProcessNodeValid(Node node) {
-			return LogicSim.getInstance().getCircuitProcessor().holdsCircuit(node.getCircuit());
+			CircuitProcessor processor = node.getCircuit().getProcessor();
+			return processor != null && processor.holdsCircuit(node.getCircuit());
+		}
+		
+		/**
+		 * Returns true if this IO passes the lanes of the node unchanged between the parent circuit and the sub-circuit.
+		 * The nets on both sides of such an IO can be merged when the sub-circuit is flattened into the parent circuit.
+		 */
+		public default boolean isPassThrough() {
+			return false;
 		}
 		
 	}
 	
+	protected static File fallbackSubCircuitFolder;
+	
+	/**
+	 * Sets the folder used to resolve sub-circuit files if no LogicSim instance is running, like in the headless mode.
+	 */
+	public static void setFallbackSubCircuitFolder(File subCircuitFolder) {
+		fallbackSubCircuitFolder = subCircuitFolder;
+	}
+	
+	/**
+	 * Collects the sub-circuits of the circuit and of all its sub-circuits, parents before their sub-circuits.
+	 * Sub-circuits that are not loaded are skipped, an sub-circuit that is used recursively is only collected once.
+	 * 
+	 * @return The sub-circuits in the order they were found, mapped to the component they are placed in
+	 */
+	public static Map<Circuit, SubCircuitComponent> collectSubCircuits(Circuit circuit) {
+		Map<Circuit, SubCircuitComponent> owners = new LinkedHashMap<>();
+		Queue<Circuit> queue = new ArrayDeque<>();
+		queue.add(circuit);
+		while (!queue.isEmpty()) {
+			Circuit parent = queue.poll();
+			for (Component component : parent.getComponents()) {
+				if (component instanceof SubCircuitComponent subCircuitComponent) {
+					Circuit subCircuit = subCircuitComponent.getSubCircuit();
+					if (subCircuit == null || subCircuit == circuit || owners.containsKey(subCircuit)) continue;
+					owners.put(subCircuit, subCircuitComponent);
+					queue.add(subCircuit);
+				}
+			}
+		}
+		return owners;
+	}
+	
+	public static File getSubCircuitFolder() {
+		LogicSim logicSim = LogicSim.getInstance();
+		return logicSim != null && logicSim.getSubCircuitFolder() != null ? logicSim.getSubCircuitFolder() : fallbackSubCircuitFolder;
+	}
+	
 	protected int width;
 	protected int height;
 	protected int nodeCount;
@@ -135,10 +185,13 @@ public class SubCircuitComponent extends Component {
 	
 	public void setSubCircuitFile(File subCircuitFile) {
 		try {
-			subCircuit = CircuitSerializer.loadCircuit(subCircuitFile);
+			subCircuit = CircuitTemplateCache.instantiate(subCircuitFile, this.circuit.getLaneTable());
 		} catch (Exception e) {
-			Editor.showErrorInfo(LogicSim.getInstance().getLastInteractedEditor().getShell(), "editor.window.error.load_sub_circuit", e);
-			subCircuit = new Circuit();
+			System.err.println("Failed to load sub-circuit '" + subCircuitFile + "'!");
+			e.printStackTrace();
+			Editor editor = LogicSim.getInstance() != null ? LogicSim.getInstance().getLastInteractedEditor() : null;
+			if (editor != null) Editor.showErrorInfo(editor.getShell(), "editor.window.error.load_sub_circuit", e);
+			subCircuit = new Circuit(false, this.circuit.getLaneTable());
 		}
 		updatePinout();
 	}
@@ -151,6 +204,13 @@ public class SubCircuitComponent extends Component {
 		return subCircuit;
 	}
 	
+	/**
+	 * Returns the IO components of the sub-circuit by the number of the node representing them on this component.
+	 */
+	public Map<Integer, ISubCircuitIO> getSubCircuitIOs() {
+		return this.node2subComponent;
+	}
+	
 	@Override
 	public int getVisualWidth() {
 		return this.width;
@@ -164,8 +224,9 @@ public class SubCircuitComponent extends Component {
 	public String getRelativeCircuitPath() {
 		File subCircuitFile = getSubCircuit().getCircuitFile();
 		if (subCircuitFile == null) return "";
-		if (subCircuitFile.toString().startsWith(LogicSim.getInstance().getSubCircuitFolder().toString())) {
-			return LogicSim.getInstance().getSubCircuitFolder().toURI().relativize(subCircuitFile.toURI()).toString();
+		File subCircuitFolder = getSubCircuitFolder();
+		if (subCircuitFolder != null && subCircuitFile.toString().startsWith(subCircuitFolder.toString())) {
+			return subCircuitFolder.toURI().relativize(subCircuitFile.toURI()).toString();
 		} else {
 			// FIXME Does not generate backward relative paths like "../../"
 //			if (getCircuit().getCircuitFile() == null) return "";
@@ -188,7 +249,7 @@ public class SubCircuitComponent extends Component {
 	}
 	
 	public void setRelativeCircuitPath(String relativeCircuitFile) {
-		File absolutePath = new File(LogicSim.getInstance().getSubCircuitFolder(), relativeCircuitFile);
+		File absolutePath = new File(getSubCircuitFolder(), relativeCircuitFile);
 		if (!absolutePath.isFile()) {
 			absolutePath = new File(getCircuit().getCircuitFile().getParentFile(), relativeCircuitFile);
 		}
@@ -230,15 +291,16 @@ public class SubCircuitComponent extends Component {
 	
 	@Override
 	public void reset() {
-		if (!getCircuit().isVirtual()) {
-			CircuitProcessor processor = LogicSim.getInstance().getCircuitProcessor();
+		CircuitProcessor processor = getCircuit().getProcessor();
+		if (!getCircuit().isVirtual() && processor != null) {
 			if (!processor.holdsCircuit(getSubCircuit())) processor.addProcess(getCircuit(), getSubCircuit());
 		}
 	}
 	
 	@Override
 	public void dispose() {
-		LogicSim.getInstance().getCircuitProcessor().removeProcess(this.subCircuit);
+		CircuitProcessor processor = getCircuit().getProcessor();
+		if (processor != null) processor.removeProcess(this.subCircuit);
 	}
 	
 }
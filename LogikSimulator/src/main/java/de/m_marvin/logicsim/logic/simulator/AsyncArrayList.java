@@ -6,6 +6,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Objects;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 public class AsyncArrayList<E> extends AbstractCollection<E> implements List<E> {
@@ -48,6 +49,19 @@ public class AsyncArrayList<E> extends AbstractCollection<E> implements List<E>
 		return elementArr.length;
 	}
 	
+	/**
+	 * Increases the capacity to at least the given number of elements, so that adding them does not require to grow the array step by step.
+	 */
+	@SuppressWarnings("unchecked")
+	public void ensureCapacity(int capacity) {
+		if (capacity < this.capacity()) return;
+		E[] nArr = (E[]) new Object[capacity + 1];
+		for (int i = 0; i < this.entryCount; i++) {
+			nArr[i] = this.elementArr[i];
+		}
+		this.elementArr = nArr;
+	}
+	
 	@Override
 	public int size() {
 		return this.entryCount;
@@ -179,6 +193,17 @@ public class AsyncArrayList<E> extends AbstractCollection<E> implements List<E>
 		};
 	}
 
+	/**
+	 * Same as iterating over the list, but without allocating an iterator, since this is used by the simulation in every tick.
+	 */
+	@Override
+	public void forEach(Consumer<? super E> action) {
+		for (int i = 0; i < size(); i++) {
+			E element = this.elementArr[i];
+			if (element != null) action.accept(element);
+		}
+	}
+
 	@Override
 	public ListIterator<E> listIterator() {
 		// TODO Auto-generated method stub
@@ -0,0 +1,612 @@
+package de.m_marvin.logicsim.logic.simulator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.m_marvin.logicsim.logic.Circuit;
+import de.m_marvin.logicsim.logic.Circuit.ShortCircuitType;
+import de.m_marvin.logicsim.logic.Component;
+import de.m_marvin.logicsim.logic.NetConnector;
+import de.m_marvin.logicsim.logic.nodes.InputNode;
+import de.m_marvin.logicsim.logic.nodes.Node;
+import de.m_marvin.logicsim.logic.nodes.OutputNode;
+import de.m_marvin.logicsim.logic.parts.BoolConstComponent;
+import de.m_marvin.logicsim.logic.parts.BoolInputComponent;
+import de.m_marvin.logicsim.logic.parts.BoolOutputComponent;
+import de.m_marvin.logicsim.logic.parts.BusConstComponent;
+import de.m_marvin.logicsim.logic.parts.BusInputComponent;
+import de.m_marvin.logicsim.logic.parts.BusOutputComponent;
+import de.m_marvin.logicsim.logic.parts.LogicGateComponent;
+import de.m_marvin.logicsim.logic.parts.NotGateComponent;
+import de.m_marvin.logicsim.logic.parts.SubCircuitComponent;
+import de.m_marvin.logicsim.logic.parts.SubCircuitComponent.ISubCircuitIO;
+
+/**
+ * Simulates an circuit for up to 64 different sets of input values (called vectors) at once, for example to test an circuit with many input patterns.
+ * Every lane of every net is stored as two long values, each bit of them belongs to one vector.
+ * The two values hold the two bits of the lane codes: an vector is LOW if only its bit in the low value is set, HIGH if only its bit in the high value is set, FLOATING if none and SHORT_CIRCUIT if both are set.
+ * Writing multiple outputs onto the same lane is therefore an simple bitwise or, and the gates are evaluated with bitwise operations for all vectors in one step.
+ * <br>
+ * The circuit and all its sub-circuits are compiled into one flat structure, the sub-circuit IO components are replaced by copying the lanes from one side to the other in every tick.
+ * Only gates, constants, inputs, outputs and sub-circuits are supported, memory and clock components have an internal state that can not be split into vectors.
+ * Unlike in the normal simulation, floating and short circuited lanes are read as LOW in every vector instead of an random value, so the results are reproducible.
+ * The inputs and outputs are the bool and bus input and output components of the main circuit, in the order they appear in the circuit.
+ *
+ * @author Marvin K.
+ *
+ */
+public class BitParallelSimulator {
+
+	public static final int VECTORS_PER_BATCH = 64;
+	public static final int DEFAULT_MAX_TICKS = 1000;
+
+	/**
+	 * The results of an simulation, one entry per vector.
+	 *
+	 * @param outputValues The values of the outputs for each vector, indexed [vector][output]
+	 * @param outputErrors The bits of the outputs that were floating or short circuited, same layout as the values
+	 * @param settleTicks The number of ticks until the circuit stopped changing, -1 if it was still changing after the maximum number of ticks
+	 */
+	public static record BatchResult(long[][] outputValues, long[][] outputErrors, int[] settleTicks) {
+		public int getVectorCount() {
+			return this.settleTicks.length;
+		}
+		public boolean hasSettled(int vector) {
+			return this.settleTicks[vector] >= 0;
+		}
+		public boolean hasErrors(int vector) {
+			for (long error : this.outputErrors[vector]) if (error != 0) return true;
+			return false;
+		}
+	}
+
+	protected final Circuit circuit;
+	protected final List<Component> inputs = new ArrayList<>();
+	protected final List<Component> outputs = new ArrayList<>();
+	protected int maxTicks = DEFAULT_MAX_TICKS;
+
+	protected int signalCount;
+	protected long[] lowPri;
+	protected long[] highPri;
+	protected long[] lowSec;
+	protected long[] highSec;
+	protected int[] preferHighSignals;
+	protected int[] preferLowSignals;
+
+	protected int[] gateInputsA;
+	protected int[] gateInputsB;
+	protected int[][] gateInputsExtra;
+	protected boolean[] gateParity;
+	protected int[] gateOutputs;
+	protected long[] gateTables;
+	protected long[] gateStates;
+
+	protected int[] notInputs;
+	protected int[] notOutputs;
+
+	protected int[] copyInputs;
+	protected int[] copyOutputs;
+	protected int[] laneCopyInputs;
+	protected int[] laneCopyOutputs;
+
+	protected int[] constSignals;
+	protected boolean[] constStates;
+
+	protected int[] inputSignals;
+	protected int[] inputIndices;
+	protected int[] inputBits;
+	protected long[] inputVectors;
+
+	protected int[][] outputSignals;
+
+	/**
+	 * Compiles the circuit and all its sub-circuits.
+	 * The circuit has to be connected, later modifications of the circuit are not visible to the simulator.
+	 *
+	 * @throws IllegalArgumentException If the circuit contains components that can not be simulated bit-parallel
+	 */
+	public BitParallelSimulator(Circuit circuit) {
+		this.circuit = circuit;
+		compile();
+	}
+
+	public Circuit getCircuit() {
+		return this.circuit;
+	}
+
+	/**
+	 * Returns the bool and bus input components of the main circuit, the values of each vector have to be given in this order.
+	 */
+	public List<Component> getInputs() {
+		return Collections.unmodifiableList(this.inputs);
+	}
+
+	/**
+	 * Returns the bool and bus output components of the main circuit, the results of each vector are returned in this order.
+	 */
+	public List<Component> getOutputs() {
+		return Collections.unmodifiableList(this.outputs);
+	}
+
+	public int getSignalCount() {
+		return this.signalCount;
+	}
+
+	public int getGateCount() {
+		return this.gateOutputs.length + this.notOutputs.length;
+	}
+
+	public int getMaxTicks() {
+		return this.maxTicks;
+	}
+
+	public void setMaxTicks(int maxTicks) {
+		this.maxTicks = maxTicks;
+	}
+
+	/**
+	 * Simulates the circuit for all vectors, in batches of 64 vectors.
+	 * Each batch starts from the reset state and is simulated until no lane changes anymore in any of its vectors or the maximum number of ticks is reached.
+	 *
+	 * @param vectors The input values of each vector, indexed [vector][input], bool inputs use the lowest bit of the value
+	 * @return The output values of each vector
+	 */
+	public BatchResult simulate(long[][] vectors) {
+
+		long[][] outputValues = new long[vectors.length][this.outputs.size()];
+		long[][] outputErrors = new long[vectors.length][this.outputs.size()];
+		int[] settleTicks = new int[vectors.length];
+
+		for (int offset = 0; offset < vectors.length; offset += VECTORS_PER_BATCH) {
+			int count = Math.min(VECTORS_PER_BATCH, vectors.length - offset);
+			long usedVectors = count == VECTORS_PER_BATCH ? -1L : (1L << count) - 1;
+			loadInputs(vectors, offset, count);
+			reset();
+
+			Arrays.fill(settleTicks, offset, offset + count, -1);
+			long settledVectors = 0;
+			for (int tick = 1; tick <= this.maxTicks && settledVectors != usedVectors; tick++) {
+				// An vector that did not change in this tick has reached an stable state, it will not change again since the inputs are constant
+				long newlySettled = ~tick() & ~settledVectors & usedVectors;
+				settledVectors |= newlySettled;
+				while (newlySettled != 0) {
+					settleTicks[offset + Long.numberOfTrailingZeros(newlySettled)] = tick - 1;
+					newlySettled &= newlySettled - 1;
+				}
+			}
+
+			storeOutputs(outputValues, outputErrors, offset, count);
+		}
+
+		return new BatchResult(outputValues, outputErrors, settleTicks);
+
+	}
+
+	/**
+	 * Sets all lanes to LOW and clears the states of the gates.
+	 */
+	protected void reset() {
+		Arrays.fill(this.lowSec, -1L);
+		Arrays.fill(this.highSec, 0L);
+		Arrays.fill(this.gateStates, 0L);
+	}
+
+	protected void loadInputs(long[][] vectors, int offset, int count) {
+		for (int v = 0; v < count; v++) {
+			if (vectors[offset + v].length < this.inputs.size()) throw new IllegalArgumentException("Vector " + (offset + v) + " has only " + vectors[offset + v].length + " of " + this.inputs.size() + " input values!");
+		}
+		for (int i = 0; i < this.inputSignals.length; i++) {
+			int input = this.inputIndices[i];
+			int bit = this.inputBits[i];
+			long vectorBits = 0;
+			for (int v = 0; v < count; v++) {
+				if ((vectors[offset + v][input] >>> bit & 1) != 0) vectorBits |= 1L << v;
+			}
+			this.inputVectors[i] = vectorBits;
+		}
+	}
+
+	protected void storeOutputs(long[][] outputValues, long[][] outputErrors, int offset, int count) {
+		for (int o = 0; o < this.outputSignals.length; o++) {
+			int[] signals = this.outputSignals[o];
+			for (int bit = 0; bit < signals.length; bit++) {
+				long low = this.lowSec[signals[bit]];
+				long high = this.highSec[signals[bit]];
+				long values = high & ~low;
+				long errors = ~(high ^ low);
+				for (int v = 0; v < count; v++) {
+					if ((values >>> v & 1) != 0) outputValues[offset + v][o] |= 1L << bit;
+					if ((errors >>> v & 1) != 0) outputErrors[offset + v][o] |= 1L << bit;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Executes one tick for all vectors of the current batch.
+	 * Like in the normal simulation, all components read the lane states of the last tick and write the new states, which are committed at the end of the tick.
+	 * A lane is read as HIGH if it is HIGH, all other states are read as LOW.
+	 *
+	 * @return The vectors in which any lane or gate state changed in this tick
+	 */
+	protected long tick() {
+
+		long[] lowPri = this.lowPri;
+		long[] highPri = this.highPri;
+		long[] lowSec = this.lowSec;
+		long[] highSec = this.highSec;
+		Arrays.fill(lowPri, 0L);
+		Arrays.fill(highPri, 0L);
+		long changed = 0;
+
+		for (int i = 0; i < this.constSignals.length; i++) {
+			if (this.constStates[i]) {
+				highPri[this.constSignals[i]] = -1L;
+			} else {
+				lowPri[this.constSignals[i]] = -1L;
+			}
+		}
+
+		for (int i = 0; i < this.inputSignals.length; i++) {
+			int signal = this.inputSignals[i];
+			highPri[signal] |= this.inputVectors[i];
+			lowPri[signal] |= ~this.inputVectors[i];
+		}
+
+		for (int i = 0; i < this.copyOutputs.length; i++) {
+			int input = this.copyInputs[i];
+			long state = highSec[input] & ~lowSec[input];
+			highPri[this.copyOutputs[i]] |= state;
+			lowPri[this.copyOutputs[i]] |= ~state;
+		}
+
+		for (int i = 0; i < this.laneCopyOutputs.length; i++) {
+			highPri[this.laneCopyOutputs[i]] |= highSec[this.laneCopyInputs[i]];
+			lowPri[this.laneCopyOutputs[i]] |= lowSec[this.laneCopyInputs[i]];
+		}
+
+		for (int i = 0; i < this.notOutputs.length; i++) {
+			int input = this.notInputs[i];
+			long state = ~(highSec[input] & ~lowSec[input]);
+			highPri[this.notOutputs[i]] |= state;
+			lowPri[this.notOutputs[i]] |= ~state;
+		}
+
+		long[] gateTables = this.gateTables;
+		long[] gateStates = this.gateStates;
+		for (int i = 0; i < this.gateOutputs.length; i++) {
+			int inputA = this.gateInputsA[i];
+			int inputB = this.gateInputsB[i];
+			long a = highSec[inputA] & ~lowSec[inputA];
+			long b = highSec[inputB] & ~lowSec[inputB];
+			long result;
+			int[] inputsExtra = this.gateInputsExtra[i];
+			if (inputsExtra.length == 0) {
+				result = gateTables[i * 4] & ~a & ~b | gateTables[i * 4 + 1] & ~a & b | gateTables[i * 4 + 2] & a & ~b | gateTables[i * 4 + 3] & a & b;
+			} else {
+				// Same as LogicGateComponent.applyTruthTable(), only the number of HIGH inputs is relevant
+				long allHigh = a & b;
+				long anyHigh = a | b;
+				long parity = a ^ b;
+				for (int input : inputsExtra) {
+					long c = highSec[input] & ~lowSec[input];
+					allHigh &= c;
+					anyHigh |= c;
+					parity ^= c;
+				}
+				result = this.gateParity[i] ? parity : gateTables[i * 4] & ~anyHigh | gateTables[i * 4 + 1] & anyHigh & ~allHigh | gateTables[i * 4 + 3] & allHigh;
+			}
+			// Same as in the logic gate component, an falling output is held HIGH for one more tick
+			long state = result | gateStates[i];
+			changed |= result ^ gateStates[i];
+			gateStates[i] = result;
+			highPri[this.gateOutputs[i]] |= state;
+			lowPri[this.gateOutputs[i]] |= ~state;
+		}
+
+		// Resolve the short circuits of the nets in circuits that prefer one of the states
+		for (int signal : this.preferHighSignals) lowPri[signal] &= ~highPri[signal];
+		for (int signal : this.preferLowSignals) highPri[signal] &= ~lowPri[signal];
+
+		for (int i = 0; i < this.signalCount; i++) {
+			changed |= (lowPri[i] ^ lowSec[i]) | (highPri[i] ^ highSec[i]);
+		}
+		this.lowPri = lowSec;
+		this.highPri = highSec;
+		this.lowSec = lowPri;
+		this.highSec = highPri;
+		return changed;
+
+	}
+
+	/**
+	 * Assigns an index to every lane of the hierarchy and builds the lists of operations executed each tick.
+	 */
+	protected void compile() {
+
+		// Collect all circuits, parents before their sub-circuits
+
+		Map<Circuit, SubCircuitComponent> owners = SubCircuitComponent.collectSubCircuits(this.circuit);
+		List<Circuit> circuits = new ArrayList<>();
+		circuits.add(this.circuit);
+		circuits.addAll(owners.keySet());
+		for (Circuit circuit : circuits) {
+			for (Component component : circuit.getComponents()) {
+				if (component instanceof SubCircuitComponent subCircuitComponent) {
+					// Every sub-circuit has to be collected exactly once, trough the component it is placed in
+					if (subCircuitComponent.getSubCircuit() == null) throw new IllegalArgumentException("Sub-circuit '" + component.getLabel() + "' is not loaded!");
+					if (owners.get(subCircuitComponent.getSubCircuit()) != subCircuitComponent) throw new IllegalArgumentException("Sub-circuit '" + component.getLabel() + "' is used recursively!");
+				}
+			}
+		}
+
+		SignalBuilder signals = new SignalBuilder(circuits);
+		LaneTable lanes = this.circuit.getLaneTable();
+		List<int[]> gates = new ArrayList<>();
+		List<Integer> gateTables = new ArrayList<>();
+		List<int[]> nots = new ArrayList<>();
+		List<int[]> copies = new ArrayList<>();
+		List<Node[]> netCopies = new ArrayList<>();
+		List<Integer> constSignals = new ArrayList<>();
+		List<Boolean> constStates = new ArrayList<>();
+		List<int[]> inputBits = new ArrayList<>();
+		List<int[]> outputSignals = new ArrayList<>();
+
+		// Replace the sub-circuit IOs by copying the lanes, in the same way the IO components would do
+
+		Set<Component> subCircuitIOs = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (SubCircuitComponent subCircuitComponent : owners.values()) {
+			List<Node> outerNodes = subCircuitComponent.getAllNodes();
+			for (Map.Entry<Integer, ISubCircuitIO> io : subCircuitComponent.getSubCircuitIOs().entrySet()) {
+				if (!(io.getValue() instanceof Component ioComponent)) continue;
+				subCircuitIOs.add(ioComponent);
+				Node outerNode = null;
+				for (Node node : outerNodes) if (node.getNodeNr() == io.getKey()) outerNode = node;
+				if (outerNode == null) continue;
+
+				if (ioComponent instanceof BoolInputComponent) {
+					// Lanes without an lane tag are copied one to one, otherwise only the tagged lane is copied
+					Node innerNode = ioComponent.getOutputs().get(0);
+					if (outerNode.getLaneTag().equals(Circuit.DEFAULT_BUS_LANE) && innerNode.getLaneTag().equals(Circuit.DEFAULT_BUS_LANE)) {
+						netCopies.add(new Node[] { outerNode, innerNode });
+					} else {
+						copies.add(new int[] { signals.get(outerNode), signals.get(innerNode) });
+					}
+				} else if (ioComponent instanceof BoolOutputComponent) {
+					Node innerNode = ioComponent.getInputs().get(0);
+					if (outerNode.getLaneTag().equals(Circuit.DEFAULT_BUS_LANE) && innerNode.getLaneTag().equals(Circuit.DEFAULT_BUS_LANE)) {
+						netCopies.add(new Node[] { innerNode, outerNode });
+					} else {
+						copies.add(new int[] { signals.get(innerNode), signals.get(outerNode) });
+					}
+				} else if (ioComponent instanceof BusInputComponent busInput) {
+					Node innerNode = ioComponent.getOutputs().get(0);
+					for (int i = 0; i < busInput.getBitCount(); i++) {
+						// The bus input reads the bits starting at bit zero, but writes them starting at the offset of its own lane tag
+						int bit = i + innerNode.getLaneBitOffset();
+						int innerSignal = signals.get(innerNode, lanes.intern(innerNode.getLaneBus(), bit));
+						if (bit < busInput.getBitCount()) {
+							copies.add(new int[] { signals.get(outerNode, lanes.intern(outerNode.getLaneBus(), outerNode.getLaneBitOffset() + bit)), innerSignal });
+						} else {
+							constSignals.add(innerSignal);
+							constStates.add(false);
+						}
+					}
+				} else if (ioComponent instanceof BusOutputComponent busOutput) {
+					Node innerNode = ioComponent.getInputs().get(0);
+					for (int i = 0; i < busOutput.getBitCount(); i++) {
+						copies.add(new int[] { signals.get(innerNode, lanes.intern(innerNode.getLaneBus(), innerNode.getLaneBitOffset() + i)), signals.get(outerNode, lanes.intern(outerNode.getLaneBus(), outerNode.getLaneBitOffset() + i)) });
+					}
+				}
+			}
+		}
+
+		// Build the operations of all other components
+
+		for (Circuit circuit : circuits) {
+			boolean mainCircuit = circuit == this.circuit;
+			for (Component component : circuit.getComponents()) {
+				if (component instanceof NetConnector || component instanceof SubCircuitComponent || subCircuitIOs.contains(component)) continue;
+
+				if (component instanceof LogicGateComponent gate) {
+					int[] gateSignals = new int[gate.getInputs().size() + 1];
+					gateSignals[0] = signals.get(gate.getOutputs().get(0));
+					for (int i = 0; i < gate.getInputs().size(); i++) gateSignals[i + 1] = signals.get(gate.getInputs().get(i));
+					gates.add(gateSignals);
+					gateTables.add(gate.getTruthTable());
+				} else if (component instanceof NotGateComponent) {
+					nots.add(new int[] { signals.get(component.getInputs().get(0)), signals.get(component.getOutputs().get(0)) });
+				} else if (component instanceof BoolConstComponent boolConst) {
+					constSignals.add(signals.get(component.getOutputs().get(0)));
+					constStates.add(boolConst.getState());
+				} else if (component instanceof BusConstComponent busConst) {
+					OutputNode output = component.getOutputs().get(0);
+					for (int i = 0; i < busConst.getBitCount(); i++) {
+						int bit = i + output.getLaneBitOffset();
+						constSignals.add(signals.get(output, lanes.intern(output.getLaneBus(), bit)));
+						constStates.add((busConst.getValue() & (1 << bit)) > 0);
+					}
+				} else if (component instanceof BoolInputComponent boolInput) {
+					if (mainCircuit) {
+						inputBits.add(new int[] { signals.get(component.getOutputs().get(0)), this.inputs.size(), 0 });
+						this.inputs.add(component);
+					} else {
+						constSignals.add(signals.get(component.getOutputs().get(0)));
+						constStates.add(boolInput.getState());
+					}
+				} else if (component instanceof BusInputComponent busInput) {
+					OutputNode output = component.getOutputs().get(0);
+					for (int i = 0; i < busInput.getBitCount(); i++) {
+						int bit = i + output.getLaneBitOffset();
+						if (mainCircuit) {
+							inputBits.add(new int[] { signals.get(output, lanes.intern(output.getLaneBus(), bit)), this.inputs.size(), bit });
+						} else {
+							constSignals.add(signals.get(output, lanes.intern(output.getLaneBus(), bit)));
+							constStates.add((busInput.getValue() & (1 << bit)) > 0);
+						}
+					}
+					if (mainCircuit) this.inputs.add(component);
+				} else if (component instanceof BoolOutputComponent) {
+					if (!mainCircuit) continue;
+					outputSignals.add(new int[] { signals.get(component.getInputs().get(0)) });
+					this.outputs.add(component);
+				} else if (component instanceof BusOutputComponent busOutput) {
+					if (!mainCircuit) continue;
+					InputNode input = component.getInputs().get(0);
+					int[] bits = new int[busOutput.getBitCount()];
+					for (int i = 0; i < bits.length; i++) bits[i] = signals.get(input, lanes.intern(input.getLaneBus(), input.getLaneBitOffset() + i));
+					outputSignals.add(bits);
+					this.outputs.add(component);
+				} else {
+					throw new IllegalArgumentException("Component '" + component.getLabel() + "' (" + component.getClass().getSimpleName() + ") can not be simulated bit-parallel!");
+				}
+			}
+		}
+
+		// Copy all lanes of the nets connected by untagged bool IOs, repeated until no new lanes appear since copied lanes can be copied further by the next IO
+
+		List<int[]> laneCopies = new ArrayList<>();
+		Set<Long> copiedLanes = new HashSet<>();
+		boolean lanesAdded = true;
+		while (lanesAdded) {
+			lanesAdded = false;
+			for (Node[] netCopy : netCopies) {
+				for (int laneId : signals.getLanes(netCopy[0])) {
+					int input = signals.get(netCopy[0], laneId);
+					int output = signals.get(netCopy[1], laneId);
+					if (copiedLanes.add((long) input << 32 | output)) {
+						laneCopies.add(new int[] { input, output });
+						lanesAdded = true;
+					}
+				}
+			}
+		}
+
+		this.signalCount = signals.getSignalCount();
+		this.preferHighSignals = signals.getSignals(ShortCircuitType.PREFER_HIGH);
+		this.preferLowSignals = signals.getSignals(ShortCircuitType.PREFER_LOW);
+
+		this.gateInputsA = new int[gates.size()];
+		this.gateInputsB = new int[gates.size()];
+		this.gateInputsExtra = new int[gates.size()][];
+		this.gateParity = new boolean[gates.size()];
+		this.gateOutputs = new int[gates.size()];
+		this.gateTables = new long[gates.size() * 4];
+		this.gateStates = new long[gates.size()];
+		for (int i = 0; i < gates.size(); i++) {
+			this.gateOutputs[i] = gates.get(i)[0];
+			this.gateInputsA[i] = gates.get(i)[1];
+			this.gateInputsB[i] = gates.get(i)[2];
+			this.gateInputsExtra[i] = Arrays.copyOfRange(gates.get(i), 3, gates.get(i).length);
+			this.gateParity[i] = gateTables.get(i) == LogicGateComponent.XOR_TRUTH_TABLE;
+			for (int j = 0; j < 4; j++) this.gateTables[i * 4 + j] = (gateTables.get(i) >> j & 1) != 0 ? -1L : 0L;
+		}
+
+		this.notInputs = nots.stream().mapToInt(not -> not[0]).toArray();
+		this.notOutputs = nots.stream().mapToInt(not -> not[1]).toArray();
+		this.copyInputs = copies.stream().mapToInt(copy -> copy[0]).toArray();
+		this.copyOutputs = copies.stream().mapToInt(copy -> copy[1]).toArray();
+		this.laneCopyInputs = laneCopies.stream().mapToInt(copy -> copy[0]).toArray();
+		this.laneCopyOutputs = laneCopies.stream().mapToInt(copy -> copy[1]).toArray();
+
+		this.constSignals = constSignals.stream().mapToInt(Integer::intValue).toArray();
+		this.constStates = new boolean[constStates.size()];
+		for (int i = 0; i < constStates.size(); i++) this.constStates[i] = constStates.get(i);
+
+		this.inputSignals = inputBits.stream().mapToInt(input -> input[0]).toArray();
+		this.inputIndices = inputBits.stream().mapToInt(input -> input[1]).toArray();
+		this.inputBits = inputBits.stream().mapToInt(input -> input[2]).toArray();
+		this.inputVectors = new long[inputBits.size()];
+		this.outputSignals = outputSignals.toArray(new int[outputSignals.size()][]);
+
+		this.lowPri = new long[this.signalCount];
+		this.highPri = new long[this.signalCount];
+		this.lowSec = new long[this.signalCount];
+		this.highSec = new long[this.signalCount];
+
+	}
+
+	/**
+	 * Assigns the indices to the lanes of the nets of all circuits.
+	 */
+	protected static class SignalBuilder {
+
+		protected final Map<Circuit, Integer> netOffsets = new IdentityHashMap<>();
+		protected final Map<Long, Integer> signalIds = new HashMap<>();
+		protected final Map<Integer, List<Integer>> netLanes = new HashMap<>();
+		protected final List<ShortCircuitType> signalModes = new ArrayList<>();
+
+		public SignalBuilder(List<Circuit> circuits) {
+			int netCount = 0;
+			for (Circuit circuit : circuits) {
+				this.netOffsets.put(circuit, netCount);
+				netCount += circuit.getNetCount();
+			}
+		}
+
+		protected int getNet(Node node) {
+			Circuit circuit = node.getCircuit();
+			Integer offset = this.netOffsets.get(circuit);
+			if (offset == null || node.getNetId() < 0 || node.getNetId() >= circuit.getNetCount()) return -1;
+			return offset + node.getNetId();
+		}
+
+		public int get(Node node) {
+			return get(node, node.getLaneId());
+		}
+
+		/**
+		 * Returns the index of the lane in the net of the node, an unconnected node gets an own index that is not shared with anything else.
+		 */
+		public int get(Node node, int laneId) {
+			int net = getNet(node);
+			if (net < 0) {
+				this.signalModes.add(node.getCircuit().getShortCircuitMode());
+				return this.signalModes.size() - 1;
+			}
+			long key = (long) net << 32 | laneId;
+			Integer signal = this.signalIds.get(key);
+			if (signal == null) {
+				signal = this.signalModes.size();
+				this.signalModes.add(node.getCircuit().getShortCircuitMode());
+				this.signalIds.put(key, signal);
+				this.netLanes.computeIfAbsent(net, n -> new ArrayList<>()).add(laneId);
+			}
+			return signal;
+		}
+
+		/**
+		 * Returns the lanes of the net of the node that got an index so far.
+		 */
+		public List<Integer> getLanes(Node node) {
+			int net = getNet(node);
+			if (net < 0 || !this.netLanes.containsKey(net)) return Collections.emptyList();
+			return new ArrayList<>(this.netLanes.get(net));
+		}
+
+		public int getSignalCount() {
+			return this.signalModes.size();
+		}
+
+		/**
+		 * Returns the indices of all lanes in circuits with the given short circuit mode.
+		 */
+		public int[] getSignals(ShortCircuitType mode) {
+			int[] signals = new int[this.signalModes.size()];
+			int count = 0;
+			for (int i = 0; i < signals.length; i++) {
+				if (this.signalModes.get(i) == mode) signals[count++] = i;
+			}
+			return Arrays.copyOf(signals, count);
+		}
+
+	}
+
+}
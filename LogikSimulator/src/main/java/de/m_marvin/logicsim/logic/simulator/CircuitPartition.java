@@ -0,0 +1,84 @@
+package de.m_marvin.logicsim.logic.simulator;
+
+import java.util.concurrent.ForkJoinTask;
+
+import de.m_marvin.logicsim.logic.Component;
+
+/**
+ * One part of an circuit that gets simulated in parallel to the other parts of the same circuit.
+ * Every net is owned by exactly one partition and all components driving that net are placed in the same partition, so two partitions never write to the same net.
+ * The simulation of an tick is split in two phases, first all partitions evaluate their components, which only read the net states of the last tick.
+ * After all partitions have finished, the new net states are committed by copying them from the primary to the secondary buffer.
+ * This makes the result independent of the order in which the partitions get executed.
+ *
+ * @author Marvin K.
+ *
+ */
+public class CircuitPartition {
+
+	protected final Component[] components;
+	protected final LaneStateMap[] netsPri;
+	protected final LaneStateMap[] netsSec;
+	protected final ForkJoinTask<?> evaluationTask = ForkJoinTask.adapt(this::evaluate);
+	protected final ForkJoinTask<?> commitTask = ForkJoinTask.adapt(this::commit);
+	protected volatile long evaluationTime;
+	protected volatile long commitTime;
+
+	public CircuitPartition(Component[] components, LaneStateMap[] netsPri, LaneStateMap[] netsSec) {
+		this.components = components;
+		this.netsPri = netsPri;
+		this.netsSec = netsSec;
+	}
+
+	/**
+	 * Clears the owned nets and updates all components of this partition.
+	 */
+	public void evaluate() {
+		long start = System.nanoTime();
+		for (LaneStateMap net : this.netsPri) net.clear();
+		for (Component component : this.components) component.updateIO();
+		this.evaluationTime = System.nanoTime() - start;
+	}
+
+	/**
+	 * Copies the new states of the owned nets to the secondary buffer, which is read by the components in the next tick.
+	 */
+	public void commit() {
+		long start = System.nanoTime();
+		for (int i = 0; i < this.netsPri.length; i++) this.netsSec[i].copyFrom(this.netsPri[i]);
+		this.commitTime = System.nanoTime() - start;
+	}
+
+	public ForkJoinTask<?> getEvaluationTask() {
+		this.evaluationTask.reinitialize();
+		return this.evaluationTask;
+	}
+
+	public ForkJoinTask<?> getCommitTask() {
+		this.commitTask.reinitialize();
+		return this.commitTask;
+	}
+
+	public int getComponentCount() {
+		return this.components.length;
+	}
+
+	public int getNetCount() {
+		return this.netsPri.length;
+	}
+
+	/**
+	 * Returns the time the last evaluation phase took in nanoseconds.
+	 */
+	public long getEvaluationTime() {
+		return this.evaluationTime;
+	}
+
+	/**
+	 * Returns the time the last commit phase took in nanoseconds.
+	 */
+	public long getCommitTime() {
+		return this.commitTime;
+	}
+
+}
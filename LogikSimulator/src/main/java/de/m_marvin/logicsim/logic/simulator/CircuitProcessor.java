@@ -1,17 +1,27 @@
 package de.m_marvin.logicsim.logic.simulator;
 
+import java.io.File;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import com.sun.management.OperatingSystemMXBean;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import de.m_marvin.logicsim.LogicSim;
 import de.m_marvin.logicsim.logic.Circuit;
+import de.m_marvin.logicsim.logic.simulator.SettleDetector.SettleResult;
 import de.m_marvin.logicsim.ui.windows.Editor;
 
 /**
@@ -23,9 +33,31 @@ import de.m_marvin.logicsim.ui.windows.Editor;
  */
 public class CircuitProcessor {
 	
+	/**
+	 * Describes how the circuit processes are executed.
+	 * <br>PROCESSOR_THREADS - One processor thread per core, each executing a fixed list of processes, the processes get moved between the threads by the master thread.
+	 * <br>WORK_STEALING - All processes are submitted to an fork-join pool in every frame, idle workers steal the processes of busy ones.
+	 * <br>SYNCHRONOUS - No simulation threads, the processes are executed one after another on the calling thread each time {@link CircuitProcessor#tick()} is called.
+	 */
+	public static enum ExecutionBackend {
+		PROCESSOR_THREADS,WORK_STEALING,SYNCHRONOUS;
+	}
+	
+	/**
+	 * The parts of an tick executed by an process.
+	 * <br>FULL_TICK - Evaluation and commit directly after each other, used if the processes are not executed in lock-step.
+	 * <br>EVALUATE - Updates all components, which only read the lane states committed in the last tick.
+	 * <br>COMMIT - Publishes the new lane states, in lock-step mode only executed after all processes finished their evaluation.
+	 */
+	public static enum TickPhase {
+		FULL_TICK,EVALUATE,COMMIT;
+	}
+	
 	/**
 	 * Represents an circuit that is executed on an thread
 	 * Contains execution-time data and a reference to the parent circuit (which is null if this is the main process).
+	 * All times are measured in nanoseconds, the processing time of every tick is counted in an latency histogram.
+	 * If the sub-circuits are flattened, the main process also executes all sub-circuits and holds the flattened circuit.
 	 * 
 	 * @author Marvin K.
 	 */
@@ -34,36 +66,104 @@ public class CircuitProcessor {
 		public long executionStart;
 		public long executionEnd;
 		public long executionTime;
+		public long processingTime;
+		public final LatencyHistogram latency = new LatencyHistogram();
 		protected boolean active;
+		protected final ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[TickPhase.values().length];
 		
 		public final Circuit parentCircuit;
 		public final Circuit circuit;
+		protected final FlattenedCircuit flattened;
 		
 		public CircuitProcess(Circuit parentCircuit, Circuit circuit) {
+			this(parentCircuit, circuit, null);
+		}
+		
+		public CircuitProcess(Circuit parentCircuit, Circuit circuit, FlattenedCircuit flattened) {
 			this.parentCircuit = parentCircuit;
 			this.circuit = circuit;
+			this.flattened = flattened;
+		}
+		
+		/**
+		 * Returns the flattened circuit executed by this process, or null if only the circuit itself is executed.
+		 */
+		public FlattenedCircuit getFlattenedCircuit() {
+			return this.flattened;
+		}
+		
+		public void resetNetworks() {
+			if (this.flattened != null) {
+				this.flattened.resetNetworks();
+			} else {
+				this.circuit.resetNetworks();
+			}
 		}
 		
 		@Override
 		public void run() {
-			executionEnd = getCurrentTime();
-			executionTime = executionEnd - executionStart;
-			executionStart = getCurrentTime();
+			execute(TickPhase.FULL_TICK);
+		}
+		
+		/**
+		 * Executes the given part of an tick.
+		 * The execution time is measured from the start of one tick to the start of the next one, the processing time includes both parts of the tick.
+		 */
+		public void execute(TickPhase phase) {
+			if (phase != TickPhase.COMMIT) {
+				executionEnd = System.nanoTime();
+				executionTime = executionEnd - executionStart;
+				executionStart = executionEnd;
+			}
+			long processingStart = System.nanoTime();
 			try {
-				circuit.updateCircuit();
+				if (phase != TickPhase.COMMIT) {
+					if (flattened != null) {
+						flattened.evaluate();
+					} else {
+						circuit.evaluateCircuit();
+					}
+				}
+				if (phase != TickPhase.EVALUATE) {
+					if (flattened != null) {
+						flattened.commit();
+					} else {
+						circuit.commitCircuit();
+					}
+				}
 			} catch (ConcurrentModificationException | NullPointerException | IndexOutOfBoundsException e) {
 				// This catches exceptions that are thrown by interfering with the simulation while it is running
 				// When performing mass-selection or copy paste for example
 				// If this message appears while doing a normal simulation, it is definitely a bug!
 				System.out.println("Concurrent modification occured in simulation!");
 			}
+			if (phase == TickPhase.COMMIT) {
+				processingTime += System.nanoTime() - processingStart;
+			} else {
+				processingTime = System.nanoTime() - processingStart;
+			}
+			if (phase != TickPhase.EVALUATE) latency.record(processingTime);
+		}
+		
+		/**
+		 * Returns an reusable fork-join task executing the given part of an tick of this process.
+		 */
+		protected ForkJoinTask<?> getTask(TickPhase phase) {
+			ForkJoinTask<?> task = this.tasks[phase.ordinal()];
+			if (task == null) {
+				task = ForkJoinTask.adapt(() -> execute(phase));
+				this.tasks[phase.ordinal()] = task;
+			} else {
+				task.reinitialize();
+			}
+			return task;
 		}
 		
 	}
 	
 	/**
 	 * Represents a thread that is running some circuit simulations.
-	 * Contains a list of circuit process that are executed and some execution time data.
+	 * Contains a list of circuit process that are executed and some execution time data, the execution time is measured in nanoseconds.
 	 * Normally there should not be more simulation threads as CPU cores.
 	 * 
 	 * @author Marvin K.
@@ -75,93 +175,274 @@ public class CircuitProcessor {
 		public long executionStart;
 		public long executionEnd;
 		public long executionTime;
-		public int tps;
+		public final TickPacer pacer = new TickPacer(tickRate);
 		
 		public CircuitProcessorThread(String name) {
 			super(name);
 			this.setDaemon(true);
+			this.pacer.setBusySpin(busySpin);
 		}
 		
 		@Override
 		public void run() {
 			try {
-				float frameDelta = 0;
-				long lastFrameTime = 0;
-				long frameTime = 0;
-				int frameCount = 0;
-				long secondTimer = getCurrentTime();
 				while (!requestShutdown) {
 					try {
 						if (allowedToExecute) {
-							
-							if (minFrameTime > 0) {
-								lastFrameTime = frameTime;
-								frameTime = getCurrentTime();
-								frameDelta += (frameTime - lastFrameTime) / minFrameTime;
-								if (frameDelta > 20 || frameDelta < 0) frameDelta = 0;
-							}
-							if (getCurrentTime() - secondTimer > 1000) {
-								secondTimer = getCurrentTime();
-								tps = frameCount;
-								frameCount = 0;
-							}
-							if (minFrameTime <= 0 || frameDelta >= 1) {
-								frameDelta--;
-								frameCount += 1;
-								this.executionEnd = getCurrentTime();
-								this.executionTime = this.executionEnd - this.executionStart;
-								this.executionStart = getCurrentTime();
-								for (int i = 0; i < this.processes.size(); i++) {
-									CircuitProcess process;
-									try {
-										process = processes.get(i);
-									} catch (IndexOutOfBoundsException e) {
-										process = null;
-									}
-									if (process != null ? process.active : false) process.run();
-								}
-								if (this.processes.isEmpty()) {
-									Thread.sleep(1000);
-								}
+							if (isFastForwarding()) {
+								this.pacer.skipFrame();
 							} else {
-								Thread.sleep((long) (minFrameTime / 2));
+								this.pacer.awaitFrame();
+							}
+							this.executionEnd = System.nanoTime();
+							this.executionTime = this.executionEnd - this.executionStart;
+							this.executionStart = this.executionEnd;
+							executeProcesses();
+							if (lockStepBarrier != null ? lockStepBarrier.isTerminated() : this.processes.isEmpty()) {
+								Thread.sleep(1000);
+								this.pacer.reset();
 							}
 						} else {
 							Thread.sleep(1000);
+							this.pacer.reset();
 						}
 					} catch (InterruptedException e) {
-						frameDelta = 0;
-						frameTime = getCurrentTime();
-						secondTimer = getCurrentTime();
+						this.pacer.reset();
 					}
 				}
 			} catch (Throwable e) {
 				e.printStackTrace();
-				LogicSim.getInstance().getDisplay().asyncExec(() -> {
-					if (!LogicSim.getInstance().getLastInteractedEditor().getShell().isDisposed()) Editor.showErrorInfo(LogicSim.getInstance().getLastInteractedEditor().getShell(), "editor.window.error.processor_crash", e);
+				LogicSim logicSim = LogicSim.getInstance();
+				if (logicSim != null && logicSim.getDisplay() != null) logicSim.getDisplay().asyncExec(() -> {
+					Editor editor = logicSim.getLastInteractedEditor();
+					if (editor != null && !editor.getShell().isDisposed()) Editor.showErrorInfo(editor.getShell(), "editor.window.error.processor_crash", e);
 				});
 				this.processes.forEach(process -> process.active = false);
+				// The other threads would wait forever for this thread to arrive at the barrier
+				if (lockStepBarrier != null) lockStepBarrier.forceTermination();
+			}
+		}
+		
+		/**
+		 * Executes all active processes of this thread once.
+		 * In lock-step mode, all processes are evaluated before the first one gets committed.
+		 * If there are multiple processor threads, they execute the processes of all threads together, separated by the lock-step barrier.
+		 */
+		protected void executeProcesses() {
+			if (lockStepBarrier != null) {
+				lockStepBarrier.executeFrame();
+			} else if (lockStep) {
+				executeProcesses(TickPhase.EVALUATE);
+				executeProcesses(TickPhase.COMMIT);
+			} else {
+				executeProcesses(TickPhase.FULL_TICK);
+			}
+		}
+		
+		protected void executeProcesses(TickPhase phase) {
+			for (int i = 0; i < this.processes.size(); i++) {
+				CircuitProcess process;
+				try {
+					process = processes.get(i);
+				} catch (IndexOutOfBoundsException e) {
+					process = null;
+				}
+				if (process != null ? process.active : false) process.execute(phase);
 			}
 		}
 		
 	}
 	
+	/**
+	 * The only processor thread of the work stealing backend.
+	 * Instead of executing the processes itself, it hands them over to the fork-join pool in every frame and waits until all of them are completed.
+	 * The processes are forked ordered by their last processing time, longest first, so idle workers steal the longest remaining process.
+	 * The worker starting the frame executes the longest process itself and then helps with the remaining ones, so no worker waits as long as there is work left.
+	 * If there is only one worker, the processes are executed directly by this thread.
+	 * 
+	 * @author Marvin K.
+	 */
+	public class WorkStealingProcessorThread extends CircuitProcessorThread {
+		
+		protected final ForkJoinTask<?> frameTask = ForkJoinTask.adapt(this::forkProcesses);
+		protected CircuitProcess[] frameProcesses = new CircuitProcess[0];
+		protected ForkJoinTask<?>[] frameTasks = new ForkJoinTask<?>[0];
+		protected int frameProcessCount;
+		protected TickPhase framePhase = TickPhase.FULL_TICK;
+		
+		public WorkStealingProcessorThread(String name) {
+			super(name);
+		}
+		
+		@Override
+		protected void executeProcesses() {
+			synchronized (this) {
+				this.frameProcessCount = this.processes.size();
+				if (this.frameProcesses.length < this.frameProcessCount) {
+					this.frameProcesses = new CircuitProcess[this.frameProcessCount * 2];
+					this.frameTasks = new ForkJoinTask<?>[this.frameProcessCount * 2];
+				}
+				this.processes.toArray(this.frameProcesses);
+			}
+			Arrays.sort(this.frameProcesses, 0, this.frameProcessCount, LONGEST_PROCESS_FIRST);
+			if (lockStep) {
+				// All processes have to be joined after the evaluation, which makes it the barrier before the commit
+				executeFrame(TickPhase.EVALUATE);
+				executeFrame(TickPhase.COMMIT);
+			} else {
+				executeFrame(TickPhase.FULL_TICK);
+			}
+			for (int i = 0; i < this.frameProcessCount; i++) this.frameProcesses[i] = null;
+		}
+		
+		protected void executeFrame(TickPhase phase) {
+			this.framePhase = phase;
+			if (this.frameProcessCount <= 1 || workerPool.getParallelism() <= 1) {
+				// Nothing to distribute, avoid handing the frame over to an worker
+				forkProcesses();
+			} else {
+				this.frameTask.reinitialize();
+				workerPool.invoke(this.frameTask);
+			}
+		}
+		
+		protected void forkProcesses() {
+			CircuitProcess[] frameProcesses = this.frameProcesses;
+			ForkJoinTask<?>[] frameTasks = this.frameTasks;
+			int processCount = this.frameProcessCount;
+			TickPhase phase = this.framePhase;
+			int localProcess = -1;
+			for (int i = 0; i < processCount; i++) {
+				frameTasks[i] = null;
+				if (!frameProcesses[i].active) continue;
+				if (localProcess == -1) {
+					localProcess = i;
+				} else if (ForkJoinTask.inForkJoinPool()) {
+					frameTasks[i] = frameProcesses[i].getTask(phase).fork();
+				} else {
+					frameProcesses[i].execute(phase);
+				}
+			}
+			if (localProcess >= 0) frameProcesses[localProcess].execute(phase);
+			// Join in reverse order, the tasks that were not stolen yet are executed by this worker
+			for (int i = processCount - 1; i >= 0; i--) {
+				if (frameTasks[i] != null) frameTasks[i].join();
+				frameTasks[i] = null;
+			}
+		}
+		
+	}
+	
+	/**
+	 * The barrier synchronizing the processor threads in lock-step mode.
+	 * Every frame consists of two phases, in the first one all processes are evaluated, in the second one all of them are committed.
+	 * The thread arriving last at the barrier collects the processes of all threads for the next phase, so no thread can start an phase before all threads finished the last one.
+	 * The processes are claimed one by one by the threads, which balances the work over all threads without changing the result, since an process only reads lane states committed in an earlier phase.
+	 * 
+	 * @author Marvin K.
+	 */
+	public class LockStepBarrier extends Phaser {
+		
+		protected CircuitProcess[] frameProcesses = new CircuitProcess[0];
+		protected int frameProcessCount;
+		protected final AtomicInteger nextProcess = new AtomicInteger();
+		
+		public LockStepBarrier(int threadCount) {
+			super(threadCount);
+		}
+		
+		@Override
+		protected boolean onAdvance(int phase, int registeredParties) {
+			if (phase % 2 == 0) {
+				// Start of an new frame, collect the processes of all threads
+				int processCount = 0;
+				for (CircuitProcessorThread thread : threads) {
+					synchronized (thread) {
+						if (this.frameProcesses.length < processCount + thread.processes.size()) this.frameProcesses = Arrays.copyOf(this.frameProcesses, (processCount + thread.processes.size()) * 2);
+						for (int i = 0; i < thread.processes.size(); i++) this.frameProcesses[processCount++] = thread.processes.get(i);
+					}
+				}
+				Arrays.fill(this.frameProcesses, processCount, this.frameProcessCount > processCount ? this.frameProcessCount : processCount, null);
+				Arrays.sort(this.frameProcesses, 0, processCount, LONGEST_PROCESS_FIRST);
+				this.frameProcessCount = processCount;
+			}
+			this.nextProcess.set(0);
+			return requestShutdown || registeredParties == 0;
+		}
+		
+		/**
+		 * Executes one frame together with the other processor threads.
+		 */
+		public void executeFrame() {
+			if (arriveAndAwaitAdvance() < 0) return;
+			executePhase(TickPhase.EVALUATE);
+			if (arriveAndAwaitAdvance() < 0) return;
+			executePhase(TickPhase.COMMIT);
+		}
+		
+		protected void executePhase(TickPhase phase) {
+			CircuitProcess[] frameProcesses = this.frameProcesses;
+			int processCount = this.frameProcessCount;
+			for (int i = this.nextProcess.getAndIncrement(); i < processCount; i = this.nextProcess.getAndIncrement()) {
+				if (frameProcesses[i].active) frameProcesses[i].execute(phase);
+			}
+		}
+		
+	}
+	
+	/* The simulated time of one tick in nanoseconds, used by clocks running in simulation time */
+	public static final long DEFAULT_TICK_DURATION = 1000000;
+	
+	protected static final Comparator<CircuitProcess> LONGEST_PROCESS_FIRST = (a, b) -> Long.compare(b.processingTime, a.processingTime);
+	
+	protected final ExecutionBackend backend;
+	protected final boolean lockStep;
+	protected LockStepBarrier lockStepBarrier;
+	protected ForkJoinPool workerPool;
+	protected volatile ForkJoinPool partitionPool;
 	protected boolean resetCircuits = true;
+	protected boolean flattenSubCircuits = false;
 	protected boolean allowedToExecute = false;
 	protected boolean requestShutdown = false;
 	protected List<CircuitProcessorThread> threads = new ArrayList<>();
 	protected Map<Circuit, CircuitProcess> inactives = new HashMap<>();
-	protected Map<Circuit, CircuitProcess> processes = new HashMap<>();
+	protected Map<Circuit, CircuitProcess> processes = new LinkedHashMap<>();
+	/* Reused by update() to collect the processes that get activated and to iterate over all processes, so nothing is allocated every frame */
+	protected final List<CircuitProcess> queuedProcesses = new ArrayList<>();
+	protected CircuitProcess[] processArray = null;
 	protected CircuitProcess mainProcess = null;
 	protected Thread processorMasterThread;
-	protected float minFrameTime = 50;
+	protected double tickRate = 20;
+	protected boolean busySpin = false;
+	protected long tickDuration = DEFAULT_TICK_DURATION;
+	protected volatile long fastForwardTick = -1;
+	protected int historyTicks = NetHistory.DEFAULT_TICK_CAPACITY;
+	protected int historyChanges = NetHistory.DEFAULT_CHANGE_CAPACITY;
 	protected double cpuLoad = 0;
 	protected OperatingSystemMXBean osBean;
 	protected long cpuLoadTimer = 0;
 	
 	public CircuitProcessor() {
+		this(ExecutionBackend.WORK_STEALING);
+	}
+	
+	public CircuitProcessor(ExecutionBackend backend) {
+		this(backend, false);
+	}
+	
+	/**
+	 * Creates an new processor using the given backend.
+	 * In lock-step mode, all processes advance their ticks together: every frame, all processes are evaluated before the first one is committed.
+	 * Since the sub-circuit IOs only read lane states committed in the last frame, the results do not depend on the number of threads or the order of the processes.
+	 * 
+	 * @param backend The backend executing the processes
+	 * @param lockStep If the processes should be executed in lock-step
+	 */
+	public CircuitProcessor(ExecutionBackend backend, boolean lockStep) {
 		
 		System.out.println("Create new circuit processor ...");
+		this.backend = backend;
+		this.lockStep = lockStep;
 		
 		try {
 			this.osBean = ManagementFactory.newPlatformMXBeanProxy(ManagementFactory.getPlatformMBeanServer(), ManagementFactory.OPERATING_SYSTEM_MXBEAN_NAME, OperatingSystemMXBean.class);	
@@ -171,9 +452,28 @@ public class CircuitProcessor {
 			e.printStackTrace();
 		}
 
-		System.out.println("Start processor threads for " + getAvailableCores() + " cores ...");
-		for (int i = 0; i < getAvailableCores(); i++) {
-			this.threads.add(new CircuitProcessorThread("processor-" + i));
+		if (backend == ExecutionBackend.WORK_STEALING) {
+			System.out.println("Start work stealing pool for " + getAvailableCores() + " cores ...");
+			this.workerPool = new ForkJoinPool(getAvailableCores(), pool -> {
+				ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+				thread.setName("processor-worker-" + thread.getPoolIndex());
+				return thread;
+			}, null, false);
+			this.threads.add(new WorkStealingProcessorThread("processor-scheduler"));
+		} else if (backend == ExecutionBackend.SYNCHRONOUS) {
+			// This thread only holds the processes and is never started, the processes are executed by the thread calling tick()
+			this.threads.add(new CircuitProcessorThread("processor-synchronous"));
+			System.out.println("Synchronous processor created, no threads started");
+			return;
+		} else {
+			System.out.println("Start processor threads for " + getAvailableCores() + " cores ...");
+			for (int i = 0; i < getAvailableCores(); i++) {
+				this.threads.add(new CircuitProcessorThread("processor-" + i));
+			}
+			if (lockStep) {
+				System.out.println("Processor threads run in lock-step");
+				this.lockStepBarrier = new LockStepBarrier(this.threads.size());
+			}
 		}
 		this.threads.forEach(Thread::start);
 
@@ -191,14 +491,192 @@ public class CircuitProcessor {
 		
 	}
 	
+	/**
+	 * Executes all processes exactly once on the calling thread, only available with the {@link ExecutionBackend#SYNCHRONOUS} backend.
+	 * Newly added processes are activated before, the simulation has to be started by calling {@link #start()} first.
+	 */
+	public void tick() {
+		if (this.backend != ExecutionBackend.SYNCHRONOUS) throw new IllegalStateException("Processes can only be executed manually by an synchronous processor!");
+		seekNewestTick();
+		update();
+		CircuitProcessorThread processor = this.threads.get(0);
+		processor.executionEnd = System.nanoTime();
+		processor.executionTime = processor.executionEnd - processor.executionStart;
+		processor.executionStart = processor.executionEnd;
+		processor.executeProcesses();
+	}
+	
+	/**
+	 * Executes ticks until the nets of all simulated circuits stop changing or start to oscillate, only available on an synchronous processor.
+	 * 
+	 * @param maxTicks The maximum number of ticks to simulate
+	 * @see SettleDetector
+	 */
+	public SettleResult tickUntilSettled(int maxTicks) {
+		if (this.backend != ExecutionBackend.SYNCHRONOUS) throw new IllegalStateException("Processes can only be executed manually by an synchronous processor!");
+		seekNewestTick();
+		return new SettleDetector(this::getSimulatedCircuits, this::tick).run(maxTicks);
+	}
+	
 	public Collection<CircuitProcess> getProcesses() {
 		return processes.values();
 	}
 	
+	/**
+	 * Returns the circuits of all processes, including the sub-circuits simulated by an flattened process.
+	 */
+	public synchronized List<Circuit> getSimulatedCircuits() {
+		List<Circuit> circuits = new ArrayList<>();
+		for (CircuitProcess process : this.processes.values()) {
+			circuits.add(process.circuit);
+			if (process.flattened != null) circuits.addAll(process.flattened.getSubCircuits().keySet());
+		}
+		return circuits;
+	}
+	
+	/**
+	 * Sets the size of the histories created by {@link #setRecordHistory(Circuit, boolean)}.
+	 * 
+	 * @param ticks The maximum number of ticks held
+	 * @param changes The maximum number of lane changes held, every change takes 8 bytes
+	 */
+	public void setHistorySize(int ticks, int changes) {
+		this.historyTicks = Math.max(ticks, 1);
+		this.historyChanges = Math.max(changes, 1);
+	}
+	
+	public int getHistoryTicks() {
+		return this.historyTicks;
+	}
+	
+	public int getHistoryChanges() {
+		return this.historyChanges;
+	}
+	
+	/**
+	 * Starts or stops recording the lane changes of every tick of the circuit, so the last ticks can be shown again while the simulation is paused.
+	 * 
+	 * @see NetHistory
+	 */
+	public void setRecordHistory(Circuit circuit, boolean record) {
+		NetHistory history = circuit.getHistory();
+		if (record == (history != null)) return;
+		if (history != null && history.isRewound()) history.seek(circuit, history.getNewestTick());
+		circuit.setHistory(record ? new NetHistory(this.historyTicks, this.historyChanges) : null);
+	}
+	
+	/**
+	 * Starts writing the changes of the probed nets of the circuit into an waveform file, an recording already running for this circuit is stopped first.
+	 * 
+	 * @param file The VCD file to write
+	 * @return The recorder writing the file
+	 * @see WaveformRecorder
+	 */
+	public WaveformRecorder startWaveformRecording(Circuit circuit, File file) {
+		stopWaveformRecording(circuit);
+		WaveformRecorder recorder = new WaveformRecorder(file, circuit, circuit.getProbes(), this.tickDuration, WaveformRecorder.DEFAULT_QUEUE_CAPACITY);
+		circuit.setWaveformRecorder(recorder);
+		return recorder;
+	}
+	
+	/**
+	 * Stops the waveform recording of the circuit and waits until the file is written completely.
+	 */
+	public void stopWaveformRecording(Circuit circuit) {
+		WaveformRecorder recorder = circuit.getWaveformRecorder();
+		if (recorder == null) return;
+		circuit.setWaveformRecorder(null);
+		recorder.close();
+	}
+	
+	/**
+	 * Captures the state of the main circuit and all its sub-circuits, the simulation has to be paused or the processor has to be synchronous.
+	 * 
+	 * @return The snapshot or null if there is no main circuit
+	 * @see SimulationSnapshot
+	 */
+	public byte[] captureSnapshot() {
+		CircuitProcess mainProcess = this.mainProcess;
+		if (mainProcess == null) return null;
+		return SimulationSnapshot.capture(mainProcess.circuit);
+	}
+	
+	/**
+	 * Restores the state of the main circuit and all its sub-circuits, the simulation has to be paused or the processor has to be synchronous.
+	 * If the circuits would get reset with the next tick, because the processor was stopped or the main circuit was just added, they are reset before the snapshot is restored.
+	 * 
+	 * @throws IllegalArgumentException If the snapshot was not taken from the main circuit
+	 * @see SimulationSnapshot
+	 */
+	public synchronized void restoreSnapshot(byte[] snapshot) {
+		if (this.mainProcess == null) return;
+		if (this.resetCircuits) {
+			// Resetting the sub-circuit components adds the processes of their sub-circuits
+			for (CircuitProcess process : new ArrayList<>(this.processes.values())) process.resetNetworks();
+			this.resetCircuits = false;
+		}
+		SimulationSnapshot.restore(this.mainProcess.circuit, snapshot);
+	}
+	
 	public Collection<CircuitProcessorThread> getProcessors() {
 		return threads;
 	}
 	
+	public ExecutionBackend getExecutionBackend() {
+		return this.backend;
+	}
+	
+	public boolean isLockStep() {
+		return this.lockStep;
+	}
+	
+	/**
+	 * If enabled, the main circuit added next is simulated together with all its sub-circuits in a single flattened process.
+	 * The sub-circuits then get no own processes, and the signals pass the sub-circuit boundaries without delay.
+	 * 
+	 * @see FlattenedCircuit
+	 */
+	public void setFlattenSubCircuits(boolean flattenSubCircuits) {
+		this.flattenSubCircuits = flattenSubCircuits;
+	}
+	
+	public boolean isFlattenSubCircuits() {
+		return this.flattenSubCircuits;
+	}
+	
+	/**
+	 * Returns the number of threads executing circuits.
+	 */
+	public int getUsedCores() {
+		return this.workerPool != null ? this.workerPool.getParallelism() : this.threads.size();
+	}
+	
+	/**
+	 * Returns the fork-join pool executing the partitions of the simulated circuits.
+	 * The work stealing backend uses its worker pool, the other backends create an own pool when the first partitioned circuit is simulated.
+	 * 
+	 * @see Circuit#setPartitionCount(int)
+	 */
+	public ForkJoinPool getPartitionPool() {
+		ForkJoinPool pool = this.partitionPool;
+		if (pool != null) return pool;
+		synchronized (this) {
+			if (this.partitionPool == null) {
+				if (this.workerPool != null) {
+					this.partitionPool = this.workerPool;
+				} else {
+					System.out.println("Start partition pool for " + getAvailableCores() + " cores ...");
+					this.partitionPool = new ForkJoinPool(getAvailableCores(), forkJoinPool -> {
+						ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+						thread.setName("partition-worker-" + thread.getPoolIndex());
+						return thread;
+					}, null, false);
+				}
+			}
+			return this.partitionPool;
+		}
+	}
+	
 	public static int getAvailableCores() {
 		return Runtime.getRuntime().availableProcessors();
 	}
@@ -216,7 +694,8 @@ public class CircuitProcessor {
 		long mostExecutions = 0;
 		CircuitProcessorThread slowest = null;
 		CircuitProcessorThread fastest = null;
-		for (CircuitProcessorThread thread : this.threads) {
+		for (int i = 0; i < this.threads.size(); i++) {
+			CircuitProcessorThread thread = this.threads.get(i);
 			if (mostExecutions < thread.processes.size()) {
 				mostExecutions = thread.processes.size();
 				slowest = thread;
@@ -225,12 +704,14 @@ public class CircuitProcessor {
 				leastExecutions = thread.processes.size();
 				fastest = thread;
 			}
-			synchronized (thread) { thread.processes.removeAll(inactives.values()); }
+			if (!this.inactives.isEmpty()) synchronized (thread) { thread.processes.removeAll(inactives.values()); }
 		}
 		
-		this.inactives.forEach(this.processes::remove);
-		
-		this.inactives.clear();
+		if (!this.inactives.isEmpty()) {
+			this.inactives.forEach(this.processes::remove);
+			this.inactives.clear();
+			this.processArray = null;
+		}
 		
 		if (allowedToExecute || resetCircuits) {
 			
@@ -248,50 +729,82 @@ public class CircuitProcessor {
 			
 			// Put queued processes in active threads
 			
-			List<CircuitProcess> newProcesses = new ArrayList<>();
+			List<CircuitProcess> newProcesses = this.queuedProcesses;
+			newProcesses.clear();
 			synchronized (this) {
-				for (CircuitProcess process : this.processes.values()) {
-					if (this.resetCircuits) process.circuit.resetNetworks();
+				if (this.processArray == null) this.processArray = this.processes.values().toArray(new CircuitProcess[this.processes.size()]);
+				for (CircuitProcess process : this.processArray) {
+					if (this.resetCircuits) process.resetNetworks();
 					if (!process.active) {
 						newProcesses.add(process);
 						process.active = true;
 					} else if (process.parentCircuit != null ? !holdsCircuit(process.parentCircuit) : this.mainProcess != process) {
 						process.active = false;
 						inactives.put(process.circuit, process);
+						if (process.flattened != null) process.flattened.release();
 					}
 				}
 				this.resetCircuits = false;
 			}
-			synchronized (fastest) { fastest.processes.addAll(newProcesses); }
+			if (!newProcesses.isEmpty()) synchronized (fastest) { fastest.processes.addAll(newProcesses); }
 			
 		}
 		
 		if (getCurrentTime() - cpuLoadTimer > 1000) {
-			cpuLoad = osBean == null ? -1 : (float) osBean.getSystemCpuLoad();;
+			cpuLoadTimer = getCurrentTime();
+			cpuLoad = osBean == null ? -1 : (float) osBean.getSystemCpuLoad();
 		}
 		
 	}
 	
 	public synchronized void removeProcess(Circuit circuit) {
-		if (processes.containsKey(circuit)) this.processes.remove(circuit).active = false;		
+		if (circuit.getProcessor() == this) circuit.setProcessor(null);
+		if (processes.containsKey(circuit)) {
+			CircuitProcess process = this.processes.remove(circuit);
+			this.processArray = null;
+			process.active = false;
+			if (process.flattened != null) process.flattened.release();
+		} else if (isFlattened(circuit)) {
+			this.mainProcess.flattened.invalidate();
+		}
 	}
 	
 	public synchronized void addProcess(Circuit ownerCircuit, Circuit circuit) {
-		CircuitProcess process = new CircuitProcess(ownerCircuit, circuit);
-		this.processes.put(circuit, process);
-		circuit.resetNetworks();
+		circuit.setProcessor(this);
+		if (ownerCircuit != null && isFlattened(ownerCircuit)) {
+			// The sub-circuit is simulated by the flattened main process, which includes and resets it with its next tick
+			this.mainProcess.flattened.include(circuit);
+			return;
+		}
+		CircuitProcess process = new CircuitProcess(ownerCircuit, circuit, ownerCircuit == null && this.flattenSubCircuits ? new FlattenedCircuit(circuit) : null);
+		CircuitProcess previous = this.processes.put(circuit, process);
+		this.processArray = null;
+		if (previous != null) {
+			previous.active = false;
+			if (previous.flattened != null) previous.flattened.release();
+		}
 		if (ownerCircuit == null) {
 			this.mainProcess = process;
 			this.stop();
 		}
+		process.resetNetworks();
+	}
+	
+	/**
+	 * Returns true if the circuit is simulated as part of the flattened main process.
+	 */
+	public boolean isFlattened(Circuit circuit) {
+		CircuitProcess mainProcess = this.mainProcess;
+		return mainProcess != null && mainProcess.flattened != null && mainProcess.flattened.contains(circuit);
 	}
 	
 	public boolean isExecuting(Circuit circuit) {
+		if (!this.processes.containsKey(circuit) && isFlattened(circuit)) return allowedToExecute && this.mainProcess.active;
 		return this.processes.containsKey(circuit) && allowedToExecute && this.processes.get(circuit).active;
 	}
 
 	public boolean holdsCircuit(Circuit circuit) {
-		return this.processes.containsKey(circuit);
+		return this.processes.containsKey(circuit) || isFlattened(circuit);
 	}
 	
 	public CircuitProcessorThread getProcessorThreadOf(CircuitProcess process) {
@@ -301,15 +814,96 @@ public class CircuitProcessor {
 		return null;
 	}
 	
-	public void setMinFrameTime(float frameTime) {
-		minFrameTime = frameTime;
+	/**
+	 * Sets the number of frames per second each processor thread executes, the synchronous processor ignores this.
+	 * 
+	 * @param tickRate The frames per second, zero or less for no limit
+	 */
+	public void setTickRate(double tickRate) {
+		this.tickRate = tickRate;
+		this.threads.forEach(thread -> thread.pacer.setTickRate(tickRate));
+	}
+	
+	public double getTickRate() {
+		return this.tickRate;
+	}
+	
+	/**
+	 * If enabled, the processor threads wait for the next frame in an busy loop instead of being parked for the last part of the waiting time.
+	 * This gives precise frame times for tick rates of multiple thousand frames per second, but keeps an core busy even if there is no work.
+	 * 
+	 * @see TickPacer
+	 */
+	public void setBusySpin(boolean busySpin) {
+		this.busySpin = busySpin;
+		this.threads.forEach(thread -> thread.pacer.setBusySpin(busySpin));
+	}
+	
+	public boolean isBusySpin() {
+		return this.busySpin;
+	}
+	
+	/**
+	 * Sets the simulated time that passes with every tick, clocks running in simulation time derive their period from this.
+	 * 
+	 * @param tickDuration The simulated time of one tick in nanoseconds
+	 */
+	public void setTickDuration(long tickDuration) {
+		this.tickDuration = Math.max(tickDuration, 1);
+	}
+	
+	public long getTickDuration() {
+		return this.tickDuration;
+	}
+	
+	/**
+	 * Simulates the given time as fast as possible, ignoring the tick rate until the main circuit has advanced by the required number of ticks.
+	 * The synchronous processor executes the ticks directly on the calling thread, the other backends continue the fast-forward in the background.
+	 * 
+	 * @param simulatedTime The simulated time to skip in nanoseconds
+	 */
+	public void fastForward(long simulatedTime) {
+		long ticks = (simulatedTime + this.tickDuration - 1) / this.tickDuration;
+		seekNewestTick();
+		if (this.backend == ExecutionBackend.SYNCHRONOUS) {
+			for (long i = 0; i < ticks; i++) tick();
+			return;
+		}
+		CircuitProcess mainProcess = this.mainProcess;
+		if (mainProcess == null) return;
+		this.fastForwardTick = mainProcess.circuit.getSimulationTick() + ticks;
+	}
+	
+	/**
+	 * Returns true while an fast-forward is running and the tick rate is ignored.
+	 */
+	public boolean isFastForwarding() {
+		CircuitProcess mainProcess = this.mainProcess;
+		long fastForwardTick = this.fastForwardTick;
+		if (fastForwardTick < 0 || mainProcess == null) return false;
+		if (mainProcess.circuit.getSimulationTick() < fastForwardTick) return true;
+		this.fastForwardTick = -1;
+		return false;
+	}
+	
+	/**
+	 * Sets the nets of all simulated circuits that show an older tick of their history back to the newest tick, so the simulation continues from there.
+	 */
+	protected synchronized void seekNewestTick() {
+		// Called before every tick, forEach is used since it does not allocate an iterator
+		this.processes.values().forEach(process -> {
+			seekNewestTick(process.circuit);
+			if (process.flattened != null) process.flattened.getSubCircuits().keySet().forEach(CircuitProcessor::seekNewestTick);
+		});
 	}
 	
-	public float getMinFrameTime() {
-		return minFrameTime;
+	protected static void seekNewestTick(Circuit circuit) {
+		NetHistory history = circuit.getHistory();
+		if (history != null && history.isRewound()) history.seek(circuit, history.getNewestTick());
 	}
 	
 	public void start() {
+		seekNewestTick();
 		this.allowedToExecute = true;
 		this.threads.forEach(Thread::interrupt);
 	}
@@ -321,12 +915,17 @@ public class CircuitProcessor {
 	public void stop() {
 		this.allowedToExecute = false;
 		this.resetCircuits = true;
+		this.fastForwardTick = -1;
 	}
 	
 	public void terminate() {
 		System.out.println("Shutdown circuit processor ...");
 		stop();
+		for (Circuit circuit : getSimulatedCircuits()) stopWaveformRecording(circuit);
 		this.requestShutdown = true;
+		if (this.workerPool != null) this.workerPool.shutdown();
+		if (this.partitionPool != null) this.partitionPool.shutdown();
+		if (this.lockStepBarrier != null) this.lockStepBarrier.forceTermination();
 	}
 	
 }
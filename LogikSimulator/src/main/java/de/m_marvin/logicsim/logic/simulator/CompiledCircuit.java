@@ -0,0 +1,414 @@
+package de.m_marvin.logicsim.logic.simulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.m_marvin.logicsim.logic.Circuit;
+import de.m_marvin.logicsim.logic.Circuit.NetState;
+import de.m_marvin.logicsim.logic.Circuit.ShortCircuitType;
+import de.m_marvin.logicsim.logic.Component;
+import de.m_marvin.logicsim.logic.NetConnector;
+import de.m_marvin.logicsim.logic.nodes.Node;
+import de.m_marvin.logicsim.logic.parts.LogicGateComponent;
+import de.m_marvin.logicsim.logic.parts.NotGateComponent;
+
+/**
+ * Evaluates the components of an circuit by code generated at runtime, used by the {@link Circuit.UpdateMode#COMPILED} update mode.
+ * The logic gates with two inputs and the not gates are translated into straight-line bytecode, which reads and writes the lane states of the nets by their fixed net and lane ids.
+ * This avoids the virtual call of {@link Component#updateIO()} and the boxing of the logical function of each gate.
+ * All other components (memories, clocks, sub-circuits and their IOs, ...) are still updated by calling {@link Component#updateIO()} from the generated code, in the same order as in the circuit.
+ * The generated class is defined as hidden class, so it is unloaded again as soon as the circuit is compiled again after an modification.
+ *
+ * @author Marvin K.
+ *
+ */
+public class CompiledCircuit {
+
+	/**
+	 * Implemented by the generated classes.
+	 */
+	public static interface Evaluator {
+		public void evaluate(LaneStateMap[] valuesSec, LaneStateMap[] valuesPri, int[] gateStates, Component[] fallbackComponents, ShortCircuitType shortCircuitType);
+	}
+
+	/* The JIT does not compile methods bigger than 8000 bytes and compiles smaller methods faster, so the code is split into multiple methods */
+	public static final int MAX_METHOD_SIZE = 3000;
+
+	protected final LaneStateMap[] valuesPri;
+	protected final LaneStateMap[] valuesSec;
+	protected final LogicGateComponent[] gates;
+	protected final int[] gateStates;
+	protected final Component[] fallbackComponents;
+	protected final Evaluator evaluator;
+	protected final int compiledCount;
+
+	protected CompiledCircuit(LaneStateMap[] valuesPri, LaneStateMap[] valuesSec, LogicGateComponent[] gates, Component[] fallbackComponents, Evaluator evaluator, int compiledCount) {
+		this.valuesPri = valuesPri;
+		this.valuesSec = valuesSec;
+		this.gates = gates;
+		this.gateStates = new int[gates.length];
+		for (int i = 0; i < gates.length; i++) this.gateStates[i] = gates[i].getLastState() ? 1 : 0;
+		this.fallbackComponents = fallbackComponents;
+		this.evaluator = evaluator;
+		this.compiledCount = compiledCount;
+	}
+
+	/**
+	 * Returns the number of components translated into bytecode.
+	 */
+	public int getCompiledCount() {
+		return this.compiledCount;
+	}
+
+	/**
+	 * Returns the number of components that are still updated by calling {@link Component#updateIO()}.
+	 */
+	public int getFallbackCount() {
+		return this.fallbackComponents.length;
+	}
+
+	/**
+	 * Executes the first half of an tick, like {@link Circuit#evaluateCircuit()} in the full sweep mode.
+	 */
+	public void evaluate(ShortCircuitType shortCircuitType) {
+		LaneStateMap[] valuesPri = this.valuesPri;
+		for (int i = 0; i < valuesPri.length; i++) valuesPri[i].clear();
+		this.evaluator.evaluate(this.valuesSec, valuesPri, this.gateStates, this.fallbackComponents, shortCircuitType);
+	}
+
+	/**
+	 * Writes the states of the compiled gates back into the gate components, has to be called before the circuit is compiled again or no longer simulated compiled.
+	 */
+	public void release() {
+		for (int i = 0; i < this.gates.length; i++) this.gates[i].setLastState(this.gateStates[i] != 0);
+	}
+
+	/**
+	 * Reads the states of the compiled gates from the gate components again, after the states of the components were replaced.
+	 */
+	public void reload() {
+		for (int i = 0; i < this.gates.length; i++) this.gateStates[i] = this.gates[i].getLastState() ? 1 : 0;
+	}
+
+	/* Called by the generated code */
+
+	public static int readState(LaneStateMap[] values, int netId, int lane) {
+		int code = netId < 0 ? 0 : values[netId].getLaneCode(lane);
+		if (code == 2) return 1;
+		if (code == 1) return 0;
+		return NetState.fromLaneCode(code).getLogicState() ? 1 : 0;
+	}
+
+	public static void writeState(LaneStateMap[] values, int netId, int lane, int state, ShortCircuitType shortCircuitType) {
+		if (netId < 0) return;
+		values[netId].combineLaneCode(lane, state != 0 ? NetState.HIGH.getLaneCode() : NetState.LOW.getLaneCode(), shortCircuitType);
+	}
+
+	/**
+	 * Generates the evaluation code for the components.
+	 * If the code could not be generated or loaded, all components are updated by calling {@link Component#updateIO()}.
+	 *
+	 * @param components The components of the circuit
+	 * @param valuesPri The primary lane states of the nets, indexed by net id
+	 * @param valuesSec The secondary lane states of the nets, indexed by net id
+	 */
+	public static CompiledCircuit compile(Component[] components, LaneStateMap[] valuesPri, LaneStateMap[] valuesSec) {
+
+		List<LogicGateComponent> gates = new ArrayList<>();
+		List<Component> fallbackComponents = new ArrayList<>();
+		ClassWriter writer = new ClassWriter();
+		int compiledCount = 0;
+
+		for (Component component : components) {
+			if (component instanceof NetConnector) continue;
+			if (component instanceof LogicGateComponent gate && gate.getInputs().size() == 2) {
+				writer.writeGate(gates.size(), getNet(gate.getInputs().get(0), valuesPri.length), gate.getInputs().get(0).getLaneId(), getNet(gate.getInputs().get(1), valuesPri.length), gate.getInputs().get(1).getLaneId(), getNet(gate.getOutputs().get(0), valuesPri.length), gate.getOutputs().get(0).getLaneId(), gate.getTruthTable());
+				gates.add(gate);
+				compiledCount++;
+			} else if (component instanceof NotGateComponent) {
+				writer.writeNot(getNet(component.getInputs().get(0), valuesPri.length), component.getInputs().get(0).getLaneId(), getNet(component.getOutputs().get(0), valuesPri.length), component.getOutputs().get(0).getLaneId());
+				compiledCount++;
+			} else {
+				writer.writeFallback(fallbackComponents.size());
+				fallbackComponents.add(component);
+			}
+		}
+
+		try {
+			byte[] classData = writer.toByteArray();
+			MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classData, true);
+			Evaluator evaluator = (Evaluator) lookup.findConstructor(lookup.lookupClass(), java.lang.invoke.MethodType.methodType(void.class)).invoke();
+			return new CompiledCircuit(valuesPri, valuesSec, gates.toArray(new LogicGateComponent[gates.size()]), fallbackComponents.toArray(new Component[fallbackComponents.size()]), evaluator, compiledCount);
+		} catch (Throwable e) {
+			System.err.println("Failed to generate evaluation code, fall back to updating all components!");
+			e.printStackTrace();
+			List<Component> allComponents = new ArrayList<>();
+			for (Component component : components) if (!(component instanceof NetConnector)) allComponents.add(component);
+			Evaluator evaluator = (valuesSec2, valuesPri2, gateStates, fallback, shortCircuitType) -> {
+				for (Component component : fallback) component.updateIO();
+			};
+			return new CompiledCircuit(valuesPri, valuesSec, new LogicGateComponent[0], allComponents.toArray(new Component[allComponents.size()]), evaluator, 0);
+		}
+
+	}
+
+	protected static int getNet(Node node, int netCount) {
+		int netId = node.getNetId();
+		return netId < 0 || netId >= netCount ? -1 : netId;
+	}
+
+	/**
+	 * Writes the class file of the evaluator, without any branches in the code, so no stack map frames are required.
+	 * The code of the components is split into static methods of at most {@link #MAX_METHOD_SIZE} bytes, which are called one after another by the evaluate method.
+	 * The local variables of these methods are the arguments of the evaluate method, followed by one temporary int.
+	 */
+	protected static class ClassWriter {
+
+		protected static final String PACKAGE = "de/m_marvin/logicsim/logic/simulator/";
+		protected static final String CLASS_NAME = PACKAGE + "GeneratedEvaluator";
+		protected static final String LANE_MAP = "L" + PACKAGE + "LaneStateMap;";
+		protected static final String SHORT_CIRCUIT_TYPE = "Lde/m_marvin/logicsim/logic/Circuit$ShortCircuitType;";
+		protected static final String EVALUATE_DESCRIPTOR = "([" + LANE_MAP + "[" + LANE_MAP + "[I[Lde/m_marvin/logicsim/logic/Component;" + SHORT_CIRCUIT_TYPE + ")V";
+		protected static final String READ_DESCRIPTOR = "([" + LANE_MAP + "II)I";
+		protected static final String WRITE_DESCRIPTOR = "([" + LANE_MAP + "III" + SHORT_CIRCUIT_TYPE + ")V";
+
+		protected static final int ALOAD_0 = 0x2a, ALOAD_1 = 0x2b, ALOAD_2 = 0x2c, ALOAD_3 = 0x2d, ALOAD = 0x19;
+		protected static final int ICONST_0 = 0x03, ICONST_1 = 0x04, BIPUSH = 0x10, SIPUSH = 0x11, LDC_W = 0x13;
+		protected static final int ILOAD = 0x15, ISTORE = 0x36, IALOAD = 0x2e, IASTORE = 0x4f, AALOAD = 0x32;
+		protected static final int SWAP = 0x5f, ISHL = 0x78, IUSHR = 0x7c, IAND = 0x7e, IOR = 0x80, IXOR = 0x82;
+		protected static final int INVOKEVIRTUAL = 0xb6, INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8, RETURN = 0xb1;
+
+		protected final ByteArrayOutputStream constantPool = new ByteArrayOutputStream();
+		protected final Map<String, Integer> constants = new HashMap<>();
+		protected int constantCount = 1;
+		protected final List<byte[]> methods = new ArrayList<>();
+		protected ByteArrayOutputStream code = new ByteArrayOutputStream();
+
+		protected int constant(String key, int tag, int... content) {
+			Integer index = this.constants.get(key);
+			if (index != null) return index;
+			this.constantPool.write(tag);
+			for (int value : content) writeU2(this.constantPool, value);
+			this.constants.put(key, this.constantCount);
+			return this.constantCount++;
+		}
+
+		protected int utf8(String value) {
+			Integer index = this.constants.get("utf8:" + value);
+			if (index != null) return index;
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			try {
+				new DataOutputStream(buffer).writeUTF(value);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+			this.constantPool.write(1);
+			this.constantPool.writeBytes(buffer.toByteArray());
+			this.constants.put("utf8:" + value, this.constantCount);
+			return this.constantCount++;
+		}
+
+		protected int classRef(String name) {
+			return constant("class:" + name, 7, utf8(name));
+		}
+
+		protected int methodRef(String owner, String name, String descriptor) {
+			int nameAndType = constant("nat:" + name + descriptor, 12, utf8(name), utf8(descriptor));
+			return constant("method:" + owner + "." + name + descriptor, 10, classRef(owner), nameAndType);
+		}
+
+		protected int integer(int value) {
+			Integer index = this.constants.get("int:" + value);
+			if (index != null) return index;
+			this.constantPool.write(3);
+			this.constantPool.write(value >>> 24);
+			this.constantPool.write(value >>> 16);
+			this.constantPool.write(value >>> 8);
+			this.constantPool.write(value);
+			this.constants.put("int:" + value, this.constantCount);
+			return this.constantCount++;
+		}
+
+		protected static void writeU2(ByteArrayOutputStream stream, int value) {
+			stream.write(value >>> 8);
+			stream.write(value);
+		}
+
+		protected static void writeU4(ByteArrayOutputStream stream, int value) {
+			writeU2(stream, value >>> 16);
+			writeU2(stream, value);
+		}
+
+		protected void op(int opcode) {
+			this.code.write(opcode);
+		}
+
+		protected void op(int opcode, int index) {
+			this.code.write(opcode);
+			this.code.write(index);
+		}
+
+		protected void invoke(int opcode, int methodRef) {
+			this.code.write(opcode);
+			writeU2(this.code, methodRef);
+		}
+
+		protected void push(int value) {
+			if (value >= -1 && value <= 5) {
+				op(ICONST_0 + value);
+			} else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+				op(BIPUSH, value & 0xFF);
+			} else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+				op(SIPUSH);
+				writeU2(this.code, value);
+			} else {
+				invoke(LDC_W, integer(value));
+			}
+		}
+
+		protected void readState(int netId, int lane) {
+			op(ALOAD_0);
+			push(netId);
+			push(lane);
+			invoke(INVOKESTATIC, methodRef(PACKAGE + "CompiledCircuit", "readState", READ_DESCRIPTOR));
+		}
+
+		/**
+		 * Expects the state on the stack.
+		 */
+		protected void writeState() {
+			op(ALOAD, 4);
+			invoke(INVOKESTATIC, methodRef(PACKAGE + "CompiledCircuit", "writeState", WRITE_DESCRIPTOR));
+		}
+
+		protected void checkMethodSize() {
+			if (this.code.size() > MAX_METHOD_SIZE) finishMethod();
+		}
+
+		/**
+		 * Same as {@link LogicGateComponent#updateIO()}: result = table bit (a * 2 + b), the output is the result or the result of the last tick, which holds an falling output HIGH for one tick.
+		 */
+		public void writeGate(int gateIndex, int netA, int laneA, int netB, int laneB, int netOut, int laneOut, int truthTable) {
+			readState(netA, laneA);
+			op(ICONST_1);
+			op(ISHL);
+			readState(netB, laneB);
+			op(IOR);
+			push(truthTable);
+			op(SWAP);
+			op(IUSHR);
+			op(ICONST_1);
+			op(IAND);
+			op(ISTORE, 5);
+			op(ALOAD_1);
+			push(netOut);
+			push(laneOut);
+			op(ILOAD, 5);
+			op(ALOAD_2);
+			push(gateIndex);
+			op(IALOAD);
+			op(IOR);
+			writeState();
+			op(ALOAD_2);
+			push(gateIndex);
+			op(ILOAD, 5);
+			op(IASTORE);
+			checkMethodSize();
+		}
+
+		public void writeNot(int netIn, int laneIn, int netOut, int laneOut) {
+			op(ALOAD_1);
+			push(netOut);
+			push(laneOut);
+			readState(netIn, laneIn);
+			op(ICONST_1);
+			op(IXOR);
+			writeState();
+			checkMethodSize();
+		}
+
+		public void writeFallback(int componentIndex) {
+			op(ALOAD_3);
+			push(componentIndex);
+			op(AALOAD);
+			invoke(INVOKEVIRTUAL, methodRef("de/m_marvin/logicsim/logic/Component", "updateIO", "()V"));
+			checkMethodSize();
+		}
+
+		protected void finishMethod() {
+			if (this.code.size() == 0) return;
+			op(RETURN);
+			this.methods.add(method(0x000A, "evaluate" + this.methods.size(), EVALUATE_DESCRIPTOR, 8, 6, this.code.toByteArray()));
+			this.code = new ByteArrayOutputStream();
+		}
+
+		protected byte[] method(int access, String name, String descriptor, int maxStack, int maxLocals, byte[] code) {
+			ByteArrayOutputStream method = new ByteArrayOutputStream();
+			writeU2(method, access);
+			writeU2(method, utf8(name));
+			writeU2(method, utf8(descriptor));
+			writeU2(method, 1);
+			writeU2(method, utf8("Code"));
+			writeU4(method, 12 + code.length);
+			writeU2(method, maxStack);
+			writeU2(method, maxLocals);
+			writeU4(method, code.length);
+			method.writeBytes(code);
+			writeU2(method, 0);
+			writeU2(method, 0);
+			return method.toByteArray();
+		}
+
+		public byte[] toByteArray() {
+			finishMethod();
+
+			// The evaluate method calls all generated methods one after another
+			int partCount = this.methods.size();
+			for (int i = 0; i < partCount; i++) {
+				op(ALOAD_1);
+				op(ALOAD_2);
+				op(ALOAD_3);
+				op(ALOAD, 4);
+				op(ALOAD, 5);
+				invoke(INVOKESTATIC, methodRef(CLASS_NAME, "evaluate" + i, EVALUATE_DESCRIPTOR));
+			}
+			op(RETURN);
+			this.methods.add(method(0x0001, "evaluate", EVALUATE_DESCRIPTOR, 5, 6, this.code.toByteArray()));
+
+			this.code = new ByteArrayOutputStream();
+			op(ALOAD_0);
+			invoke(INVOKESPECIAL, methodRef("java/lang/Object", "<init>", "()V"));
+			op(RETURN);
+			this.methods.add(method(0x0001, "<init>", "()V", 1, 1, this.code.toByteArray()));
+
+			int thisClass = classRef(CLASS_NAME);
+			int superClass = classRef("java/lang/Object");
+			int evaluatorInterface = classRef(PACKAGE + "CompiledCircuit$Evaluator");
+
+			ByteArrayOutputStream classFile = new ByteArrayOutputStream();
+			writeU4(classFile, 0xCAFEBABE);
+			writeU2(classFile, 0);
+			writeU2(classFile, 61);
+			writeU2(classFile, this.constantCount);
+			classFile.writeBytes(this.constantPool.toByteArray());
+			writeU2(classFile, 0x0031);
+			writeU2(classFile, thisClass);
+			writeU2(classFile, superClass);
+			writeU2(classFile, 1);
+			writeU2(classFile, evaluatorInterface);
+			writeU2(classFile, 0);
+			writeU2(classFile, this.methods.size());
+			for (byte[] method : this.methods) classFile.writeBytes(method);
+			writeU2(classFile, 0);
+			return classFile.toByteArray();
+		}
+
+	}
+
+}
@@ -0,0 +1,332 @@
+package de.m_marvin.logicsim.logic.simulator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.m_marvin.logicsim.logic.Circuit;
+import de.m_marvin.logicsim.logic.Component;
+import de.m_marvin.logicsim.logic.nodes.InputNode;
+import de.m_marvin.logicsim.logic.nodes.Node;
+import de.m_marvin.logicsim.logic.nodes.OutputNode;
+import de.m_marvin.logicsim.logic.parts.SubCircuitComponent;
+import de.m_marvin.logicsim.logic.parts.SubCircuitComponent.ISubCircuitIO;
+
+/**
+ * Simulates an circuit and all its sub-circuits as one flat circuit in a single process.
+ * Normally every sub-circuit runs in its own process and the signals are passed over the sub-circuit IO components, which delays them by one tick per level.
+ * The flattened circuit instead updates the components of all circuits in one sweep.
+ * The nets on both sides of an IO component that only passes its signal through are merged, they share the same lane states in both circuits and the IO component is skipped.
+ * All other IO components are queried every tick, like they would be by their sub-circuit component.
+ * The structure is compiled again in the next tick after one of the circuits was modified, always by the thread executing the tick, so an running tick never sees an half compiled structure.
+ *
+ * @author Marvin K.
+ *
+ */
+public class FlattenedCircuit {
+
+	protected final Circuit circuit;
+	protected volatile Map<Circuit, Circuit> parentCircuits = Collections.emptyMap();
+	/* Counts the requests to compile the structure again, the structure is valid if it was compiled after the last request */
+	protected final AtomicInteger invalidations = new AtomicInteger();
+	protected volatile int compiledInvalidations = -1;
+	/* Sub-circuits added to the hierarchy, which are reset after the next compilation included them */
+	protected final List<Circuit> pendingResets = new ArrayList<>();
+	protected volatile Thread executingThread;
+	protected volatile boolean released = false;
+	protected boolean releaseDone = false;
+	protected Circuit[] circuits = new Circuit[0];
+	protected int[] modificationCounts = new int[0];
+	protected Component[] components = new Component[0];
+	protected ISubCircuitIO[] queriedIOs = new ISubCircuitIO[0];
+	protected LaneStateMap[] valuesPri = new LaneStateMap[0];
+	protected LaneStateMap[] valuesSec = new LaneStateMap[0];
+	protected int mergedNetCount;
+
+	public FlattenedCircuit(Circuit circuit) {
+		this.circuit = circuit;
+	}
+
+	public Circuit getCircuit() {
+		return this.circuit;
+	}
+
+	/**
+	 * Returns true if the circuit is the main circuit or one of the sub-circuits flattened into it.
+	 */
+	public boolean contains(Circuit circuit) {
+		return circuit == this.circuit || this.parentCircuits.containsKey(circuit);
+	}
+
+	/**
+	 * Returns all sub-circuits flattened into the main circuit, mapped to their parent circuit.
+	 */
+	public Map<Circuit, Circuit> getSubCircuits() {
+		return this.parentCircuits;
+	}
+
+	public int getComponentCount() {
+		return this.components.length;
+	}
+
+	public int getNetCount() {
+		return this.valuesPri.length;
+	}
+
+	/**
+	 * Returns the number of nets of sub-circuits that were merged with an net of the parent circuit.
+	 */
+	public int getMergedNetCount() {
+		return this.mergedNetCount;
+	}
+
+	/**
+	 * Forces the structure to be compiled again in the next tick.
+	 */
+	public void invalidate() {
+		this.invalidations.incrementAndGet();
+	}
+
+	/**
+	 * Called if an sub-circuit was added to the hierarchy, the circuit is included by the next compilation and reset after that.
+	 */
+	public void include(Circuit circuit) {
+		synchronized (this.pendingResets) {
+			this.pendingResets.add(circuit);
+		}
+		invalidate();
+	}
+
+	protected boolean isValid() {
+		if (this.compiledInvalidations != this.invalidations.get()) return false;
+		Circuit[] circuits = this.circuits;
+		int[] modificationCounts = this.modificationCounts;
+		for (int i = 0; i < circuits.length; i++) {
+			if (circuits[i].getModificationCount() != modificationCounts[i]) return false;
+		}
+		return true;
+	}
+
+	public void update() {
+		evaluate();
+		commit();
+	}
+
+	/**
+	 * Executes the first half of an tick, like {@link Circuit#evaluateCircuit()} for all circuits of the hierarchy.
+	 */
+	public void evaluate() {
+		this.executingThread = Thread.currentThread();
+		try {
+			if (this.released) return;
+			if (!isValid()) compile();
+			LaneStateMap[] valuesPri = this.valuesPri;
+			for (int i = 0; i < valuesPri.length; i++) valuesPri[i].clear();
+			for (Circuit circuit : this.circuits) circuit.advanceSimulationTick();
+			for (ISubCircuitIO subCircuitIO : this.queriedIOs) subCircuitIO.queryIO();
+			for (Component component : this.components) component.updateIO();
+		} finally {
+			finishExecution();
+		}
+	}
+
+	/**
+	 * Executes the second half of an tick, like {@link Circuit#commitCircuit()} for all circuits of the hierarchy.
+	 */
+	public void commit() {
+		this.executingThread = Thread.currentThread();
+		try {
+			if (this.released) return;
+			LaneStateMap[] valuesPri = this.valuesPri;
+			LaneStateMap[] valuesSec = this.valuesSec;
+			if (valuesPri.length != valuesSec.length) return;
+			for (Circuit circuit : this.circuits) {
+				circuit.recordWaveform();
+				circuit.recordHistory(null);
+			}
+			for (int i = 0; i < valuesPri.length; i++) valuesSec[i].copyFrom(valuesPri[i]);
+		} finally {
+			finishExecution();
+		}
+	}
+
+	/**
+	 * Ends the execution of an part of an tick, if the flattened circuit was released while the tick was running, the release is completed by this thread.
+	 */
+	protected void finishExecution() {
+		this.executingThread = null;
+		if (this.released) releaseStates();
+	}
+
+	public void resetNetworks() {
+		if (!isValid()) compile();
+		for (Circuit circuit : this.circuits) circuit.resetNetworks();
+	}
+
+	/**
+	 * Collects the circuits of the hierarchy, merges the nets connected by pass-through IO components and builds the list of components to update.
+	 */
+	protected synchronized void compile() {
+		int invalidations = this.invalidations.get();
+
+		// Collect all circuits, parents before their sub-circuits
+
+		Map<Circuit, SubCircuitComponent> owners = SubCircuitComponent.collectSubCircuits(this.circuit);
+		Map<Circuit, Circuit> parentCircuits = new LinkedHashMap<>();
+		List<Circuit> circuits = new ArrayList<>();
+		circuits.add(this.circuit);
+		for (Map.Entry<Circuit, SubCircuitComponent> owner : owners.entrySet()) {
+			parentCircuits.put(owner.getKey(), owner.getValue().getCircuit());
+			circuits.add(owner.getKey());
+			// The sub-circuits are simulated by the processor of the main circuit without an process of their own
+			owner.getKey().setProcessor(this.circuit.getProcessor());
+		}
+
+		int[] modificationCounts = new int[circuits.size()];
+		int[] netOffsets = new int[circuits.size()];
+		Map<Circuit, Integer> circuitIndex = new IdentityHashMap<>();
+		int netCount = 0;
+		for (int i = 0; i < circuits.size(); i++) {
+			modificationCounts[i] = circuits.get(i).getModificationCount();
+			netOffsets[i] = netCount;
+			netCount += circuits.get(i).getNetCount();
+			circuitIndex.put(circuits.get(i), i);
+		}
+
+		// Merge the nets on both sides of the pass-through IOs
+
+		UnionFind groups = new UnionFind(netCount);
+		Set<Component> skippedComponents = Collections.newSetFromMap(new IdentityHashMap<>());
+		List<ISubCircuitIO> queriedIOs = new ArrayList<>();
+		int mergedNetCount = 0;
+		for (Map.Entry<Circuit, SubCircuitComponent> owner : owners.entrySet()) {
+			SubCircuitComponent subCircuitComponent = owner.getValue();
+			int parentIndex = circuitIndex.get(subCircuitComponent.getCircuit());
+			int subIndex = circuitIndex.get(owner.getKey());
+			List<Node> outerNodes = subCircuitComponent.getAllNodes();
+			for (Map.Entry<Integer, ISubCircuitIO> io : subCircuitComponent.getSubCircuitIOs().entrySet()) {
+				Node outerNode = null;
+				for (Node node : outerNodes) if (node.getNodeNr() == io.getKey()) outerNode = node;
+				Node innerNode = null;
+				if (io.getValue().isPassThrough() && io.getValue() instanceof Component ioComponent) {
+					if (outerNode instanceof InputNode && !ioComponent.getOutputs().isEmpty()) innerNode = ioComponent.getOutputs().get(0);
+					if (outerNode instanceof OutputNode && !ioComponent.getInputs().isEmpty()) innerNode = ioComponent.getInputs().get(0);
+				}
+				// Only nets using the same lane ids can share their lane states
+				boolean sameLanes = circuits.get(parentIndex).getLaneTable() == circuits.get(subIndex).getLaneTable();
+				if (innerNode != null && sameLanes && isMergeable(outerNode, circuits.get(parentIndex)) && isMergeable(innerNode, circuits.get(subIndex))) {
+					// The group is always represented by the net nearest to the main circuit, which has the smallest index
+					if (groups.union(netOffsets[parentIndex] + outerNode.getNetId(), netOffsets[subIndex] + innerNode.getNetId())) mergedNetCount++;
+					// Input IOs only copy the signal from the parent net, output IOs are kept since they also update their displayed state
+					if (outerNode instanceof InputNode) skippedComponents.add(innerNode.getComponent());
+				} else {
+					queriedIOs.add(io.getValue());
+				}
+			}
+		}
+
+		// Collect the components, the sub-circuit components are replaced by the IOs that have to be queried
+
+		List<Component> components = new ArrayList<>();
+		for (Circuit circuit : circuits) {
+			for (Component component : circuit.getComponents()) {
+				if (skippedComponents.contains(component)) continue;
+				if (component instanceof SubCircuitComponent subCircuitComponent && owners.get(subCircuitComponent.getSubCircuit()) == subCircuitComponent) continue;
+				components.add(component);
+			}
+		}
+
+		// Share the lane states of the merged nets, the maps of the net nearest to the main circuit are kept
+
+		Set<LaneStateMap> usedMaps = Collections.newSetFromMap(new IdentityHashMap<>());
+		LaneStateMap[] groupPri = new LaneStateMap[netCount];
+		LaneStateMap[] groupSec = new LaneStateMap[netCount];
+		List<LaneStateMap> valuesPri = new ArrayList<>();
+		List<LaneStateMap> valuesSec = new ArrayList<>();
+		for (int i = 0; i < circuits.size(); i++) {
+			Circuit circuit = circuits.get(i);
+			int nets = (i + 1 < circuits.size() ? netOffsets[i + 1] : netCount) - netOffsets[i];
+			for (int net = 0; net < nets; net++) {
+				int group = groups.find(netOffsets[i] + net);
+				LaneStateMap pri = circuit.getNetValuesPri(net);
+				LaneStateMap sec = circuit.getNetValuesSec(net);
+				if (pri == null || sec == null) continue;
+				if (groupPri[group] == null) {
+					if (!usedMaps.add(pri) | !usedMaps.add(sec)) {
+						// The maps are still shared from an earlier compilation, separate them again
+						LaneStateMap previousSec = sec;
+						pri = new LaneStateMap(circuit.getLaneTable());
+						sec = new LaneStateMap(circuit.getLaneTable());
+						sec.copyFrom(previousSec);
+						usedMaps.add(pri);
+						usedMaps.add(sec);
+					}
+					groupPri[group] = pri;
+					groupSec[group] = sec;
+					valuesPri.add(pri);
+					valuesSec.add(sec);
+				}
+				if (groupPri[group] != pri || groupSec[group] != sec) circuit.setNetValues(net, groupPri[group], groupSec[group]);
+			}
+		}
+
+		this.parentCircuits = Collections.unmodifiableMap(parentCircuits);
+		this.circuits = circuits.toArray(new Circuit[circuits.size()]);
+		this.modificationCounts = modificationCounts;
+		this.components = components.toArray(new Component[components.size()]);
+		this.queriedIOs = queriedIOs.toArray(new ISubCircuitIO[queriedIOs.size()]);
+		this.valuesPri = valuesPri.toArray(new LaneStateMap[valuesPri.size()]);
+		this.valuesSec = valuesSec.toArray(new LaneStateMap[valuesSec.size()]);
+		this.mergedNetCount = mergedNetCount;
+		this.compiledInvalidations = invalidations;
+
+		// Reset the added sub-circuits, their sub-circuit components find their own sub-circuits already included in the hierarchy
+		
+		List<Circuit> resets = new ArrayList<>();
+		synchronized (this.pendingResets) {
+			this.pendingResets.removeIf(circuit -> parentCircuits.containsKey(circuit) && resets.add(circuit));
+		}
+		resets.forEach(Circuit::resetNetworks);
+	}
+
+	protected static boolean isMergeable(Node node, Circuit circuit) {
+		return node != null && node.getCircuit() == circuit && node.getNetId() >= 0 && node.getNetId() < circuit.getNetCount() && node.getLaneTag().equals(Circuit.DEFAULT_BUS_LANE);
+	}
+
+	/**
+	 * Gives every net of the hierarchy its own lane states again, has to be called when the circuit is no longer simulated flattened.
+	 * No further ticks are executed after this, if an tick is running on another thread, the lane states are separated by that thread when the tick ends.
+	 */
+	public void release() {
+		this.released = true;
+		if (this.executingThread == null) releaseStates();
+	}
+
+	protected synchronized void releaseStates() {
+		if (this.releaseDone) return;
+		this.releaseDone = true;
+		Set<LaneStateMap> usedMaps = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (Circuit circuit : this.circuits) {
+			for (int net = 0; net < circuit.getNetCount(); net++) {
+				LaneStateMap pri = circuit.getNetValuesPri(net);
+				LaneStateMap sec = circuit.getNetValuesSec(net);
+				if (pri == null || sec == null) continue;
+				if (!usedMaps.add(pri) | !usedMaps.add(sec)) {
+					LaneStateMap previousSec = sec;
+					pri = new LaneStateMap(circuit.getLaneTable());
+					sec = new LaneStateMap(circuit.getLaneTable());
+					sec.copyFrom(previousSec);
+					circuit.setNetValues(net, pri, sec);
+				}
+			}
+		}
+		this.parentCircuits = Collections.emptyMap();
+		invalidate();
+	}
+
+}
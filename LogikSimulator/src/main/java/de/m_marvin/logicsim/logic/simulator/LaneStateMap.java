@@ -0,0 +1,266 @@
+package de.m_marvin.logicsim.logic.simulator;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import de.m_marvin.logicsim.logic.Circuit;
+import de.m_marvin.logicsim.logic.Circuit.NetState;
+import de.m_marvin.logicsim.logic.Circuit.ShortCircuitType;
+
+/**
+ * Holds the states of all lanes of one net packed into an long array, two bits per lane.
+ * The lanes are identified by their id in the {@link LaneTable} of the circuit.
+ * The simulation uses the primitive methods working with the lane ids and lane codes (see {@link NetState#getLaneCode()}), which do not allocate any objects.
+ * For the UI and other code working with lane names, this class also implements the {@link java.util.Map} interface with the lane names as keys.
+ * A lane in the {@link NetState#FLOATING} state counts as not contained in the map.
+ *
+ * @author Marvin K.
+ *
+ */
+public class LaneStateMap extends AbstractMap<String, NetState> {
+
+	public static final int LANES_PER_WORD = 32;
+	protected static final long LOW_BITS = 0x5555555555555555L;
+
+	protected final LaneTable lanes;
+	protected long[] states;
+
+	public LaneStateMap(LaneTable lanes) {
+		this.lanes = lanes;
+		this.states = new long[Math.max(1, (lanes.getLaneCount() + LANES_PER_WORD - 1) / LANES_PER_WORD)];
+	}
+
+	public LaneTable getLaneTable() {
+		return lanes;
+	}
+
+	protected long[] ensureCapacity(int word) {
+		long[] states = this.states;
+		if (word >= states.length) {
+			states = Arrays.copyOf(states, Math.max(word + 1, states.length * 2));
+			this.states = states;
+		}
+		return states;
+	}
+
+	public int getLaneCode(int lane) {
+		long[] states = this.states;
+		int word = lane >>> 5;
+		if (lane < 0 || word >= states.length) return 0;
+		return (int) (states[word] >>> ((lane & 31) << 1)) & 3;
+	}
+
+	public NetState getState(int lane) {
+		return NetState.fromLaneCode(getLaneCode(lane));
+	}
+
+	public void setLaneCode(int lane, int code) {
+		int word = lane >>> 5;
+		int shift = (lane & 31) << 1;
+		long[] states = ensureCapacity(word);
+		states[word] = (states[word] & ~(3L << shift)) | ((long) code << shift);
+	}
+
+	/**
+	 * Combines the current state of the lane with the given one, according to the rules of the short circuit type.
+	 */
+	public void combineLaneCode(int lane, int code, ShortCircuitType type) {
+		if (code == 0) return;
+		setLaneCode(lane, Circuit.combineLaneCodes(getLaneCode(lane), code, type));
+	}
+
+	/**
+	 * Returns the first lane id equal or greater than the given one which is not floating.
+	 *
+	 * @return The id of the next lane or -1 if there are no more lanes with an state
+	 */
+	public int nextLane(int fromLane) {
+		long[] states = this.states;
+		int word = fromLane >>> 5;
+		if (word >= states.length) return -1;
+		long present = (states[word] | (states[word] >>> 1)) & LOW_BITS & (-1L << ((fromLane & 31) << 1));
+		while (present == 0) {
+			if (++word >= states.length) return -1;
+			present = (states[word] | (states[word] >>> 1)) & LOW_BITS;
+		}
+		return (word << 5) + (Long.numberOfTrailingZeros(present) >>> 1);
+	}
+
+	/**
+	 * Copies all lane states of the other map into this one, the other map has to use the same lane table.
+	 * 
+	 * @return true if any of the lane states changed
+	 */
+	public boolean copyFrom(LaneStateMap other) {
+		long[] source = other.states;
+		long[] states = this.states;
+		if (states.length < source.length) {
+			states = Arrays.copyOf(states, source.length);
+			this.states = states;
+		}
+		long changed = 0;
+		for (int i = 0; i < source.length; i++) {
+			changed |= states[i] ^ source[i];
+			states[i] = source[i];
+		}
+		for (int i = source.length; i < states.length; i++) {
+			changed |= states[i];
+			states[i] = 0;
+		}
+		return changed != 0;
+	}
+	
+	/**
+	 * Returns an hash of the lane states, which does not depend on the number of allocated words.
+	 */
+	public long stateHash() {
+		long[] states = this.states;
+		long hash = 0;
+		for (int i = 0; i < states.length; i++) {
+			if (states[i] != 0) hash = (hash ^ (states[i] + i)) * 0x9E3779B97F4A7C15L;
+		}
+		return hash;
+	}
+
+	/**
+	 * Writes the packed lane states, the words after the last lane with an state are not written.
+	 */
+	public void writeStates(DataOutputStream output) throws IOException {
+		long[] states = this.states;
+		int length = states.length;
+		while (length > 0 && states[length - 1] == 0) length--;
+		output.writeShort(length);
+		for (int i = 0; i < length; i++) output.writeLong(states[i]);
+	}
+
+	/**
+	 * Replaces all lane states with the ones read from the buffer, written by {@link #writeStates(DataOutputStream)}.
+	 *
+	 * @param laneMapping The ids of the lanes in the lane table of this map, indexed by the lane ids the states were written with, or null if they are the same
+	 */
+	public void readStates(ByteBuffer input, int[] laneMapping) {
+		int length = input.getShort() & 0xFFFF;
+		if (laneMapping == null) {
+			long[] states = ensureCapacity(length - 1);
+			for (int i = 0; i < length; i++) states[i] = input.getLong();
+			for (int i = length; i < states.length; i++) states[i] = 0;
+			return;
+		}
+		clear();
+		for (int i = 0; i < length; i++) {
+			long word = input.getLong();
+			for (int lane = i * LANES_PER_WORD; word != 0; lane++, word >>>= 2) {
+				int code = (int) word & 3;
+				if (code != 0) setLaneCode(laneMapping[lane], code);
+			}
+		}
+	}
+
+	/**
+	 * Returns true if any of the lanes is in the {@link NetState#SHORT_CIRCUIT} state.
+	 */
+	public boolean hasShortCircuit() {
+		long[] states = this.states;
+		for (int i = 0; i < states.length; i++) {
+			if ((states[i] & (states[i] >>> 1) & LOW_BITS) != 0) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Sets all lanes that are currently not floating to the given state.
+	 */
+	public void setPresentLanes(NetState state) {
+		long[] states = this.states;
+		for (int i = 0; i < states.length; i++) {
+			states[i] = ((states[i] | (states[i] >>> 1)) & LOW_BITS) * state.getLaneCode();
+		}
+	}
+
+	@Override
+	public int size() {
+		long[] states = this.states;
+		int size = 0;
+		for (int i = 0; i < states.length; i++) size += Long.bitCount((states[i] | (states[i] >>> 1)) & LOW_BITS);
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		long[] states = this.states;
+		for (int i = 0; i < states.length; i++) if (states[i] != 0) return false;
+		return true;
+	}
+
+	@Override
+	public NetState get(Object key) {
+		if (!(key instanceof String lane)) return null;
+		int code = getLaneCode(this.lanes.lookup(lane));
+		return code == 0 ? null : NetState.fromLaneCode(code);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return get(key) != null;
+	}
+
+	@Override
+	public NetState put(String key, NetState value) {
+		int lane = this.lanes.intern(key);
+		NetState old = get(key);
+		setLaneCode(lane, value == null ? 0 : value.getLaneCode());
+		return old;
+	}
+
+	@Override
+	public NetState remove(Object key) {
+		NetState old = get(key);
+		if (old != null) setLaneCode(this.lanes.lookup((String) key), 0);
+		return old;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(this.states, 0);
+	}
+
+	@Override
+	public Set<Entry<String, NetState>> entrySet() {
+		return new AbstractSet<Entry<String,NetState>>() {
+
+			@Override
+			public Iterator<Entry<String, NetState>> iterator() {
+				return new Iterator<Entry<String,NetState>>() {
+					int lane = nextLane(0);
+
+					@Override
+					public boolean hasNext() {
+						return lane >= 0;
+					}
+
+					@Override
+					public Entry<String, NetState> next() {
+						if (lane < 0) throw new NoSuchElementException();
+						Entry<String, NetState> entry = new SimpleImmutableEntry<>(lanes.getLaneName(lane), getState(lane));
+						lane = nextLane(lane + 1);
+						return entry;
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return LaneStateMap.this.size();
+			}
+
+		};
+	}
+
+}
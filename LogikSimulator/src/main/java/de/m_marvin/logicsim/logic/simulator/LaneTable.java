@@ -0,0 +1,104 @@
+package de.m_marvin.logicsim.logic.simulator;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps the lane tags used in an circuit (like "bus0", "bus12" or "data") to small integer ids.
+ * The ids are assigned once when a lane is used the first time and never change afterwards, so they can be used as index into the packed lane arrays of the nets.
+ * Lanes consisting of a bus name and a bit index are additionally indexed by name and bit, so bus values can be read and written without building lane strings.
+ * Sub-circuits use the table of the circuit they are placed in, so an lane has the same id in all circuits of an hierarchy and the nets of sub-circuits can share their lane states with the nets of the parent circuit.
+ *
+ * @author Marvin K.
+ *
+ */
+public class LaneTable {
+
+	protected final Map<String, Integer> laneIds = new ConcurrentHashMap<>();
+	protected final Map<String, int[]> busLanes = new ConcurrentHashMap<>();
+	protected volatile String[] laneNames = new String[32];
+	protected volatile int laneCount;
+
+	/**
+	 * Splits an lane tag in its bus name and bit index, "bus12" results in ["bus", "12"].
+	 */
+	public static String[] splitLane(String lane) {
+		return lane.split("(?<=\\D)(?=\\d)");
+	}
+
+	/**
+	 * Returns the id of the lane or -1 if this lane was never used in this table.
+	 */
+	public int lookup(String lane) {
+		Integer id = this.laneIds.get(lane);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Returns the id of the lane with the given bus name and bit index or -1 if this lane was never used in this table.
+	 */
+	public int lookup(String bus, int bit) {
+		int[] ids = this.busLanes.get(bus);
+		if (ids == null || bit < 0 || bit >= ids.length) return -1;
+		return ids[bit];
+	}
+
+	/**
+	 * Returns the id of the lane, assigns an new id if this lane was never used before.
+	 */
+	public int intern(String lane) {
+		Integer id = this.laneIds.get(lane);
+		if (id != null) return id;
+		return register(lane);
+	}
+
+	/**
+	 * Returns the id of the lane with the given bus name and bit index, assigns an new id if this lane was never used before.
+	 */
+	public int intern(String bus, int bit) {
+		int id = lookup(bus, bit);
+		if (id >= 0) return id;
+		return register(bus + bit);
+	}
+
+	protected synchronized int register(String lane) {
+		Integer existingId = this.laneIds.get(lane);
+		if (existingId != null) return existingId;
+
+		int id = this.laneCount;
+		if (id == this.laneNames.length) this.laneNames = Arrays.copyOf(this.laneNames, id * 2);
+		this.laneNames[id] = lane;
+
+		String[] laneParts = splitLane(lane);
+		if (laneParts.length == 2) {
+			try {
+				int bit = Integer.parseInt(laneParts[1]);
+				int[] ids = this.busLanes.get(laneParts[0]);
+				if (ids == null || ids.length <= bit) {
+					int[] newIds = new int[Math.max(bit + 1, ids == null ? 8 : ids.length * 2)];
+					Arrays.fill(newIds, -1);
+					if (ids != null) System.arraycopy(ids, 0, newIds, 0, ids.length);
+					ids = newIds;
+				} else {
+					ids = ids.clone();
+				}
+				if (ids[bit] == -1) ids[bit] = id;
+				this.busLanes.put(laneParts[0], ids);
+			} catch (NumberFormatException e) {}
+		}
+
+		this.laneIds.put(lane, id);
+		this.laneCount = id + 1;
+		return id;
+	}
+
+	public String getLaneName(int id) {
+		return this.laneNames[id];
+	}
+
+	public int getLaneCount() {
+		return this.laneCount;
+	}
+
+}
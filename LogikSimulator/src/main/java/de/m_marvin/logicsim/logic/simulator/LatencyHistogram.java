@@ -0,0 +1,102 @@
+package de.m_marvin.logicsim.logic.simulator;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts how long the ticks of an circuit process took, so percentiles of the tick latency can be displayed without storing every single value.
+ * The values are sorted into buckets on an logarithmic scale, every power of two is split into 8 buckets, so an percentile is accurate to about 12.5%.
+ * Recording an value does not lock and does not allocate any memory, the values can be read by other threads at any time while the simulation is running.
+ *
+ * @author Marvin K.
+ *
+ */
+public class LatencyHistogram {
+
+	/* Values below this are counted exactly, one bucket per value */
+	protected static final int LINEAR_BUCKETS = 16;
+	protected static final int SUB_BUCKET_BITS = 3;
+	protected static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	protected static final int FIRST_EXPONENT = 4;
+	protected static final int BUCKET_COUNT = LINEAR_BUCKETS + (63 - FIRST_EXPONENT) * SUB_BUCKETS;
+
+	protected final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+	protected final AtomicLong count = new AtomicLong();
+	protected final AtomicLong total = new AtomicLong();
+	protected final AtomicLong max = new AtomicLong();
+
+	protected static int getBucket(long value) {
+		if (value < LINEAR_BUCKETS) return (int) Math.max(value, 0);
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return LINEAR_BUCKETS + (exponent - FIRST_EXPONENT) * SUB_BUCKETS + subBucket;
+	}
+
+	protected static long getBucketLimit(int bucket) {
+		if (bucket < LINEAR_BUCKETS) return bucket;
+		int exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + FIRST_EXPONENT;
+		int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+		return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+
+	/**
+	 * Counts one tick that took the given time.
+	 *
+	 * @param nanos The duration of the tick in nanoseconds
+	 */
+	public void record(long nanos) {
+		this.buckets.incrementAndGet(getBucket(nanos));
+		this.count.incrementAndGet();
+		this.total.addAndGet(nanos);
+		long lastMax = this.max.get();
+		while (nanos > lastMax && !this.max.compareAndSet(lastMax, nanos)) lastMax = this.max.get();
+	}
+
+	/**
+	 * Returns the number of ticks recorded since the histogram was created or reset.
+	 */
+	public long getCount() {
+		return this.count.get();
+	}
+
+	/**
+	 * Returns the sum of the durations of all recorded ticks in nanoseconds.
+	 */
+	public long getTotalTime() {
+		return this.total.get();
+	}
+
+	public long getMax() {
+		return this.max.get();
+	}
+
+	/**
+	 * Returns the duration in nanoseconds that the given fraction of all recorded ticks did not exceed, or zero if nothing was recorded.
+	 *
+	 * @param percentile The fraction of the ticks, between 0 and 1
+	 */
+	public long getPercentile(double percentile) {
+		long count = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) count += this.buckets.get(i);
+		if (count == 0) return 0;
+		long target = Math.max((long) Math.ceil(count * percentile), 1);
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += this.buckets.get(i);
+			if (seen >= target) return Math.min(getBucketLimit(i), getMax());
+		}
+		return getMax();
+	}
+
+	/**
+	 * Removes all recorded values.
+	 * Values recorded at the same time by an other thread might be partly lost.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) this.buckets.set(i, 0);
+		this.count.set(0);
+		this.total.set(0);
+		this.max.set(0);
+	}
+
+}
@@ -0,0 +1,242 @@
+package de.m_marvin.logicsim.logic.simulator;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.BitSet;
+
+import de.m_marvin.logicsim.logic.Circuit;
+
+/**
+ * Records the changes of the lane states of an circuit in every tick, so the states of the last ticks can be shown again to find the cause of an glitch.
+ * Every changed lane is stored as one entry containing the net id, the lane id and the old and new state of the lane.
+ * The entries are written into an ring buffer outside of the java heap, so the memory used does not depend on the length of the simulation and the garbage collector is not slowed down.
+ * If the buffer is full, the oldest ticks are overwritten, at most the given number of ticks is held.
+ * While the simulation is paused, the nets can be set to the state after any of the held ticks (see {@link #seek(Circuit, long)}), by undoing the changes of the newer ticks and redoing them again.
+ * This only changes the nets, the internal states of the components (memories, latches ...) stay at the newest tick, so the nets have to be set back to the newest tick before the simulation continues.
+ *
+ * @author Marvin K.
+ *
+ */
+public class NetHistory {
+
+	public static final int DEFAULT_TICK_CAPACITY = 1024;
+	public static final int DEFAULT_CHANGE_CAPACITY = 1 << 20;
+
+	/* Layout of an entry: net id (32 bits), lane id (28 bits), old lane code (2 bits), new lane code (2 bits) */
+	protected static final int LANE_SHIFT = 4;
+	protected static final int NET_SHIFT = 32;
+	protected static final long LANE_MASK = (1L << (NET_SHIFT - LANE_SHIFT)) - 1;
+
+	protected final int tickCapacity;
+	protected final int changeCapacity;
+	protected final LongBuffer changes;
+	/* The position of the first change of every held tick, indexed by the tick modulo the tick capacity */
+	protected final LongBuffer tickStarts;
+
+	protected long changeCount;
+	protected long oldestTick;
+	protected long newestTick;
+	protected long viewedTick;
+	protected long recordedTick;
+	protected int modificationCount;
+
+	/**
+	 * @param tickCapacity The maximum number of ticks held
+	 * @param changeCapacity The maximum number of lane changes held, 8 bytes are allocated for every change
+	 */
+	public NetHistory(int tickCapacity, int changeCapacity) {
+		this.tickCapacity = Math.max(tickCapacity, 1);
+		this.changeCapacity = Math.max(changeCapacity, 1);
+		this.changes = ByteBuffer.allocateDirect(this.changeCapacity * Long.BYTES).asLongBuffer();
+		this.tickStarts = ByteBuffer.allocateDirect(this.tickCapacity * Long.BYTES).asLongBuffer();
+		clear();
+	}
+
+	public int getTickCapacity() {
+		return this.tickCapacity;
+	}
+
+	public int getChangeCapacity() {
+		return this.changeCapacity;
+	}
+
+	/**
+	 * Returns the number of bytes allocated outside of the java heap.
+	 */
+	public long getMemorySize() {
+		return (long) (this.changeCapacity + this.tickCapacity) * Long.BYTES;
+	}
+
+	/**
+	 * Removes all recorded ticks.
+	 */
+	public synchronized void clear() {
+		this.changeCount = 0;
+		this.oldestTick = 0;
+		this.newestTick = -1;
+		this.viewedTick = -1;
+	}
+
+	/**
+	 * Returns the oldest tick the nets can be set to, the changes of the ticks before were already overwritten.
+	 */
+	public synchronized long getOldestTick() {
+		return Math.min(this.oldestTick - 1, this.newestTick);
+	}
+
+	/**
+	 * Returns the tick recorded last, or -1 if nothing was recorded yet.
+	 */
+	public synchronized long getNewestTick() {
+		return this.newestTick;
+	}
+
+	/**
+	 * Returns the tick after which the states currently held by the nets were recorded.
+	 */
+	public synchronized long getViewedTick() {
+		return this.viewedTick;
+	}
+
+	/**
+	 * Returns true if the nets currently show an older tick than the newest one.
+	 */
+	public synchronized boolean isRewound() {
+		return this.viewedTick != this.newestTick;
+	}
+
+	/**
+	 * Returns the number of lane changes held for the tick, or -1 if the tick is not held.
+	 */
+	public synchronized int getChangeCount(long tick) {
+		if (tick < this.oldestTick || tick > this.newestTick) return -1;
+		return (int) (getTickEnd(tick) - getTickStart(tick));
+	}
+
+	protected long getTickStart(long tick) {
+		return this.tickStarts.get((int) (tick % this.tickCapacity));
+	}
+
+	protected long getTickEnd(long tick) {
+		return tick == this.newestTick ? this.changeCount : getTickStart(tick + 1);
+	}
+
+	/**
+	 * Records the changes of the current tick, has to be called after the new lane states were evaluated but before they get committed.
+	 * The history is cleared if the circuit was modified or reset since the last recorded tick.
+	 *
+	 * @param circuit The circuit this history belongs to
+	 * @param changedNets The nets that can have changed in this tick, or null to compare all nets
+	 */
+	public synchronized void recordTick(Circuit circuit, BitSet changedNets) {
+		beginTick(circuit);
+		int netCount = circuit.getNetCount();
+		if (changedNets != null) {
+			for (int net = changedNets.nextSetBit(0); net >= 0 && net < netCount; net = changedNets.nextSetBit(net + 1)) recordNet(net, circuit.getNetValuesSec(net), circuit.getNetValuesPri(net));
+		} else {
+			for (int net = 0; net < netCount; net++) recordNet(net, circuit.getNetValuesSec(net), circuit.getNetValuesPri(net));
+		}
+		endTick();
+	}
+
+	/**
+	 * Starts to record the changes of the current tick, the nets are then passed one by one to {@link #recordNet(int, LaneStateMap, LaneStateMap)} and the tick is completed by {@link #endTick()}.
+	 * Allows to compare the nets while they get committed, so their states only have to be read once.
+	 *
+	 * @param circuit The circuit this history belongs to
+	 */
+	public synchronized void beginTick(Circuit circuit) {
+		long tick = circuit.getSimulationTick();
+		if (circuit.getModificationCount() != this.modificationCount || tick != this.newestTick + 1) {
+			this.modificationCount = circuit.getModificationCount();
+			this.changeCount = 0;
+			this.oldestTick = tick;
+		}
+		this.tickStarts.put((int) (tick % this.tickCapacity), this.changeCount);
+		this.recordedTick = tick;
+	}
+
+	/**
+	 * Records the changed lanes of the net, only allowed between {@link #beginTick(Circuit)} and {@link #endTick()}.
+	 *
+	 * @param net The id of the net
+	 * @param oldValues The committed lane states of the last tick
+	 * @param newValues The evaluated lane states of the current tick
+	 */
+	public void recordNet(int net, LaneStateMap oldValues, LaneStateMap newValues) {
+		if (oldValues == null || newValues == null) return;
+		long[] oldStates = oldValues.states;
+		long[] newStates = newValues.states;
+		if (oldStates.length == newStates.length) {
+			for (int word = 0; word < oldStates.length; word++) {
+				if (oldStates[word] != newStates[word]) recordWord(net, word, oldStates[word], newStates[word]);
+			}
+			return;
+		}
+		int words = Math.max(oldStates.length, newStates.length);
+		for (int word = 0; word < words; word++) {
+			long oldWord = word < oldStates.length ? oldStates[word] : 0;
+			long newWord = word < newStates.length ? newStates[word] : 0;
+			if (oldWord != newWord) recordWord(net, word, oldWord, newWord);
+		}
+	}
+
+	protected void recordWord(int net, int word, long oldWord, long newWord) {
+		long changed = oldWord ^ newWord;
+		changed = (changed | (changed >>> 1)) & LaneStateMap.LOW_BITS;
+		while (changed != 0) {
+			int shift = Long.numberOfTrailingZeros(changed);
+			long lane = word * LaneStateMap.LANES_PER_WORD + (shift >>> 1);
+			long entry = ((long) net << NET_SHIFT) | (lane << LANE_SHIFT) | (((oldWord >>> shift) & 3) << 2) | ((newWord >>> shift) & 3);
+			this.changes.put((int) (this.changeCount++ % this.changeCapacity), entry);
+			changed &= changed - 1;
+		}
+	}
+
+	/**
+	 * Completes the tick started by {@link #beginTick(Circuit)}, the oldest ticks are removed if the buffer is full.
+	 */
+	public synchronized void endTick() {
+		long tick = this.recordedTick;
+		this.newestTick = tick;
+		this.viewedTick = tick;
+		while (this.oldestTick <= tick && (tick - this.oldestTick >= this.tickCapacity || this.changeCount - getTickStart(this.oldestTick) > this.changeCapacity)) this.oldestTick++;
+	}
+
+	/**
+	 * Sets the nets of the circuit to the states they had after the given tick, only allowed while the circuit is not simulated.
+	 * The tick is limited to the held ticks.
+	 *
+	 * @param circuit The circuit this history belongs to
+	 * @param tick The tick to show
+	 * @return The tick the nets were set to, or -1 if the circuit was modified since the ticks were recorded
+	 */
+	public synchronized long seek(Circuit circuit, long tick) {
+		if (this.newestTick < 0 || circuit.getModificationCount() != this.modificationCount) return -1;
+		tick = Math.max(Math.min(tick, this.newestTick), getOldestTick());
+		while (this.viewedTick > tick) {
+			long start = getTickStart(this.viewedTick);
+			for (long change = getTickEnd(this.viewedTick) - 1; change >= start; change--) applyChange(circuit, this.changes.get((int) (change % this.changeCapacity)), true);
+			this.viewedTick--;
+		}
+		while (this.viewedTick < tick) {
+			this.viewedTick++;
+			long end = getTickEnd(this.viewedTick);
+			for (long change = getTickStart(this.viewedTick); change < end; change++) applyChange(circuit, this.changes.get((int) (change % this.changeCapacity)), false);
+		}
+		circuit.setSimulationTick(tick);
+		circuit.reloadComponentStates();
+		return tick;
+	}
+
+	protected static void applyChange(Circuit circuit, long entry, boolean undo) {
+		int net = (int) (entry >>> NET_SHIFT);
+		int lane = (int) ((entry >>> LANE_SHIFT) & LANE_MASK);
+		int code = (int) (undo ? entry >>> 2 : entry) & 3;
+		LaneStateMap valuesSec = circuit.getNetValuesSec(net);
+		LaneStateMap valuesPri = circuit.getNetValuesPri(net);
+		if (valuesSec != null) valuesSec.setLaneCode(lane, code);
+		if (valuesPri != null) valuesPri.setLaneCode(lane, code);
+	}
+
+}
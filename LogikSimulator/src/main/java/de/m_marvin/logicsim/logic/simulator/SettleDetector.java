@@ -0,0 +1,120 @@
+package de.m_marvin.logicsim.logic.simulator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+import de.m_marvin.logicsim.logic.Circuit;
+
+/**
+ * Advances an simulation until the states of its nets stop changing, so an circuit can be simulated for exactly as many ticks as it requires.
+ * After every tick, an hash of the committed lane states of all circuits is calculated.
+ * An logic gate holds an falling output HIGH for one more tick without any change on its nets, so the state of an circuit is described by the lane states of the last two ticks.
+ * The simulation has settled if the hashes of the last two ticks equal the hashes of the two ticks before, which means no net changed for two ticks.
+ * If they equal the hashes of two ticks further back instead, the circuit oscillates: the states repeat with the period of that distance.
+ * In this case, the simulation is advanced for one more period to find the nets changing within the cycle.
+ * Components with an internal state that is not visible on the nets (memories, clocks) can cause an oscillation to be detected too early or not at all.
+ *
+ * @author Marvin K.
+ *
+ */
+public class SettleDetector {
+
+	/* The longest oscillation period that is detected, longer cycles run until the maximum number of ticks */
+	public static final int MAX_PERIOD = 256;
+
+	public static record OscillatingNet(Circuit circuit, int netId) {}
+
+	/**
+	 * @param ticks The number of simulated ticks, including the ticks used to find the oscillating nets
+	 * @param settled True if the nets stopped changing
+	 * @param period The number of ticks after which the states repeat, zero if no oscillation was detected
+	 * @param oscillatingNets The nets that change within one period of the oscillation
+	 */
+	public static record SettleResult(int ticks, boolean settled, int period, List<OscillatingNet> oscillatingNets) {
+		public boolean isOscillating() {
+			return this.period > 0;
+		}
+	}
+
+	protected final Supplier<Collection<Circuit>> circuits;
+	protected final Runnable tick;
+
+	/**
+	 * @param circuits Supplies the circuits whose nets are observed, queried after every tick since processes of sub-circuits can be added while simulating
+	 * @param tick Executes one tick of all circuits
+	 */
+	public SettleDetector(Supplier<Collection<Circuit>> circuits, Runnable tick) {
+		this.circuits = circuits;
+		this.tick = tick;
+	}
+
+	/**
+	 * Executes ticks until the nets have settled, started to oscillate or the maximum number of ticks is reached.
+	 */
+	public SettleResult run(int maxTicks) {
+		long[] history = new long[MAX_PERIOD + 2];
+		history[0] = hashStates();
+		for (int tick = 1; tick <= maxTicks; tick++) {
+			this.tick.run();
+			long hash = hashStates();
+			long lastHash = history[(tick - 1) % history.length];
+			history[tick % history.length] = hash;
+			for (int period = 1; period <= Math.min(tick - 1, MAX_PERIOD); period++) {
+				if (history[(tick - period) % history.length] != hash || history[(tick - 1 - period) % history.length] != lastHash) continue;
+				if (period == 1) return new SettleResult(tick, true, 0, List.of());
+				return new SettleResult(tick + period, false, period, findOscillatingNets(period));
+			}
+		}
+		return new SettleResult(maxTicks, false, 0, List.of());
+	}
+
+	protected List<OscillatingNet> findOscillatingNets(int period) {
+		List<Circuit> circuits = new ArrayList<>(this.circuits.get());
+		long[][] lastHashes = new long[circuits.size()][];
+		boolean[][] changed = new boolean[circuits.size()][];
+		for (int i = 0; i < circuits.size(); i++) {
+			lastHashes[i] = hashNets(circuits.get(i));
+			changed[i] = new boolean[lastHashes[i].length];
+		}
+		for (int tick = 0; tick < period; tick++) {
+			this.tick.run();
+			for (int i = 0; i < circuits.size(); i++) {
+				long[] hashes = hashNets(circuits.get(i));
+				for (int net = 0; net < Math.min(hashes.length, changed[i].length); net++) {
+					if (hashes[net] != lastHashes[i][net]) changed[i][net] = true;
+				}
+				lastHashes[i] = hashes;
+			}
+		}
+		List<OscillatingNet> oscillatingNets = new ArrayList<>();
+		for (int i = 0; i < circuits.size(); i++) {
+			for (int net = 0; net < changed[i].length; net++) {
+				if (changed[i][net]) oscillatingNets.add(new OscillatingNet(circuits.get(i), net));
+			}
+		}
+		return oscillatingNets;
+	}
+
+	protected long hashStates() {
+		long hash = 0;
+		for (Circuit circuit : this.circuits.get()) {
+			for (int net = 0; net < circuit.getNetCount(); net++) {
+				LaneStateMap states = circuit.getNetValuesSec(net);
+				hash = (hash ^ (states == null ? 0 : states.stateHash())) * 0x9E3779B97F4A7C15L;
+			}
+		}
+		return hash;
+	}
+
+	protected static long[] hashNets(Circuit circuit) {
+		long[] hashes = new long[circuit.getNetCount()];
+		for (int net = 0; net < hashes.length; net++) {
+			LaneStateMap states = circuit.getNetValuesSec(net);
+			hashes[net] = states == null ? 0 : states.stateHash();
+		}
+		return hashes;
+	}
+
+}
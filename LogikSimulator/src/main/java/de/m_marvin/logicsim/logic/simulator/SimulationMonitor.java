@@ -24,7 +24,11 @@ public class SimulationMonitor {
 	protected Map<Circuit, CircuitProcessInfo> cachedProcessInfo = new HashMap<>();
 	protected Collection<CircuitProcessorInfo> cachedProcessorInfo = new ArrayList<>();
 
-	public static record CircuitProcessInfo(Circuit circuit, Circuit parentCircuit, Supplier<Integer> executionTime, Supplier<Boolean> active, Supplier<Boolean> executing, List<SimulationWarning> warnings) {
+	/**
+	 * @param executionTime The time between the start of the last two ticks in nanoseconds
+	 * @param latency The histogram of the processing time of the ticks, shared by all sub-circuits of an flattened process
+	 */
+	public static record CircuitProcessInfo(Circuit circuit, Circuit parentCircuit, Supplier<Long> executionTime, LatencyHistogram latency, Supplier<Boolean> active, Supplier<Boolean> executing, Supplier<List<CircuitPartitionInfo>> partitions, List<SimulationWarning> warnings) {
 		public boolean isActive() {
 			return this.active.get();
 		}
@@ -34,9 +38,14 @@ public class SimulationMonitor {
 		public boolean hasWarnings() {
 			return !this.warnings.isEmpty();
 		}
+		public long getTickCount() {
+			return this.latency.getCount();
+		}
 	}
 
-	public static record CircuitProcessorInfo(Supplier<Collection<Circuit>> circuits, Supplier<Integer> tps, Supplier<Integer> executionTime) {}
+	public static record CircuitPartitionInfo(int components, int nets, Supplier<Long> evaluationTime, Supplier<Long> commitTime) {}
+	
+	public static record CircuitProcessorInfo(Supplier<Collection<Circuit>> circuits, Supplier<Integer> tps, Supplier<Long> jitter, Supplier<Long> executionTime) {}
 	
 	public SimulationMonitor(CircuitProcessor processor) {
 		this.processor = processor;
@@ -47,11 +56,11 @@ public class SimulationMonitor {
 	}
 	
 	public void setTPSLimit(int tps) {
-		this.processor.setMinFrameTime(tps > 0 ? (1F / tps) * 1000F : -1);
+		this.processor.setTickRate(tps);
 	}
 	
 	public int getTPSLimit() {
-		return (int) ((1F / (this.processor.getMinFrameTime()) * 1000F));
+		return (int) Math.max(this.processor.getTickRate(), 0);
 	}
 	
 	public int getCoreCount() {
@@ -59,7 +68,7 @@ public class SimulationMonitor {
 	}
 	
 	public int getUsedCores() {
-		return this.cachedProcessorInfo != null ? this.cachedProcessorInfo.size() : 0;
+		return this.cachedProcessorInfo != null ? this.processor.getUsedCores() : 0;
 	}
 	
 	public double getCPULoad() {
@@ -152,6 +161,14 @@ public class SimulationMonitor {
 		
 	}
 	
+	public List<CircuitPartitionInfo> queryPartitions(Circuit circuit) {
+		List<CircuitPartitionInfo> partitionInfos = new ArrayList<>();
+		for (CircuitPartition partition : circuit.getPartitions()) {
+			partitionInfos.add(new CircuitPartitionInfo(partition.getComponentCount(), partition.getNetCount(), partition::getEvaluationTime, partition::getCommitTime));
+		}
+		return partitionInfos;
+	}
+	
 	public Collection<CircuitProcessInfo> getRunningProcesses() {
 		return this.cachedProcessInfo.values();
 	}
@@ -176,13 +193,27 @@ public class SimulationMonitor {
 				
 				if (!this.cachedProcessInfo.containsKey(process.circuit)) 
 					this.cachedProcessInfo.put(process.circuit, 
-						new CircuitProcessInfo(process.circuit, process.parentCircuit, () -> (int) process.executionTime, () -> {
+						new CircuitProcessInfo(process.circuit, process.parentCircuit, () -> process.executionTime, process.latency, () -> {
 							synchronized (this.processor) { return this.processor.holdsCircuit(process.circuit); }
 						}, () -> {
 							synchronized (this.processor) { return this.processor.isExecuting(process.circuit); }
-						}, new ArrayList<>())
+						}, () -> queryPartitions(process.circuit), new ArrayList<>())
 					);
 				
+				// The sub-circuits of an flattened process are listed as if they had their own processes
+				if (process.flattened != null) process.flattened.getSubCircuits().forEach((subCircuit, parentCircuit) -> {
+					
+					if (!this.cachedProcessInfo.containsKey(subCircuit))
+						this.cachedProcessInfo.put(subCircuit,
+							new CircuitProcessInfo(subCircuit, parentCircuit, () -> process.executionTime, process.latency, () -> {
+								synchronized (this.processor) { return this.processor.holdsCircuit(subCircuit); }
+							}, () -> {
+								synchronized (this.processor) { return this.processor.isExecuting(subCircuit); }
+							}, () -> new ArrayList<>(), new ArrayList<>())
+						);
+					
+				});
+				
 			});
 			
 			queryWarnings();
@@ -197,7 +228,7 @@ public class SimulationMonitor {
 						}
 					}
 					return circuits;
-				}, () -> processor.tps, () -> (int) processor.executionTime)
+				}, () -> (int) Math.round(processor.pacer.getAchievedRate()), processor.pacer::getJitter, () -> processor.executionTime)
 			).toList();
 			
 		}
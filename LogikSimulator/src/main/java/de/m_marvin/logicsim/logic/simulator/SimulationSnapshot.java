@@ -0,0 +1,216 @@
+package de.m_marvin.logicsim.logic.simulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import de.m_marvin.logicsim.logic.Circuit;
+import de.m_marvin.logicsim.logic.Component;
+import de.m_marvin.logicsim.logic.parts.SubCircuitComponent;
+
+/**
+ * Saves the complete state of an running simulation into an compact binary snapshot and restores it later, so an circuit can for example be booted once and every test started from the booted state.
+ * The snapshot contains the lane states of all nets and the internal state of all components (see {@link Component#writeState(DataOutputStream)}) of the circuit and all its sub-circuits, but not the circuit itself.
+ * It can only be restored into the same circuit or the same circuit loaded again from its file, the number of nets and components and the classes of the components have to match.
+ * The snapshot should only be taken or restored while the circuit is not simulated, if the simulation is paused or by the thread executing the ticks of an synchronous processor.
+ *
+ * Layout of the snapshot (all numbers big endian):
+ * <pre>
+ * header      magic "LSSN", version (short)
+ * lane table  number of lanes (int), the name of every lane (short length + UTF-8 bytes), used to map the lane ids if the lane table is different when restoring
+ * circuit     number of nets, number of components (each int), simulation tick (long),
+ *             the committed lane states of every net (see {@link LaneStateMap#writeStates(DataOutputStream)}), between two ticks the evaluated states are the same,
+ *             class name hash, state length (each int) and state of every component,
+ *             followed by an flag (byte) and the circuit of the sub-circuit for every sub-circuit component
+ * </pre>
+ *
+ * @author Marvin K.
+ *
+ */
+public class SimulationSnapshot {
+
+	public static final int MAGIC = 0x4C53534E; // "LSSN"
+	public static final short FORMAT_VERSION = 1;
+
+	/**
+	 * Captures the state of the circuit and all its sub-circuits.
+	 */
+	public static byte[] capture(Circuit circuit) {
+		try {
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			DataOutputStream output = new DataOutputStream(buffer);
+			output.writeInt(MAGIC);
+			output.writeShort(FORMAT_VERSION);
+			LaneTable lanes = circuit.getLaneTable();
+			int laneCount = lanes.getLaneCount();
+			output.writeInt(laneCount);
+			for (int lane = 0; lane < laneCount; lane++) {
+				byte[] name = lanes.getLaneName(lane).getBytes(StandardCharsets.UTF_8);
+				output.writeShort(name.length);
+				output.write(name);
+			}
+			writeCircuit(output, circuit, new ByteArrayOutputStream());
+			output.flush();
+			return buffer.toByteArray();
+		} catch (IOException e) {
+			// Can not happen, the data is only written into memory
+			throw new IllegalStateException("Failed to write simulation snapshot!", e);
+		}
+	}
+
+	/**
+	 * Replaces the state of the circuit and all its sub-circuits with the state of the snapshot.
+	 * The whole snapshot is validated against the circuit before anything is replaced, so an invalid snapshot leaves the circuit unchanged.
+	 *
+	 * @throws IllegalArgumentException If the snapshot is invalid or was not taken from the same circuit
+	 */
+	public static void restore(Circuit circuit, byte[] snapshot) {
+		ByteBuffer buffer = ByteBuffer.wrap(snapshot);
+		try {
+			if (buffer.getInt() != MAGIC) throw new IllegalArgumentException("Data is not an simulation snapshot!");
+			short version = buffer.getShort();
+			if (version > FORMAT_VERSION) throw new IllegalArgumentException("Simulation snapshot has version " + version + ", only versions up to " + FORMAT_VERSION + " are supported!");
+			int laneCount = buffer.getInt();
+			if (laneCount < 0) throw new IllegalArgumentException("Simulation snapshot has an invalid lane count!");
+			String[] laneNames = new String[laneCount];
+			for (int lane = 0; lane < laneCount; lane++) laneNames[lane] = readString(buffer);
+			
+			int circuitStart = buffer.position();
+			validateCircuit(buffer, circuit, laneCount);
+			if (buffer.hasRemaining()) throw new IllegalArgumentException("Simulation snapshot contains " + buffer.remaining() + " unused bytes!");
+			
+			LaneTable lanes = circuit.getLaneTable();
+			int[] laneMapping = new int[laneCount];
+			boolean sameLanes = true;
+			for (int lane = 0; lane < laneCount; lane++) {
+				laneMapping[lane] = lanes.intern(laneNames[lane]);
+				if (laneMapping[lane] != lane) sameLanes = false;
+			}
+			buffer.position(circuitStart);
+			readCircuit(buffer, circuit, sameLanes ? null : laneMapping);
+		} catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+			throw new IllegalArgumentException("Simulation snapshot is incomplete!");
+		}
+	}
+
+	public static void save(File file, byte[] snapshot) throws IOException {
+		Files.write(file.toPath(), snapshot);
+	}
+
+	public static byte[] load(File file) throws IOException {
+		return Files.readAllBytes(file.toPath());
+	}
+
+	protected static void writeCircuit(DataOutputStream output, Circuit circuit, ByteArrayOutputStream componentBuffer) throws IOException {
+		circuit.flushComponentStates();
+		List<Component> components = circuit.getComponents();
+		int netCount = circuit.getNetCount();
+		output.writeInt(netCount);
+		output.writeInt(components.size());
+		output.writeLong(circuit.getSimulationTick());
+		LaneStateMap empty = new LaneStateMap(circuit.getLaneTable());
+		for (int net = 0; net < netCount; net++) {
+			LaneStateMap valuesSec = circuit.getNetValuesSec(net);
+			(valuesSec != null ? valuesSec : empty).writeStates(output);
+		}
+		DataOutputStream componentOutput = new DataOutputStream(componentBuffer);
+		for (Component component : components) {
+			componentBuffer.reset();
+			component.writeState(componentOutput);
+			componentOutput.flush();
+			output.writeInt(component.getClass().getName().hashCode());
+			output.writeInt(componentBuffer.size());
+			componentBuffer.writeTo(output);
+		}
+		for (Component component : components) {
+			if (!(component instanceof SubCircuitComponent subCircuitComponent)) continue;
+			Circuit subCircuit = subCircuitComponent.getSubCircuit();
+			output.writeBoolean(subCircuit != null);
+			if (subCircuit != null) writeCircuit(output, subCircuit, componentBuffer);
+		}
+	}
+
+	/**
+	 * Checks that the snapshot of the circuit matches it without changing the circuit, the buffer is left behind the circuit.
+	 */
+	protected static void validateCircuit(ByteBuffer buffer, Circuit circuit, int laneCount) {
+		List<Component> components = circuit.getComponents();
+		int netCount = buffer.getInt();
+		int componentCount = buffer.getInt();
+		if (netCount != circuit.getNetCount() || componentCount != components.size()) throw new IllegalArgumentException("Simulation snapshot does not match the circuit, expected " + circuit.getNetCount() + " nets and " + components.size() + " components but got " + netCount + " nets and " + componentCount + " components!");
+		buffer.getLong();
+		for (int net = 0; net < netCount; net++) {
+			int length = buffer.getShort() & 0xFFFF;
+			for (int i = 0; i < length; i++) {
+				long word = buffer.getLong();
+				// Only lanes of the lane table of the snapshot can have an state
+				int knownLanes = laneCount - i * LaneStateMap.LANES_PER_WORD;
+				if (word != 0 && knownLanes < LaneStateMap.LANES_PER_WORD && (knownLanes <= 0 || (word >>> (knownLanes * 2)) != 0)) throw new IllegalArgumentException("Simulation snapshot contains states of unknown lanes!");
+			}
+		}
+		for (Component component : components) {
+			int classHash = buffer.getInt();
+			int length = buffer.getInt();
+			if (classHash != component.getClass().getName().hashCode()) throw new IllegalArgumentException("Simulation snapshot does not match the circuit, component " + component + " has an different type!");
+			if (length < 0 || length > buffer.remaining()) throw new IllegalArgumentException("Simulation snapshot is incomplete!");
+			buffer.position(buffer.position() + length);
+		}
+		for (Component component : components) {
+			if (!(component instanceof SubCircuitComponent subCircuitComponent)) continue;
+			Circuit subCircuit = subCircuitComponent.getSubCircuit();
+			boolean hasSubCircuit = buffer.get() != 0;
+			if (hasSubCircuit != (subCircuit != null)) throw new IllegalArgumentException("Simulation snapshot does not match the circuit, sub-circuit of component " + component + " is missing!");
+			if (subCircuit != null) validateCircuit(buffer, subCircuit, laneCount);
+		}
+	}
+
+	/**
+	 * Replaces the states of the circuit, the snapshot has to be validated by {@link #validateCircuit(ByteBuffer, Circuit, int)} before.
+	 */
+	protected static void readCircuit(ByteBuffer buffer, Circuit circuit, int[] laneMapping) {
+		List<Component> components = circuit.getComponents();
+		int netCount = buffer.getInt();
+		buffer.getInt();
+		circuit.setSimulationTick(buffer.getLong());
+		LaneStateMap skipped = new LaneStateMap(circuit.getLaneTable());
+		for (int net = 0; net < netCount; net++) {
+			LaneStateMap valuesPri = circuit.getNetValuesPri(net);
+			LaneStateMap valuesSec = circuit.getNetValuesSec(net);
+			if (valuesSec == null || valuesPri == null) {
+				skipped.readStates(buffer, laneMapping);
+				continue;
+			}
+			valuesSec.readStates(buffer, laneMapping);
+			valuesPri.copyFrom(valuesSec);
+		}
+		for (Component component : components) {
+			buffer.getInt();
+			int length = buffer.getInt();
+			ByteBuffer state = buffer.slice(buffer.position(), length);
+			buffer.position(buffer.position() + length);
+			component.readState(state);
+			if (state.hasRemaining()) throw new IllegalArgumentException("Simulation snapshot does not match the circuit, the state of component " + component + " is too long!");
+		}
+		for (Component component : components) {
+			if (!(component instanceof SubCircuitComponent subCircuitComponent)) continue;
+			Circuit subCircuit = subCircuitComponent.getSubCircuit();
+			buffer.get();
+			if (subCircuit != null) readCircuit(buffer, subCircuit, laneMapping);
+		}
+		circuit.reloadComponentStates();
+	}
+
+	protected static String readString(ByteBuffer buffer) {
+		int length = buffer.getShort() & 0xFFFF;
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
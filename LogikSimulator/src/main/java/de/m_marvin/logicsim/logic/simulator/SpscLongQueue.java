@@ -0,0 +1,95 @@
+package de.m_marvin.logicsim.logic.simulator;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An bounded queue of long values for exactly one producer thread and one consumer thread, that does not lock and does not allocate any memory.
+ * The producer adds values with {@link #offer(long)}, they only become visible to the consumer after {@link #publish()} was called, so an group of values can be published at once or discarded with {@link #rollback()}.
+ * If the queue is full, the values are rejected instead of waiting for the consumer.
+ * The consumer takes the published values with {@link #drain(long[])}.
+ *
+ * @author Marvin K.
+ *
+ */
+public class SpscLongQueue {
+
+	protected final long[] buffer;
+	protected final int mask;
+	protected final AtomicLong writeIndex = new AtomicLong();
+	protected final AtomicLong readIndex = new AtomicLong();
+
+	/* Only accessed by the producer */
+	protected long producerIndex;
+	protected long cachedReadIndex;
+
+	/* Only accessed by the consumer */
+	protected long cachedWriteIndex;
+
+	/**
+	 * @param capacity The maximum number of values in the queue, rounded up to the next power of two
+	 */
+	public SpscLongQueue(int capacity) {
+		int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+		this.buffer = new long[size];
+		this.mask = size - 1;
+	}
+
+	public int getCapacity() {
+		return this.buffer.length;
+	}
+
+	/**
+	 * Adds an value to the queue, only called by the producer.
+	 *
+	 * @return false if the queue is full
+	 */
+	public boolean offer(long value) {
+		if (this.producerIndex - this.cachedReadIndex >= this.buffer.length) {
+			this.cachedReadIndex = this.readIndex.get();
+			if (this.producerIndex - this.cachedReadIndex >= this.buffer.length) return false;
+		}
+		this.buffer[(int) this.producerIndex & this.mask] = value;
+		this.producerIndex++;
+		return true;
+	}
+
+	/**
+	 * Makes all values offered since the last publish visible to the consumer, only called by the producer.
+	 */
+	public void publish() {
+		this.writeIndex.lazySet(this.producerIndex);
+	}
+
+	/**
+	 * Discards all values offered since the last publish, only called by the producer.
+	 */
+	public void rollback() {
+		this.producerIndex = this.writeIndex.get();
+	}
+
+	/**
+	 * Moves published values into the array, only called by the consumer.
+	 *
+	 * @param target The array to fill
+	 * @return The number of values moved, zero if the queue is empty
+	 */
+	public int drain(long[] target) {
+		long index = this.readIndex.get();
+		if (index == this.cachedWriteIndex) {
+			this.cachedWriteIndex = this.writeIndex.get();
+			if (index == this.cachedWriteIndex) return 0;
+		}
+		int count = (int) Math.min(this.cachedWriteIndex - index, target.length);
+		for (int i = 0; i < count; i++) target[i] = this.buffer[(int) (index + i) & this.mask];
+		this.readIndex.lazySet(index + count);
+		return count;
+	}
+
+	/**
+	 * Returns true if the consumer has taken all published values.
+	 */
+	public boolean isEmpty() {
+		return this.readIndex.get() == this.writeIndex.get();
+	}
+
+}
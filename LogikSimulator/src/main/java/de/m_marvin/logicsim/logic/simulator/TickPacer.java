@@ -0,0 +1,157 @@
+package de.m_marvin.logicsim.logic.simulator;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces the frames of an processor thread to an fixed tick rate.
+ * The start of every frame is scheduled at an fixed time after the start of the schedule, so small delays of single frames do not add up and the average rate is exact.
+ * The thread waits using {@link LockSupport#parkNanos(long)}, which can return some microseconds too late depending on the operating system.
+ * In the busy-spin mode, the last part of the waiting time is spent in an loop instead, which gives very precise frame times for high tick rates, but keeps one core busy all the time.
+ * If the thread falls behind the schedule by more than {@link #MAX_BEHIND_FRAMES} frames, the missed frames are skipped and the schedule restarts.
+ * Frames can also be started without waiting using {@link #skipFrame()}, for example to fast-forward the simulation.
+ * The achieved tick rate and the jitter (the mean deviation of the frame starts from the schedule) are measured over one second.
+ *
+ * @author Marvin K.
+ *
+ */
+public class TickPacer {
+
+	public static final int MAX_BEHIND_FRAMES = 20;
+	/* The time before the start of an frame after which the busy-spin mode stops parking the thread */
+	public static final long SPIN_THRESHOLD = 100000;
+	public static final long MEASUREMENT_TIME = 1000000000;
+
+	protected volatile double tickRate;
+	protected volatile boolean busySpin;
+
+	protected long scheduleStart;
+	protected long scheduleFrame;
+	protected double scheduledRate;
+
+	protected long measurementStart;
+	protected int measuredFrames;
+	protected long measuredDeviation;
+	protected volatile double achievedRate;
+	protected volatile long jitter;
+
+	/**
+	 * @param tickRate The number of ticks per second, zero or less for no limit
+	 */
+	public TickPacer(double tickRate) {
+		this.tickRate = tickRate;
+	}
+
+	public void setTickRate(double tickRate) {
+		this.tickRate = tickRate;
+	}
+
+	public double getTickRate() {
+		return this.tickRate;
+	}
+
+	public void setBusySpin(boolean busySpin) {
+		this.busySpin = busySpin;
+	}
+
+	public boolean isBusySpin() {
+		return this.busySpin;
+	}
+
+	/**
+	 * Returns the number of frames per second that were started in the last second.
+	 */
+	public double getAchievedRate() {
+		return this.achievedRate;
+	}
+
+	/**
+	 * Returns the mean deviation of the frame starts from the schedule in the last second in nanoseconds, zero if the tick rate is not limited.
+	 */
+	public long getJitter() {
+		return this.jitter;
+	}
+
+	/**
+	 * Restarts the schedule with the next frame, for example after the simulation was paused.
+	 */
+	public void reset() {
+		this.scheduleStart = 0;
+		this.measurementStart = 0;
+	}
+
+	/**
+	 * Starts an frame immediately without waiting, the schedule restarts with the next frame that is waited for.
+	 * The frame is counted for the achieved tick rate.
+	 */
+	public void skipFrame() {
+		this.scheduleStart = 0;
+		measureFrame(System.nanoTime(), false);
+	}
+
+	/**
+	 * Waits until the next frame is scheduled to start.
+	 *
+	 * @throws InterruptedException If the thread was interrupted while waiting, the schedule is not changed in this case
+	 */
+	public void awaitFrame() throws InterruptedException {
+		double tickRate = this.tickRate;
+		long frameStart;
+		if (tickRate > 0) {
+			if (this.scheduleStart == 0 || tickRate != this.scheduledRate) restartSchedule(System.nanoTime(), tickRate);
+			long scheduledTime = getScheduledTime(this.scheduleFrame);
+			long remaining = scheduledTime - System.nanoTime();
+			if (remaining < -(long) (MAX_BEHIND_FRAMES * 1000000000.0 / tickRate)) {
+				restartSchedule(System.nanoTime(), tickRate);
+				scheduledTime = this.scheduleStart;
+				remaining = 0;
+			}
+			boolean busySpin = this.busySpin;
+			while (remaining > 0) {
+				if (Thread.interrupted()) throw new InterruptedException();
+				if (!busySpin) {
+					LockSupport.parkNanos(remaining);
+				} else if (remaining > SPIN_THRESHOLD) {
+					LockSupport.parkNanos(remaining - SPIN_THRESHOLD);
+				} else {
+					Thread.onSpinWait();
+				}
+				remaining = scheduledTime - System.nanoTime();
+			}
+			frameStart = System.nanoTime();
+			this.scheduleFrame++;
+			this.measuredDeviation += frameStart - scheduledTime;
+		} else {
+			frameStart = System.nanoTime();
+		}
+		measureFrame(frameStart, tickRate > 0);
+	}
+
+	protected void restartSchedule(long time, double tickRate) {
+		this.scheduleStart = time;
+		this.scheduleFrame = 0;
+		this.scheduledRate = tickRate;
+	}
+
+	protected long getScheduledTime(long frame) {
+		return this.scheduleStart + (long) (frame * 1000000000.0 / this.scheduledRate);
+	}
+
+	protected void measureFrame(long frameStart, boolean scheduled) {
+		if (this.measurementStart == 0) {
+			this.measurementStart = frameStart;
+			this.measuredFrames = 0;
+			this.measuredDeviation = 0;
+			return;
+		}
+		this.measuredFrames++;
+		long measuredTime = frameStart - this.measurementStart;
+		if (measuredTime >= MEASUREMENT_TIME) {
+			this.achievedRate = this.measuredFrames * 1000000000.0 / measuredTime;
+			this.jitter = scheduled ? this.measuredDeviation / this.measuredFrames : 0;
+			this.measurementStart = frameStart;
+			this.measuredFrames = 0;
+			this.measuredDeviation = 0;
+		}
+	}
+
+}
@@ -0,0 +1,51 @@
+package de.m_marvin.logicsim.logic.simulator;
+
+/**
+ * Splits the numbers from zero to an fixed size into groups, used to find the nets or components that have to be handled together.
+ * Each group is represented by its smallest member, so the order of the members decides which one represents the group.
+ *
+ * @author Marvin K.
+ *
+ */
+public class UnionFind {
+
+	protected final int[] groups;
+
+	/**
+	 * Creates the groups with every member in its own group.
+	 */
+	public UnionFind(int size) {
+		this.groups = new int[size];
+		for (int i = 0; i < size; i++) this.groups[i] = i;
+	}
+
+	public int size() {
+		return this.groups.length;
+	}
+
+	/**
+	 * Returns the member representing the group of the given member.
+	 */
+	public int find(int i) {
+		int[] groups = this.groups;
+		while (groups[i] != i) {
+			groups[i] = groups[groups[i]];
+			i = groups[i];
+		}
+		return i;
+	}
+
+	/**
+	 * Merges the groups of both members.
+	 *
+	 * @return true if the members were in different groups before
+	 */
+	public boolean union(int a, int b) {
+		int groupA = find(a);
+		int groupB = find(b);
+		if (groupA == groupB) return false;
+		this.groups[Math.max(groupA, groupB)] = Math.min(groupA, groupB);
+		return true;
+	}
+
+}
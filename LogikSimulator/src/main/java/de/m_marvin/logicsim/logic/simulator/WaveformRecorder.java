@@ -0,0 +1,273 @@
+package de.m_marvin.logicsim.logic.simulator;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import de.m_marvin.logicsim.LogicSim;
+import de.m_marvin.logicsim.logic.Circuit;
+import de.m_marvin.logicsim.logic.nodes.Node;
+
+/**
+ * Writes the changes of the probed nets of an circuit into an Value Change Dump (VCD) file, which can be opened by the usual waveform viewers.
+ * The tick thread only compares the probed lanes and passes the changed ones trough an {@link SpscLongQueue} to an separate writer thread, so writing the file never blocks the simulation and no history is kept in memory.
+ * If the writer can not keep up and the queue is full, the changes of the tick are dropped and all values are written again with the next tick that fits into the queue.
+ * The time in the file is the number of recorded ticks multiplied with the simulated tick time, so it keeps counting if the circuit gets reset.
+ *
+ * @author Marvin K.
+ *
+ */
+public class WaveformRecorder {
+
+	public static final int DEFAULT_QUEUE_CAPACITY = 1 << 16;
+	/* Time the writer thread sleeps if the queue is empty */
+	public static final long WRITER_SLEEP = 1000000;
+
+	/* Layout of an entry: tick marker flag (1 bit), probe index (30 bits), bit index (31 bits), lane code (2 bits) */
+	protected static final long TICK_MARKER = Long.MIN_VALUE;
+	protected static final int PROBE_SHIFT = 33;
+	protected static final int BIT_SHIFT = 2;
+	protected static final char[] VCD_VALUES = { 'z', '0', '1', 'x' };
+
+	/**
+	 * An net marked for recording, the lanes starting at the lane tag are recorded as one signal.
+	 *
+	 * @param node An node connected to the net
+	 * @param laneTag The lane to record, or the first lane of an bus, "bus4" with width 4 records the lanes "bus4" to "bus7"
+	 * @param width The number of lanes recorded
+	 */
+	public static record Probe(Node node, String laneTag, int width) {
+
+		public String getName() {
+			return (node.getComponent().getLabel() + "_" + node.getLabel() + "_" + laneTag).replaceAll("[^A-Za-z0-9_]", "_");
+		}
+
+	}
+
+	protected final File file;
+	protected final Probe[] probes;
+	protected final int[][] laneIds;
+	protected final long tickDuration;
+	protected final SpscLongQueue queue;
+	protected final Thread writerThread;
+	protected volatile boolean closed;
+	protected volatile IOException error;
+
+	/* Only accessed by the tick thread */
+	protected long recordedTicks;
+	protected boolean resync = true;
+	protected int modificationCount;
+	protected volatile long droppedTicks;
+
+	/**
+	 * Creates the file and starts the writer thread.
+	 *
+	 * @param file The VCD file to write
+	 * @param circuit The circuit the probes belong to, only used to name the file scope
+	 * @param probes The probed nets, changes to the list after this call are not recorded
+	 * @param tickDuration The simulated time of one tick in nanoseconds
+	 * @param queueCapacity The maximum number of changes waiting for the writer thread
+	 */
+	public WaveformRecorder(File file, Circuit circuit, List<Probe> probes, long tickDuration, int queueCapacity) {
+		this.file = file;
+		this.probes = probes.toArray(new Probe[probes.size()]);
+		this.tickDuration = tickDuration;
+
+		LaneTable lanes = circuit.getLaneTable();
+		this.laneIds = new int[this.probes.length][];
+		int laneCount = 0;
+		for (int i = 0; i < this.probes.length; i++) {
+			Probe probe = this.probes[i];
+			this.laneIds[i] = new int[Math.max(probe.width(), 1)];
+			if (this.laneIds[i].length == 1) {
+				this.laneIds[i][0] = lanes.intern(probe.laneTag());
+			} else {
+				String[] laneParts = LaneTable.splitLane(probe.laneTag());
+				int bitOffset = 0;
+				try {
+					if (laneParts.length > 1) bitOffset = Integer.parseInt(laneParts[1]);
+				} catch (NumberFormatException e) {}
+				for (int bit = 0; bit < this.laneIds[i].length; bit++) this.laneIds[i][bit] = lanes.intern(laneParts[0], bitOffset + bit);
+			}
+			laneCount += this.laneIds[i].length;
+		}
+		// An tick writing all values again has to fit into the queue, otherwise it would be dropped every time
+		this.queue = new SpscLongQueue(Math.max(queueCapacity, (laneCount + 1) * 2));
+
+		String scope = circuit.getCircuitFile() != null ? circuit.getCircuitFile().getName().replaceAll("\\.[^.]*$", "").replaceAll("[^A-Za-z0-9_]", "_") : "circuit";
+		this.writerThread = new Thread(() -> writeFile(scope), "waveform-writer");
+		this.writerThread.setDaemon(true);
+		this.writerThread.start();
+	}
+
+	public File getFile() {
+		return this.file;
+	}
+
+	public List<Probe> getProbes() {
+		return List.of(this.probes);
+	}
+
+	/**
+	 * Returns the number of ticks whose changes were dropped because the queue was full.
+	 */
+	public long getDroppedTicks() {
+		return this.droppedTicks;
+	}
+
+	/**
+	 * Returns the error that stopped the writer thread, or null if no error occurred.
+	 */
+	public IOException getError() {
+		return this.error;
+	}
+
+	public boolean isClosed() {
+		return this.closed;
+	}
+
+	/**
+	 * Passes the changed lanes of the probed nets to the writer thread, has to be called after the new lane states were evaluated but before they get committed.
+	 * Does not lock and does not allocate any memory.
+	 *
+	 * @param circuit The circuit the probes belong to
+	 */
+	public void recordTick(Circuit circuit) {
+		if (this.closed) return;
+		if (circuit.getModificationCount() != this.modificationCount) {
+			// The nets were rebuild, the committed states of the last tick can belong to an other net
+			this.modificationCount = circuit.getModificationCount();
+			this.resync = true;
+		}
+		boolean complete = this.queue.offer(TICK_MARKER | this.recordedTicks++);
+		for (int probe = 0; probe < this.probes.length && complete; probe++) {
+			int net = this.probes[probe].node().getNetId();
+			LaneStateMap valuesSec = net >= 0 ? circuit.getNetValuesSec(net) : null;
+			LaneStateMap valuesPri = net >= 0 ? circuit.getNetValuesPri(net) : null;
+			int[] lanes = this.laneIds[probe];
+			for (int bit = 0; bit < lanes.length; bit++) {
+				int oldCode = valuesSec != null ? valuesSec.getLaneCode(lanes[bit]) : 0;
+				int newCode = valuesPri != null ? valuesPri.getLaneCode(lanes[bit]) : 0;
+				if (oldCode == newCode && !this.resync) continue;
+				if (!this.queue.offer(((long) probe << PROBE_SHIFT) | ((long) bit << BIT_SHIFT) | newCode)) {
+					complete = false;
+					break;
+				}
+			}
+		}
+		if (complete) {
+			this.queue.publish();
+			this.resync = false;
+		} else {
+			this.queue.rollback();
+			this.resync = true;
+			this.droppedTicks++;
+		}
+	}
+
+	/**
+	 * Stops recording, waits until the writer thread has written all remaining changes and closes the file.
+	 */
+	public void close() {
+		this.closed = true;
+		LockSupport.unpark(this.writerThread);
+		try {
+			this.writerThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (this.droppedTicks > 0) System.err.println("Waveform recording could not keep up, " + this.droppedTicks + " ticks of " + this.file + " were not written!");
+	}
+
+	protected static String makeIdentifier(int index) {
+		// VCD identifiers consist of the printable ASCII characters
+		StringBuilder identifier = new StringBuilder();
+		do {
+			identifier.append((char) ('!' + index % 94));
+			index /= 94;
+		} while (index > 0);
+		return identifier.toString();
+	}
+
+	protected void writeFile(String scope) {
+		String[] identifiers = new String[this.probes.length];
+		int[][] codes = new int[this.probes.length][];
+		boolean[] changed = new boolean[this.probes.length];
+		long[] entries = new long[4096];
+		long tick = -1;
+		boolean tickChanged = false;
+
+		try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(this.file), StandardCharsets.US_ASCII), 1 << 16)) {
+			writer.write("$date\n\t" + new Date() + "\n$end\n");
+			writer.write("$version\n\tLogicSim " + LogicSim.getVersion() + "\n$end\n");
+			writer.write("$timescale 1ns $end\n");
+			writer.write("$scope module " + scope + " $end\n");
+			for (int i = 0; i < this.probes.length; i++) {
+				identifiers[i] = makeIdentifier(i);
+				codes[i] = new int[this.laneIds[i].length];
+				writer.write("$var wire " + codes[i].length + " " + identifiers[i] + " " + this.probes[i].getName() + (codes[i].length > 1 ? " [" + (codes[i].length - 1) + ":0]" : "") + " $end\n");
+			}
+			writer.write("$upscope $end\n$enddefinitions $end\n");
+
+			while (true) {
+				// Read the flag before taking the changes, everything published before the recorder got closed is written
+				boolean closing = this.closed;
+				int count = this.queue.drain(entries);
+				if (count == 0) {
+					if (closing) break;
+					LockSupport.parkNanos(WRITER_SLEEP);
+					continue;
+				}
+				for (int i = 0; i < count; i++) {
+					long entry = entries[i];
+					if (entry < 0) {
+						if (tickChanged) writeTick(writer, tick, identifiers, codes, changed);
+						tickChanged = false;
+						tick = entry & ~TICK_MARKER;
+					} else {
+						int probe = (int) (entry >>> PROBE_SHIFT);
+						int bit = (int) (entry >>> BIT_SHIFT) & 0x7FFFFFFF;
+						int code = (int) entry & 3;
+						codes[probe][bit] = code;
+						changed[probe] = true;
+						tickChanged = true;
+					}
+				}
+			}
+			if (tickChanged) writeTick(writer, tick, identifiers, codes, changed);
+		} catch (IOException e) {
+			System.err.println("Failed to write waveform file " + this.file + "!");
+			e.printStackTrace();
+			this.error = e;
+			this.closed = true;
+		}
+	}
+
+	protected void writeTick(Writer writer, long tick, String[] identifiers, int[][] codes, boolean[] changed) throws IOException {
+		writer.write('#');
+		writer.write(Long.toString(tick * this.tickDuration));
+		writer.write('\n');
+		for (int probe = 0; probe < codes.length; probe++) {
+			if (!changed[probe]) continue;
+			changed[probe] = false;
+			int[] probeCodes = codes[probe];
+			if (probeCodes.length == 1) {
+				writer.write(VCD_VALUES[probeCodes[0]]);
+			} else {
+				writer.write('b');
+				for (int bit = probeCodes.length - 1; bit >= 0; bit--) writer.write(VCD_VALUES[probeCodes[bit]]);
+				writer.write(' ');
+			}
+			writer.write(identifiers[probe]);
+			writer.write('\n');
+		}
+	}
+
+}
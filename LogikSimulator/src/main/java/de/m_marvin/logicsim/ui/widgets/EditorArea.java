@@ -40,6 +40,7 @@ import de.m_marvin.logicsim.logic.nodes.InputNode;
 import de.m_marvin.logicsim.logic.nodes.Node;
 import de.m_marvin.logicsim.logic.nodes.OutputNode;
 import de.m_marvin.logicsim.logic.nodes.PassivNode;
+import de.m_marvin.logicsim.logic.simulator.WaveformRecorder.Probe;
 import de.m_marvin.logicsim.ui.TextRenderer;
 import de.m_marvin.logicsim.util.CircuitSerializer;
 import de.m_marvin.logicsim.util.Registries.ComponentEntry;
@@ -311,6 +312,10 @@ public class EditorArea extends Composite implements MouseListener, MouseMoveLis
 						for (Node node : component.getAllNodes()) {
 							if (node.getVisualPosition().equals(mousePosition)) {
 								Vec2i location = Vec2i.fromVec(event.display.getCursorLocation());
+								if ((event.stateMask & SWT.SHIFT) > 0) {
+									toggleProbe(node, location);
+									return;
+								}
 								if (node.click(location)) return;
 							}
 						}
@@ -350,6 +355,22 @@ public class EditorArea extends Composite implements MouseListener, MouseMoveLis
 		
 	}
 
+	/**
+	 * Removes the probe from the node, or opens an dialog to probe the lanes of its network for waveform recording.
+	 */
+	public void toggleProbe(Node node, Vec2i location) {
+		if (this.circuit.getProbe(node) != null) {
+			this.circuit.removeProbe(node);
+			return;
+		}
+		String[] laneTag = { node.getLaneTag() };
+		InputDialog configDialog = new InputDialog(getShell());
+		configDialog.addConfig(new InputDialog.StringConfigField("editor.config.probe.lane", laneTag[0], tag -> laneTag[0] = tag));
+		configDialog.addConfig(new InputDialog.NumberConfigField("editor.config.probe.width", 1, 1, 64, width -> this.circuit.addProbe(new Probe(node, laneTag[0], width))));
+		configDialog.open();
+		configDialog.setLocation(location.x, location.y);
+	}
+	
 	@Override
 	public void mouseMove(MouseEvent event) {
 
@@ -515,6 +536,12 @@ public class EditorArea extends Composite implements MouseListener, MouseMoveLis
 				
 			}
 			
+			swapColor(0, 1, 1, 1);
+			for (Probe probe : circuit.getProbes()) {
+				Vec2i position = probe.node().getVisualPosition();
+				drawCircle(1, position.x, position.y, 8);
+			}
+			
 			if (warningSupplier != null) {
 				
 				if (System.currentTimeMillis() - animationTimer > 1000) {
@@ -7,10 +7,13 @@ import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Group;
 import org.eclipse.swt.widgets.Label;
 import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Spinner;
 
 import de.m_marvin.logicsim.LogicSim;
 import de.m_marvin.logicsim.logic.Circuit;
 import de.m_marvin.logicsim.logic.Circuit.ShortCircuitType;
+import de.m_marvin.logicsim.logic.Circuit.UpdateMode;
+import de.m_marvin.logicsim.logic.simulator.CircuitProcessor;
 import de.m_marvin.logicsim.ui.Translator;
 
 public class CircuitOptions {
@@ -45,6 +48,34 @@ public class CircuitOptions {
 		Label informationLabel = new Label(shell, SWT.NONE);
 		informationLabel.setText(Translator.translate("circuit_options.description"));
 		
+		Group updateMode = new Group(shell, SWT.NONE);
+		updateMode.setText(Translator.translate("circuit_options.update_mode.title"));
+		for (int i = 0; i < UpdateMode.values().length; i++) {
+			UpdateMode mode = UpdateMode.values()[i];
+			Button optButton = new Button(updateMode, SWT.RADIO);
+			optButton.setBounds(10, 15 + i * 20, 140, 20);
+			optButton.setText(Translator.translate("circuit_options.update_mode." + mode.toString().toLowerCase()));
+			optButton.addListener(SWT.Selection, (e) -> circuit.setUpdateMode(mode));
+			if (circuit.getUpdateMode() == mode) optButton.setSelection(true);
+		}
+		updateMode.pack();
+		
+		Label updateModeLabel = new Label(shell, SWT.NONE);
+		updateModeLabel.setText(Translator.translate("circuit_options.update_mode.description"));
+		
+		Group partitions = new Group(shell, SWT.NONE);
+		partitions.setText(Translator.translate("circuit_options.partitions.title"));
+		Spinner partitionField = new Spinner(partitions, SWT.BORDER);
+		partitionField.setBounds(10, 15, 80, 20);
+		partitionField.setMinimum(Circuit.AUTOMATIC_PARTITIONING);
+		partitionField.setMaximum(CircuitProcessor.getAvailableCores() * 4);
+		partitionField.setSelection(circuit.getPartitionCount());
+		partitionField.addListener(SWT.Selection, (e) -> circuit.setPartitionCount(partitionField.getSelection()));
+		partitions.pack();
+		
+		Label partitionsLabel = new Label(shell, SWT.NONE);
+		partitionsLabel.setText(Translator.translate("circuit_options.partitions.description"));
+		
 		this.shell.pack();
 		this.shell.open();
 	}
@@ -27,7 +27,9 @@ import org.eclipse.swt.widgets.TreeItem;
 
 import de.m_marvin.logicsim.LogicSim;
 import de.m_marvin.logicsim.logic.Circuit;
+import de.m_marvin.logicsim.logic.simulator.LatencyHistogram;
 import de.m_marvin.logicsim.logic.simulator.SimulationMonitor;
+import de.m_marvin.logicsim.logic.simulator.SimulationMonitor.CircuitPartitionInfo;
 import de.m_marvin.logicsim.logic.simulator.SimulationMonitor.CircuitProcessInfo;
 import de.m_marvin.logicsim.ui.Translator;
 
@@ -44,7 +46,10 @@ public class CircuitViewer {
 	protected ProgressBar processorLoadBar;
 	protected Label processorLoadLabel;
 	protected Label executionTimeLabel;
+	protected Label latencyLabel;
+	protected Label tickCountLabel;
 	protected Label parentProcessLabel;
+	protected Label partitionsLabel;
 	protected Button openInEditorButton;
 	protected long lastViewUpdate;
 	
@@ -83,12 +88,30 @@ public class CircuitViewer {
 		this.executionTimeLabel = new Label(processGroup, SWT.LEFT | SWT.HORIZONTAL);
 		this.executionTimeLabel.setLayoutData(new GridData(100, 20));
 		
+		Label latencyTitle = new Label(processGroup, SWT.LEFT | SWT.HORIZONTAL);
+		latencyTitle.setText(Translator.translate("circuit_viewer.process_group.latency.title"));
+		
+		this.latencyLabel = new Label(processGroup, SWT.LEFT | SWT.HORIZONTAL);
+		this.latencyLabel.setLayoutData(new GridData(100, 20));
+		
+		Label tickCountTitle = new Label(processGroup, SWT.LEFT | SWT.HORIZONTAL);
+		tickCountTitle.setText(Translator.translate("circuit_viewer.process_group.tick_count.title"));
+		
+		this.tickCountLabel = new Label(processGroup, SWT.LEFT | SWT.HORIZONTAL);
+		this.tickCountLabel.setLayoutData(new GridData(100, 20));
+		
 		Label parentProcessTitle = new Label(processGroup, SWT.LEFT | SWT.HORIZONTAL);
 		parentProcessTitle.setText(Translator.translate("circuit_viewer.process_group.parent_process.title"));
 		
 		this.parentProcessLabel = new Label(processGroup, SWT.LEFT | SWT.HORIZONTAL);
 		this.parentProcessLabel.setLayoutData(new GridData(100, 20));
 		
+		Label partitionsTitle = new Label(processGroup, SWT.LEFT | SWT.HORIZONTAL);
+		partitionsTitle.setText(Translator.translate("circuit_viewer.process_group.partitions.title"));
+		
+		this.partitionsLabel = new Label(processGroup, SWT.LEFT | SWT.HORIZONTAL);
+		this.partitionsLabel.setLayoutData(new GridData(100, 20));
+		
 		this.openInEditorButton = new Button(processGroup, SWT.PUSH);
 		this.openInEditorButton.setText(Translator.translate("circuit_viewer.process_group.open_in_editor"));
 		this.openInEditorButton.addListener(SWT.Selection, (e) -> openInEditor());
@@ -124,7 +147,8 @@ public class CircuitViewer {
 		
 		CircuitProcessInfo process = getSelectedProcess();
 		double processLoad = monitor.getCPULoad();
-		int executionTime = (int) (process != null ? process.executionTime().get() : 0);
+		long executionTime = process != null ? process.executionTime().get() : 0;
+		LatencyHistogram latency = process != null ? process.latency() : null;
 		String parentProcess = process != null ? process.parentCircuit() != null ? process.parentCircuit().getCircuitFile() != null ? process.parentCircuit().getCircuitFile().getName() : Translator.translate("circuit_viewer.process_group.parent_process.no_name") : Translator.translate("circuit_viewer.process_group.parent_process.main_process") : Translator.translate("circuit_viewer.process_group.parent_process.not_available");
 		
 		this.processorLoadBar.setSelection((int) (processLoad * 100));
@@ -132,11 +156,29 @@ public class CircuitViewer {
 		if (this.processorLoadBar.getState() == SWT.ERROR != criticalLoad) this.processorLoadBar.setState(criticalLoad ? SWT.ERROR : SWT.NORMAL);
 		this.processorLoadLabel.setText(Translator.translate("circuit_viewer.process_group.process_load", (int) (processLoad * 100)));
 		this.processorLoadLabel.pack();
-		this.executionTimeLabel.setText(Translator.translate("circuit_viewer.process_group.execution_time", executionTime));
+		this.executionTimeLabel.setText(Translator.translate("circuit_viewer.process_group.execution_time", String.format("%.2f", executionTime / 1000000.0)));
 		this.executionTimeLabel.pack();
+		if (latency != null) {
+			this.latencyLabel.setText(Translator.translate("circuit_viewer.process_group.latency", latency.getPercentile(0.5) / 1000, latency.getPercentile(0.99) / 1000, latency.getMax() / 1000));
+			this.tickCountLabel.setText(Translator.translate("circuit_viewer.process_group.tick_count", latency.getCount(), latency.getTotalTime() / 1000000));
+		} else {
+			this.latencyLabel.setText(Translator.translate("circuit_viewer.process_group.parent_process.not_available"));
+			this.tickCountLabel.setText(Translator.translate("circuit_viewer.process_group.parent_process.not_available"));
+		}
+		this.latencyLabel.pack();
+		this.tickCountLabel.pack();
 		this.parentProcessLabel.setText(Translator.translate("circuit_viewer.process_group.parent_process", parentProcess));
 		this.parentProcessLabel.pack();
 		
+		List<CircuitPartitionInfo> partitions = process != null ? process.partitions().get() : List.of();
+		if (partitions.isEmpty()) {
+			this.partitionsLabel.setText(Translator.translate("circuit_viewer.process_group.partitions.none"));
+		} else {
+			long slowestPartition = partitions.stream().mapToLong(partition -> partition.evaluationTime().get() + partition.commitTime().get()).max().getAsLong();
+			this.partitionsLabel.setText(Translator.translate("circuit_viewer.process_group.partitions", partitions.size(), slowestPartition / 1000));
+		}
+		this.partitionsLabel.pack();
+		
 	}
 	
 	public void updateUI() {
@@ -212,7 +254,7 @@ public class CircuitViewer {
 		CircuitProcessInfo process = (CircuitProcessInfo) item.getData();
 		
 		String name = process.circuit().getCircuitFile() != null ? process.circuit().getCircuitFile().getName() : "unknown";
-		String executionTime = Long.toString(process.executionTime().get());
+		String latency = Long.toString(process.latency().getPercentile(0.99) / 1000);
 		
 		boolean active = process.isActive();
 		boolean running = process.isExecuting();
@@ -220,7 +262,7 @@ public class CircuitViewer {
 		
 		String activity = Translator.translate("circuit_viewer.tree_view.circuit_description." + (active ? (running ? "active" : "inactive") : ".error"));
 		
-		item.setText(Translator.translate("circuit_viewer.tree_view.circuit_description", name, executionTime, activity));
+		item.setText(Translator.translate("circuit_viewer.tree_view.circuit_description", name, latency, activity));
 		if (item.getImage() != null) item.getImage().dispose();
 		item.setImage(decodeImage(warnings ? ERROR_ICON_B64 : (running ? RUNNING_ICON_B64 : SUSPENDED_ICON_B64)));
 	}
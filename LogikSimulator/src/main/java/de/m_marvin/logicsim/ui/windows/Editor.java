@@ -52,11 +52,14 @@ import de.m_marvin.logicsim.logic.Circuit;
 import de.m_marvin.logicsim.logic.Component;
 import de.m_marvin.logicsim.logic.parts.SubCircuitComponent;
 import de.m_marvin.logicsim.logic.simulator.CircuitProcessor;
+import de.m_marvin.logicsim.logic.simulator.NetHistory;
 import de.m_marvin.logicsim.logic.simulator.SimulationMonitor;
 import de.m_marvin.logicsim.logic.simulator.SimulationMonitor.CircuitProcessInfo;
 import de.m_marvin.logicsim.logic.simulator.SimulationMonitor.CircuitProcessorInfo;
+import de.m_marvin.logicsim.logic.simulator.WaveformRecorder;
 import de.m_marvin.logicsim.ui.Translator;
 import de.m_marvin.logicsim.ui.widgets.EditorArea;
+import de.m_marvin.logicsim.ui.widgets.InputDialog;
 import de.m_marvin.logicsim.ui.widgets.ValueHistoryGraph;
 import de.m_marvin.logicsim.util.CircuitSerializer;
 import de.m_marvin.logicsim.util.Registries;
@@ -88,6 +91,9 @@ public class Editor {
 	protected Label tpsLabel;
 	protected Label executionTimeLabel;
 	protected Label simulationStatusLabel;
+	protected Label historyLabel;
+	protected ToolItem recordHistory;
+	protected ToolItem recordWaveform;
 	protected boolean simulationStatus;
 	protected Spinner tpsLimitField;
 	
@@ -211,6 +217,25 @@ public class Editor {
 		stopSimulation.setImage(decodeImage(STOP_SIMULATION_ICON_B64));
 		stopSimulation.setText(Translator.translate("editor.tool.stop_simulation"));
 		stopSimulation.addListener(SWT.Selection, (e) -> LogicSim.getInstance().getCircuitProcessor().stop());
+		ToolItem fastForward = new ToolItem(this.toolBar, SWT.PUSH);
+		fastForward.setText(Translator.translate("editor.tool.fast_forward"));
+		fastForward.addListener(SWT.Selection, (e) -> {
+			InputDialog configDialog = new InputDialog(this.shell);
+			configDialog.addConfig(new InputDialog.NumberConfigField("editor.config.fast_forward.time", 1000, 1, Integer.MAX_VALUE, time -> LogicSim.getInstance().getCircuitProcessor().fastForward(time * 1000000L)));
+			configDialog.open();
+		});
+		this.recordHistory = new ToolItem(this.toolBar, SWT.CHECK);
+		this.recordHistory.setText(Translator.translate("editor.tool.record_history"));
+		this.recordHistory.addListener(SWT.Selection, (e) -> LogicSim.getInstance().getCircuitProcessor().setRecordHistory(getCurrentCurcit(), this.recordHistory.getSelection()));
+		ToolItem stepBack = new ToolItem(this.toolBar, SWT.PUSH);
+		stepBack.setText(Translator.translate("editor.tool.step_back"));
+		stepBack.addListener(SWT.Selection, (e) -> seekHistory(-1));
+		ToolItem stepForward = new ToolItem(this.toolBar, SWT.PUSH);
+		stepForward.setText(Translator.translate("editor.tool.step_forward"));
+		stepForward.addListener(SWT.Selection, (e) -> seekHistory(1));
+		this.recordWaveform = new ToolItem(this.toolBar, SWT.CHECK);
+		this.recordWaveform.setText(Translator.translate("editor.tool.record_waveform"));
+		this.recordWaveform.addListener(SWT.Selection, (e) -> recordWaveform(this.recordWaveform.getSelection()));
 		
 		this.partSelector = new Tree(groupLeft, SWT.SINGLE);
 		this.partSelector.setLayoutData(new BorderData(SWT.CENTER));
@@ -290,6 +315,10 @@ public class Editor {
 		font.setHeight(12);
 		font.setStyle(SWT.BOLD);
 		this.simulationStatusLabel.setFont(new Font(display, font));
+		
+		this.historyLabel = new Label(tpsStatus, SWT.NONE);
+		this.historyLabel.setBounds(5, 100, 150, 16);
+		this.historyLabel.setText("");
 		this.simulationStatus = !LogicSim.getInstance().getSimulationMonitor().isProcessorActive(); // Will cause the update method to change the text
 		
 		// Editor area
@@ -332,11 +361,12 @@ public class Editor {
 		Optional<CircuitProcessInfo> processInfo = monitor.getProcessForCircuit(this.editorArea.getCircuit());
 		Optional<CircuitProcessorInfo> processorInfo = monitor.getProcessorForCircuit(this.editorArea.getCircuit());
 		
-		int executionTime = processInfo.isPresent() ? processInfo.get().executionTime().get() : 0;
+		long executionTime = processInfo.isPresent() ? processInfo.get().executionTime().get() : 0;
 		int currentTps = processorInfo.isPresent() ? processorInfo.get().tps().get() : 0;
+		long jitter = processorInfo.isPresent() ? processorInfo.get().jitter().get() : 0;
 		
-		this.executionTimeLabel.setText(Translator.translate("editor.simulation_view.execution_time", executionTime));
-		this.tpsLabel.setText(Translator.translate("editor.simulation_view.update_rate", currentTps));
+		this.executionTimeLabel.setText(Translator.translate("editor.simulation_view.execution_time", String.format("%.2f", executionTime / 1000000.0)));
+		this.tpsLabel.setText(Translator.translate("editor.simulation_view.update_rate", currentTps, jitter / 1000));
 		
 		int tpsLimit = monitor.getTPSLimit();
 		String input = this.tpsLimitField.getText();
@@ -363,6 +393,45 @@ public class Editor {
 			this.simulationStatusLabel.setForeground(this.shell.getDisplay().getSystemColor(simulationActive ? SWT.COLOR_GREEN : SWT.COLOR_RED));
 		}
 		
+		WaveformRecorder waveformRecorder = this.editorArea.getCircuit().getWaveformRecorder();
+		this.recordWaveform.setSelection(waveformRecorder != null && !waveformRecorder.isClosed());
+		
+		NetHistory history = this.editorArea.getCircuit().getHistory();
+		this.recordHistory.setSelection(history != null);
+		this.historyLabel.setText(history != null && history.getNewestTick() >= 0 ? Translator.translate("editor.simulation_view.history", history.getViewedTick(), history.getOldestTick(), history.getNewestTick()) : "");
+		
+	}
+	
+	public void seekHistory(int ticks) {
+		Circuit circuit = getCurrentCurcit();
+		NetHistory history = circuit.getHistory();
+		if (history == null || LogicSim.getInstance().getCircuitProcessor().isExecuting(circuit)) return;
+		history.seek(circuit, history.getViewedTick() + ticks);
+	}
+	
+	public void recordWaveform(boolean record) {
+		CircuitProcessor processor = LogicSim.getInstance().getCircuitProcessor();
+		if (!record) {
+			processor.stopWaveformRecording(getCurrentCurcit());
+			return;
+		}
+		if (getCurrentCurcit().getProbes().isEmpty()) {
+			MessageBox msg = new MessageBox(shell, SWT.ICON_WARNING);
+			msg.setMessage(Translator.translate("editor.tool.record_waveform.no_probes"));
+			msg.setText(Translator.translate("editor.window.warning"));
+			msg.open();
+			this.recordWaveform.setSelection(false);
+			return;
+		}
+		FileDialog fileDialog = new FileDialog(shell, SWT.SAVE);
+		fileDialog.setFilterExtensions(new String[] {"*." + LogicSim.WAVEFORM_FILE_EXTENSION});
+		fileDialog.setOverwrite(true);
+		String path = fileDialog.open();
+		if (path == null) {
+			this.recordWaveform.setSelection(false);
+			return;
+		}
+		processor.startWaveformRecording(getCurrentCurcit(), new File(path));
 	}
 
 	public void updateGraphics() {
@@ -402,7 +471,7 @@ public class Editor {
 	public void saveCircuit(boolean saveAs) {
 		if (saveAs || this.editorArea.getCircuit().getCircuitFile() == null || !this.editorArea.getCircuit().getCircuitFile().exists()) {
 			FileDialog fileDialog = new FileDialog(shell, SWT.SAVE);
-			fileDialog.setFilterExtensions(new String[] {"*." + LogicSim.CIRCUIT_FILE_EXTENSION});
+			fileDialog.setFilterExtensions(new String[] {"*." + LogicSim.CIRCUIT_FILE_EXTENSION, "*." + LogicSim.BINARY_CIRCUIT_FILE_EXTENSION});
 			String path = fileDialog.open();
 			if (path != null) {
 				File filePath = new File(path);
@@ -435,7 +504,7 @@ public class Editor {
 	
 	public void loadCircuit(boolean newWindow) {
 		FileDialog fileDialog = new FileDialog(shell, SWT.OPEN);
-		fileDialog.setFilterExtensions(new String[] {"*." + LogicSim.CIRCUIT_FILE_EXTENSION});
+		fileDialog.setFilterExtensions(new String[] {"*." + LogicSim.CIRCUIT_FILE_EXTENSION + ";*." + LogicSim.BINARY_CIRCUIT_FILE_EXTENSION});
 		String path = fileDialog.open();
 		if (path != null) {
 			File filePath = new File(path);
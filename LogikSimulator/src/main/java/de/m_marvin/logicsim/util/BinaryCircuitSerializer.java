@@ -0,0 +1,481 @@
+package de.m_marvin.logicsim.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import de.m_marvin.commandlineparser.CommandLineParser;
+import de.m_marvin.logicsim.LogicSim;
+import de.m_marvin.logicsim.logic.Circuit;
+import de.m_marvin.logicsim.logic.Component;
+import de.m_marvin.logicsim.ui.windows.Editor;
+import de.m_marvin.logicsim.util.CircuitSerializer.LoadStatistics;
+
+/**
+ * Reads and writes circuits in the binary circuit format (.lcb), an compact alternative to the JSON based .lcf files.
+ * The binary file contains exactly the same information as the JSON file and can be converted in both directions without loss.
+ *
+ * Layout of the file (all numbers big endian, the offsets in the header are file positions, the payload and block offsets are relative to their sections):
+ * <pre>
+ * header           magic "LCFB", version (short), flags (short), string table offset/count, component table offset/count,
+ *                  circuit settings offset/length, payload offset, block offset (each int)
+ * string table     all strings of the file (class names, keys, labels, lane tags ...), each as length (int) + UTF-8 bytes
+ * component table  one fixed width record per component: class name (string index), x, y, payload offset/length, flags (each int)
+ * payloads         the remaining JSON entries of the circuit settings and of each component, as tagged values
+ * blocks           raw data blocks, every JSON array that only contains byte values (for example the data of memory components)
+ * </pre>
+ * The raw data blocks are aligned to 8 bytes, so the file could also be memory mapped, and are passed to the components as slices of the read file.
+ * Components that can handle raw data receive them through {@link Component#deserializeRawData(String, ByteBuffer)} instead of an JSON array.
+ *
+ * @author Marvin K.
+ *
+ */
+public class BinaryCircuitSerializer {
+
+	public static final int MAGIC = 0x4C434642; // "LCFB"
+	public static final short FORMAT_VERSION = 1;
+	public static final int HEADER_SIZE = 40;
+	public static final int COMPONENT_RECORD_SIZE = 24;
+	public static final int BLOCK_ALIGNMENT = 8;
+	/* Shorter byte arrays are stored inline, since the block reference is larger than the data itself */
+	public static final int MIN_BLOCK_SIZE = 16;
+
+	public static final int RECORD_FLAG_POSITION = 1;
+
+	public static final byte TAG_NULL = 0;
+	public static final byte TAG_FALSE = 1;
+	public static final byte TAG_TRUE = 2;
+	public static final byte TAG_INT = 3;
+	public static final byte TAG_LONG = 4;
+	public static final byte TAG_DOUBLE = 5;
+	public static final byte TAG_STRING = 6;
+	public static final byte TAG_ARRAY = 7;
+	public static final byte TAG_OBJECT = 8;
+	public static final byte TAG_BLOCK = 9;
+
+	public static void main(String... args) {
+
+		CommandLineParser parser = new CommandLineParser();
+		parser.addOption("input", "");
+		parser.addOption("output", "");
+		parser.parseInput(args);
+
+		File input = new File(parser.getOption("input"));
+		File output = new File(parser.getOption("output"));
+		if (!input.isFile() || parser.getOption("output").isEmpty()) {
+			System.err.println("Usage: --input <file.lcf|file.lcb> --output <file.lcb|file.lcf>");
+			System.exit(1);
+		}
+
+		try {
+			if (isBinaryCircuitFile(input)) {
+				System.out.println("Convert binary circuit '" + input + "' to JSON '" + output + "' ...");
+				convertToJson(input, output);
+			} else {
+				System.out.println("Convert JSON circuit '" + input + "' to binary '" + output + "' ...");
+				convertToBinary(input, output);
+			}
+		} catch (IOException e) {
+			System.err.println("Failed to convert circuit '" + input + "'!");
+			e.printStackTrace();
+			System.exit(1);
+		}
+
+	}
+
+	/**
+	 * Checks the magic number at the start of the file.
+	 */
+	public static boolean isBinaryCircuitFile(File file) {
+		if (!file.isFile() || file.length() < HEADER_SIZE) return false;
+		try (InputStream stream = new FileInputStream(file)) {
+			byte[] magic = stream.readNBytes(4);
+			return magic.length == 4 && ByteBuffer.wrap(magic).getInt() == MAGIC;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	public static void convertToBinary(File jsonFile, File binaryFile) throws IOException {
+		JsonObject json;
+		try (InputStream stream = new FileInputStream(jsonFile)) {
+			json = CircuitSerializer.readCircuitJson(stream);
+		}
+		writeBinary(json, binaryFile);
+	}
+
+	public static void convertToJson(File binaryFile, File jsonFile) throws IOException {
+		JsonObject json = readBinary(binaryFile);
+		try (FileOutputStream stream = new FileOutputStream(jsonFile)) {
+			stream.write(CircuitSerializer.GSON.toJson(json).getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	public static void saveCircuit(Circuit circuit, File file) throws IOException {
+		writeBinary(CircuitSerializer.serializeCircuit(circuit), file);
+	}
+
+	/**
+	 * Loads the circuit directly from the binary file, without building an JSON tree of the whole circuit first.
+	 */
+	public static LoadStatistics deserializeCircuit(Circuit circuit, File file) throws IOException {
+		long loadStart = System.nanoTime();
+		BinaryCircuitReader reader = new BinaryCircuitReader(file);
+
+		CircuitSerializer.deserializeCircuitSettings(circuit, reader.readSettings());
+
+		List<Component> componentList = new ArrayList<>(reader.getComponentCount());
+		Map<String, ByteBuffer> rawData = new LinkedHashMap<>();
+		for (int i = 0; i < reader.getComponentCount(); i++) {
+			String componentClassName = reader.getComponentClassName(i);
+			JsonObject componentJson = null;
+			try {
+				rawData.clear();
+				componentJson = reader.readComponent(i, rawData);
+				componentList.add(CircuitSerializer.deserializeComponent(circuit, componentClassName, componentJson, rawData));
+			} catch (Exception e) {
+				System.err.println("Failed to load component '" + componentClassName + "' " + componentJson);
+				Editor parentWindow = LogicSim.getInstance() != null ? LogicSim.getInstance().getLastInteractedEditor() : null;
+				if (parentWindow != null) Editor.showErrorInfo(parentWindow.getShell(), "editor.window.error.parse_file", e);
+				e.printStackTrace();
+			}
+		}
+
+		circuit.connectAll(componentList);
+
+		return new LoadStatistics(reader.buffer.capacity(), componentList.size(), System.nanoTime() - loadStart);
+	}
+
+	/**
+	 * Reads the whole binary file into the same JSON structure as produced by {@link CircuitSerializer#serializeCircuit(Circuit)}.
+	 */
+	public static JsonObject readBinary(File file) throws IOException {
+		BinaryCircuitReader reader = new BinaryCircuitReader(file);
+		JsonObject json = reader.readSettings();
+		JsonArray components = new JsonArray(reader.getComponentCount());
+		for (int i = 0; i < reader.getComponentCount(); i++) {
+			JsonObject componentJson = new JsonObject();
+			componentJson.addProperty("id", reader.getComponentClassName(i));
+			reader.readComponent(i, null).entrySet().forEach(entry -> componentJson.add(entry.getKey(), entry.getValue()));
+			components.add(componentJson);
+		}
+		json.add("components", components);
+		return json;
+	}
+
+	public static void writeBinary(JsonObject circuitJson, File file) throws IOException {
+
+		BinaryCircuitWriter writer = new BinaryCircuitWriter();
+
+		JsonObject settings = new JsonObject();
+		circuitJson.entrySet().forEach(entry -> {
+			if (!entry.getKey().equals("components")) settings.add(entry.getKey(), entry.getValue());
+		});
+		int settingsLength = writer.writePayload(settings);
+
+		JsonArray components = circuitJson.has("components") ? circuitJson.get("components").getAsJsonArray() : new JsonArray();
+		ByteBuffer records = ByteBuffer.allocate(components.size() * COMPONENT_RECORD_SIZE);
+		for (JsonElement element : components) {
+			JsonObject componentJson = element.getAsJsonObject();
+			JsonObject payload = new JsonObject();
+			int flags = 0;
+			int x = 0;
+			int y = 0;
+			if (isInt(componentJson.get("x")) && isInt(componentJson.get("y"))) {
+				flags |= RECORD_FLAG_POSITION;
+				x = componentJson.get("x").getAsInt();
+				y = componentJson.get("y").getAsInt();
+			}
+			for (Map.Entry<String, JsonElement> entry : componentJson.entrySet()) {
+				if (entry.getKey().equals("id")) continue;
+				if ((flags & RECORD_FLAG_POSITION) != 0 && (entry.getKey().equals("x") || entry.getKey().equals("y"))) continue;
+				payload.add(entry.getKey(), entry.getValue());
+			}
+			int payloadOffset = writer.payload.size();
+			int payloadLength = writer.writePayload(payload);
+			records.putInt(writer.stringIndex(componentJson.get("id").getAsString()));
+			records.putInt(x);
+			records.putInt(y);
+			records.putInt(payloadOffset);
+			records.putInt(payloadLength);
+			records.putInt(flags);
+		}
+
+		ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+		DataOutputStream stringTable = new DataOutputStream(stringBytes);
+		for (String string : writer.strings) {
+			byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+			stringTable.writeInt(bytes.length);
+			stringTable.write(bytes);
+		}
+
+		int stringTableOffset = HEADER_SIZE;
+		int componentTableOffset = stringTableOffset + stringBytes.size();
+		int payloadOffset = componentTableOffset + records.capacity();
+		int blockOffset = align(payloadOffset + writer.payload.size());
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC);
+		header.putShort(FORMAT_VERSION);
+		header.putShort((short) 0);
+		header.putInt(stringTableOffset);
+		header.putInt(writer.strings.size());
+		header.putInt(componentTableOffset);
+		header.putInt(components.size());
+		header.putInt(payloadOffset);
+		header.putInt(settingsLength);
+		header.putInt(payloadOffset);
+		header.putInt(blockOffset);
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			channel.write(header.flip());
+			channel.write(ByteBuffer.wrap(stringBytes.toByteArray()));
+			channel.write(records.flip());
+			channel.write(ByteBuffer.wrap(writer.payload.toByteArray()));
+			channel.write(ByteBuffer.allocate(blockOffset - payloadOffset - writer.payload.size()));
+			channel.write(ByteBuffer.wrap(writer.blocks.toByteArray()));
+		}
+
+	}
+
+	protected static int align(int offset) {
+		return (offset + BLOCK_ALIGNMENT - 1) / BLOCK_ALIGNMENT * BLOCK_ALIGNMENT;
+	}
+
+	protected static boolean isInt(JsonElement element) {
+		if (element == null || !element.isJsonPrimitive() || !element.getAsJsonPrimitive().isNumber()) return false;
+		String number = element.getAsString();
+		if (number.contains(".") || number.contains("e") || number.contains("E")) return false;
+		try {
+			Integer.parseInt(number);
+			return true;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	protected static boolean isByteArray(JsonArray array) {
+		if (array.size() < MIN_BLOCK_SIZE) return false;
+		for (JsonElement element : array) {
+			if (!isInt(element)) return false;
+			int value = element.getAsInt();
+			if (value < Byte.MIN_VALUE || value > Byte.MAX_VALUE) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Collects the strings, payloads and raw data blocks while writing an binary file.
+	 */
+	protected static class BinaryCircuitWriter {
+
+		protected final List<String> strings = new ArrayList<>();
+		protected final Map<String, Integer> stringIndices = new HashMap<>();
+		protected final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		protected final DataOutputStream payloadData = new DataOutputStream(this.payload);
+		protected final ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+
+		public int stringIndex(String string) {
+			Integer index = this.stringIndices.get(string);
+			if (index == null) {
+				index = this.strings.size();
+				this.strings.add(string);
+				this.stringIndices.put(string, index);
+			}
+			return index;
+		}
+
+		public int writePayload(JsonObject json) throws IOException {
+			int start = this.payload.size();
+			writeValue(json);
+			return this.payload.size() - start;
+		}
+
+		public void writeValue(JsonElement element) throws IOException {
+			if (element == null || element.isJsonNull()) {
+				this.payloadData.writeByte(TAG_NULL);
+			} else if (element.isJsonObject()) {
+				JsonObject object = element.getAsJsonObject();
+				this.payloadData.writeByte(TAG_OBJECT);
+				this.payloadData.writeInt(object.size());
+				for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+					this.payloadData.writeInt(stringIndex(entry.getKey()));
+					writeValue(entry.getValue());
+				}
+			} else if (element.isJsonArray()) {
+				JsonArray array = element.getAsJsonArray();
+				if (isByteArray(array)) {
+					int padding = align(this.blocks.size()) - this.blocks.size();
+					for (int i = 0; i < padding; i++) this.blocks.write(0);
+					this.payloadData.writeByte(TAG_BLOCK);
+					this.payloadData.writeInt(this.blocks.size());
+					this.payloadData.writeInt(array.size());
+					for (JsonElement value : array) this.blocks.write(value.getAsInt());
+				} else {
+					this.payloadData.writeByte(TAG_ARRAY);
+					this.payloadData.writeInt(array.size());
+					for (JsonElement value : array) writeValue(value);
+				}
+			} else {
+				JsonPrimitive primitive = element.getAsJsonPrimitive();
+				if (primitive.isBoolean()) {
+					this.payloadData.writeByte(primitive.getAsBoolean() ? TAG_TRUE : TAG_FALSE);
+				} else if (primitive.isString()) {
+					this.payloadData.writeByte(TAG_STRING);
+					this.payloadData.writeInt(stringIndex(primitive.getAsString()));
+				} else if (isInt(primitive)) {
+					this.payloadData.writeByte(TAG_INT);
+					this.payloadData.writeInt(primitive.getAsInt());
+				} else {
+					String number = primitive.getAsString();
+					try {
+						long value = Long.parseLong(number);
+						this.payloadData.writeByte(TAG_LONG);
+						this.payloadData.writeLong(value);
+					} catch (NumberFormatException e) {
+						this.payloadData.writeByte(TAG_DOUBLE);
+						this.payloadData.writeDouble(primitive.getAsDouble());
+					}
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * Reads an binary file.
+	 * The whole file is read into an heap buffer and the file channel is closed again, so the file is not locked and can be overwritten while the reader is still used.
+	 */
+	public static class BinaryCircuitReader {
+
+		protected final ByteBuffer buffer;
+		protected final String[] strings;
+		protected final int componentTableOffset;
+		protected final int componentCount;
+		protected final int settingsOffset;
+		protected final int payloadOffset;
+		protected final int blockOffset;
+
+		public BinaryCircuitReader(File file) throws IOException {
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				long size = channel.size();
+				if (size > Integer.MAX_VALUE) throw new IOException("Binary circuit file '" + file + "' is too large!");
+				this.buffer = ByteBuffer.allocate((int) size);
+				while (this.buffer.hasRemaining()) {
+					if (channel.read(this.buffer) < 0) throw new IOException("Binary circuit file '" + file + "' ended unexpectedly!");
+				}
+				this.buffer.flip();
+			}
+			if (this.buffer.capacity() < HEADER_SIZE || this.buffer.getInt(0) != MAGIC) throw new IOException("File '" + file + "' is not an binary circuit file!");
+			short version = this.buffer.getShort(4);
+			if (version > FORMAT_VERSION) throw new IOException("Binary circuit file '" + file + "' has version " + version + ", only versions up to " + FORMAT_VERSION + " are supported!");
+
+			int stringTableOffset = this.buffer.getInt(8);
+			this.strings = new String[this.buffer.getInt(12)];
+			this.componentTableOffset = this.buffer.getInt(16);
+			this.componentCount = this.buffer.getInt(20);
+			this.settingsOffset = this.buffer.getInt(24);
+			this.payloadOffset = this.buffer.getInt(32);
+			this.blockOffset = this.buffer.getInt(36);
+
+			ByteBuffer stringTable = this.buffer.duplicate().position(stringTableOffset);
+			for (int i = 0; i < this.strings.length; i++) {
+				byte[] bytes = new byte[stringTable.getInt()];
+				stringTable.get(bytes);
+				this.strings[i] = new String(bytes, StandardCharsets.UTF_8);
+			}
+		}
+
+		public int getComponentCount() {
+			return this.componentCount;
+		}
+
+		public String getComponentClassName(int component) {
+			return this.strings[this.buffer.getInt(this.componentTableOffset + component * COMPONENT_RECORD_SIZE)];
+		}
+
+		public JsonObject readSettings() {
+			return readValue(this.buffer.duplicate().position(this.settingsOffset), null).getAsJsonObject();
+		}
+
+		/**
+		 * Reads the JSON entries of an component, excluding its class name.
+		 * If rawData is not null, top level raw data blocks are put into it as slices of the read file instead of being converted to JSON arrays.
+		 */
+		public JsonObject readComponent(int component, Map<String, ByteBuffer> rawData) {
+			int record = this.componentTableOffset + component * COMPONENT_RECORD_SIZE;
+			int flags = this.buffer.getInt(record + 20);
+			ByteBuffer payload = this.buffer.duplicate().position(this.payloadOffset + this.buffer.getInt(record + 12));
+			JsonObject json = readValue(payload, rawData).getAsJsonObject();
+			if ((flags & RECORD_FLAG_POSITION) != 0) {
+				json.addProperty("x", this.buffer.getInt(record + 4));
+				json.addProperty("y", this.buffer.getInt(record + 8));
+			}
+			return json;
+		}
+
+		protected JsonElement readValue(ByteBuffer payload, Map<String, ByteBuffer> rawData) {
+			byte tag = payload.get();
+			switch (tag) {
+			case TAG_NULL: return JsonNull.INSTANCE;
+			case TAG_FALSE: return new JsonPrimitive(false);
+			case TAG_TRUE: return new JsonPrimitive(true);
+			case TAG_INT: return new JsonPrimitive(payload.getInt());
+			case TAG_LONG: return new JsonPrimitive(payload.getLong());
+			case TAG_DOUBLE: return new JsonPrimitive(payload.getDouble());
+			case TAG_STRING: return new JsonPrimitive(this.strings[payload.getInt()]);
+			case TAG_ARRAY:
+				int length = payload.getInt();
+				JsonArray array = new JsonArray(length);
+				for (int i = 0; i < length; i++) array.add(readValue(payload, null));
+				return array;
+			case TAG_OBJECT:
+				int size = payload.getInt();
+				JsonObject object = new JsonObject();
+				for (int i = 0; i < size; i++) {
+					String key = this.strings[payload.getInt()];
+					if (rawData != null && payload.get(payload.position()) == TAG_BLOCK) {
+						payload.get();
+						rawData.put(key, readBlock(payload));
+					} else {
+						object.add(key, readValue(payload, null));
+					}
+				}
+				return object;
+			case TAG_BLOCK:
+				ByteBuffer block = readBlock(payload);
+				JsonArray blockArray = new JsonArray(block.remaining());
+				while (block.hasRemaining()) blockArray.add(block.get());
+				return blockArray;
+			default: throw new IllegalStateException("Invalid value tag " + tag + " at " + (payload.position() - 1) + "!");
+			}
+		}
+
+		protected ByteBuffer readBlock(ByteBuffer payload) {
+			int offset = payload.getInt();
+			int length = payload.getInt();
+			return this.buffer.slice(this.blockOffset + offset, length);
+		}
+
+	}
+
+}
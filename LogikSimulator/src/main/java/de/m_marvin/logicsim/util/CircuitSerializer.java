@@ -1,27 +1,37 @@
 package de.m_marvin.logicsim.util;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
 import de.m_marvin.logicsim.LogicSim;
 import de.m_marvin.logicsim.logic.Circuit;
 import de.m_marvin.logicsim.logic.Circuit.ShortCircuitType;
+import de.m_marvin.logicsim.logic.Circuit.UpdateMode;
 import de.m_marvin.logicsim.logic.Component;
+import de.m_marvin.logicsim.logic.simulator.LaneTable;
 import de.m_marvin.logicsim.ui.windows.Editor;
 import de.m_marvin.univec.impl.Vec2i;
 
@@ -29,6 +39,60 @@ public class CircuitSerializer {
 	
 	public static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
 	
+	/**
+	 * Statistics of loading an circuit file, used to estimate the required heap and load times of large circuits.
+	 */
+	public static record LoadStatistics(long bytesRead, int componentCount, long loadTime) {
+		public double getBytesPerSecond() {
+			return this.loadTime > 0 ? this.bytesRead / (this.loadTime / 1000000000.0) : 0;
+		}
+		public double getComponentsPerSecond() {
+			return this.loadTime > 0 ? this.componentCount / (this.loadTime / 1000000000.0) : 0;
+		}
+		@Override
+		public String toString() {
+			return String.format("Loaded %d components from %d bytes in %d ms (%.0f components/s, %.2f MB/s)", this.componentCount, this.bytesRead, this.loadTime / 1000000, getComponentsPerSecond(), getBytesPerSecond() / 1000000.0);
+		}
+	}
+	
+	/**
+	 * Counts the bytes read from the underlying stream.
+	 */
+	protected static class CountingInputStream extends FilterInputStream {
+		
+		protected long bytesRead;
+		
+		public CountingInputStream(InputStream stream) {
+			super(stream);
+		}
+		
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1) this.bytesRead++;
+			return b;
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0) this.bytesRead += n;
+			return n;
+		}
+		
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			this.bytesRead += skipped;
+			return skipped;
+		}
+		
+		public long getBytesRead() {
+			return this.bytesRead;
+		}
+		
+	}
+	
 	public static String serializeComponents(List<Component> components, Vec2i referencePos) {
 
 		JsonArray json = new JsonArray();
@@ -64,7 +128,7 @@ public class CircuitSerializer {
 			} catch (Exception e) {
 				System.err.println("Failed to load component '" + componentJson.toString() + "'");
 				e.printStackTrace();
-				Editor parentWindow = LogicSim.getInstance().getLastInteractedEditor();
+				Editor parentWindow = LogicSim.getInstance() != null ? LogicSim.getInstance().getLastInteractedEditor() : null;
 				if (parentWindow != null) Editor.showErrorInfo(parentWindow.getShell(), "editor.window.error.parse_file", e);
 			}
 		});
@@ -75,16 +139,40 @@ public class CircuitSerializer {
 	
 	public static void saveCircuit(Circuit circuit, File file) throws IOException {
 		if (!file.equals(circuit.getCircuitFile())) circuit.setCircuitFile(file);
-		serializeCircuit(circuit, new FileOutputStream(file));
+		if (LogicSim.isBinaryCircuitFile(file)) {
+			BinaryCircuitSerializer.saveCircuit(circuit, file);
+		} else {
+			serializeCircuit(circuit, new FileOutputStream(file));
+		}
 	}
 	
 	public static Circuit loadCircuit(File file) throws IOException {
-		Circuit circuit = new Circuit();
+		return loadCircuit(file, null);
+	}
+	
+	/**
+	 * Loads the circuit file and passes the load statistics to the consumer, if not null.
+	 */
+	public static Circuit loadCircuit(File file, Consumer<LoadStatistics> statisticsConsumer) throws IOException {
+		return loadCircuit(file, new LaneTable(), statisticsConsumer);
+	}
+	
+	/**
+	 * Loads the circuit file into an circuit using the given lane table, used to load sub-circuits which use the lane table of their parent circuit.
+	 */
+	public static Circuit loadCircuit(File file, LaneTable laneTable, Consumer<LoadStatistics> statisticsConsumer) throws IOException {
+		Circuit circuit = new Circuit(false, laneTable);
 		circuit.setCircuitFile(file);
 		try {
-			deserializeCircuit(circuit, new FileInputStream(file));
+			LoadStatistics statistics;
+			if (BinaryCircuitSerializer.isBinaryCircuitFile(file)) {
+				statistics = BinaryCircuitSerializer.deserializeCircuit(circuit, file);
+			} else {
+				statistics = deserializeCircuit(circuit, new FileInputStream(file));
+			}
+			if (statisticsConsumer != null) statisticsConsumer.accept(statistics);
 		} catch (Exception e) {
-			Editor editorWindow = LogicSim.getInstance().getLastInteractedEditor();
+			Editor editorWindow = LogicSim.getInstance() != null ? LogicSim.getInstance().getLastInteractedEditor() : null;
 			if (editorWindow != null) Editor.showErrorInfo(editorWindow.getShell(), "editor.window.error.failed_load_circuit", e);
 			System.err.println("Failed to load circuit from file '" + file + "'!");
 			e.printStackTrace();
@@ -99,40 +187,187 @@ public class CircuitSerializer {
 		writer.close();
 	}
 	
-	public static void deserializeCircuit(Circuit circuit, InputStream stream) throws IOException {
-		BufferedReader reader = new BufferedReader(new InputStreamReader(stream));
-		String line;
-		StringBuilder sb = new StringBuilder();
-		while ((line = reader.readLine()) != null) sb.append(line);
-		reader.close();
+	/**
+	 * Loads the circuit while reading the stream, without building an JSON tree of the whole file.
+	 * Each component is created as soon as its JSON object has been read, arrays of byte values (like the data of memory components) are read directly into byte arrays.
+	 * The stream gets closed after reading.
+	 */
+	public static LoadStatistics deserializeCircuit(Circuit circuit, InputStream stream) throws IOException {
+		
+		long loadStart = System.nanoTime();
+		CountingInputStream countingStream = new CountingInputStream(stream);
+		JsonObject settings = new JsonObject();
+		List<Component> componentList = new ArrayList<>();
+		
+		try (JsonReader reader = new JsonReader(new InputStreamReader(countingStream))) {
+			reader.setLenient(true);
+			reader.beginObject();
+			while (reader.hasNext()) {
+				String name = reader.nextName();
+				if (!name.equals("components")) {
+					settings.add(name, JsonParser.parseReader(reader));
+					continue;
+				}
+				reader.beginArray();
+				while (reader.hasNext()) {
+					Component component = readComponent(circuit, reader);
+					if (component != null) componentList.add(component);
+				}
+				reader.endArray();
+			}
+			reader.endObject();
+		}
+		
+		deserializeCircuitSettings(circuit, settings);
+		circuit.connectAll(componentList);
+		
+		return new LoadStatistics(countingStream.getBytesRead(), componentList.size(), System.nanoTime() - loadStart);
 		
-		JsonObject json = GSON.fromJson(sb.toString(), JsonObject.class);
-		deserializeCircuit(circuit, json);
 	}
 	
-	public static void deserializeCircuit(Circuit circuit, JsonObject json) {
+	protected static Component readComponent(Circuit circuit, JsonReader reader) throws IOException {
+		JsonObject componentJson = new JsonObject();
+		Map<String, ByteBuffer> rawData = new HashMap<>();
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+				readArray(reader, name, componentJson, rawData);
+			} else {
+				componentJson.add(name, JsonParser.parseReader(reader));
+			}
+		}
+		reader.endObject();
 		
+		try {
+			String componentClassName = componentJson.get("id").getAsString();
+			return deserializeComponent(circuit, componentClassName, componentJson, rawData);
+		} catch (Exception e) {
+			System.err.println("Failed to load component '" + componentJson.toString() + "'");
+			Editor parentWindow = LogicSim.getInstance() != null ? LogicSim.getInstance().getLastInteractedEditor() : null;
+			if (parentWindow != null) Editor.showErrorInfo(parentWindow.getShell(), "editor.window.error.parse_file", e);
+			e.printStackTrace();
+			return null;
+		}
+	}
+	
+	/**
+	 * Reads an array into an byte array as long as it only contains byte values, and falls back to an JSON array at the first other value.
+	 */
+	protected static void readArray(JsonReader reader, String name, JsonObject json, Map<String, ByteBuffer> rawData) throws IOException {
+		byte[] bytes = new byte[64];
+		int length = 0;
+		reader.beginArray();
+		while (reader.hasNext()) {
+			if (reader.peek() == JsonToken.NUMBER) {
+				String number = reader.nextString();
+				int value = parseByte(number);
+				if (value != Integer.MIN_VALUE) {
+					if (length == bytes.length) {
+						byte[] newBytes = new byte[bytes.length * 2];
+						System.arraycopy(bytes, 0, newBytes, 0, length);
+						bytes = newBytes;
+					}
+					bytes[length++] = (byte) value;
+					continue;
+				}
+				JsonArray array = toJsonArray(bytes, length);
+				array.add(JsonParser.parseString(number));
+				readRemaining(reader, array);
+				json.add(name, array);
+				return;
+			}
+			JsonArray array = toJsonArray(bytes, length);
+			readRemaining(reader, array);
+			json.add(name, array);
+			return;
+		}
+		reader.endArray();
+		if (length > 0) {
+			rawData.put(name, ByteBuffer.wrap(bytes, 0, length));
+		} else {
+			json.add(name, new JsonArray());
+		}
+	}
+	
+	protected static void readRemaining(JsonReader reader, JsonArray array) throws IOException {
+		while (reader.hasNext()) array.add(JsonParser.parseReader(reader));
+		reader.endArray();
+	}
+	
+	protected static JsonArray toJsonArray(byte[] bytes, int length) {
+		JsonArray array = new JsonArray(length);
+		for (int i = 0; i < length; i++) array.add(bytes[i]);
+		return array;
+	}
+	
+	/**
+	 * Returns the value if the number is an integer in the range of an byte, and Integer.MIN_VALUE otherwise.
+	 */
+	protected static int parseByte(String number) {
+		if (number.length() > 4) return Integer.MIN_VALUE;
+		try {
+			int value = Integer.parseInt(number);
+			return value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE ? value : Integer.MIN_VALUE;
+		} catch (NumberFormatException e) {
+			return Integer.MIN_VALUE;
+		}
+	}
+	
+	public static JsonObject readCircuitJson(InputStream stream) throws IOException {
+		try (InputStreamReader reader = new InputStreamReader(stream)) {
+			return JsonParser.parseReader(reader).getAsJsonObject();
+		}
+	}
+	
+	public static void deserializeCircuitSettings(Circuit circuit, JsonObject json) {
 		circuit.setShortCircuitMode(ShortCircuitType.valueOf(json.get("shortCircuitType").getAsString()));
+		if (json.has("updateMode")) circuit.setUpdateMode(UpdateMode.valueOf(json.get("updateMode").getAsString()));
+		if (json.has("partitionCount")) circuit.setPartitionCount(json.get("partitionCount").getAsInt());
+	}
+	
+	/**
+	 * Creates an component of the given class, reads its data and adds it to the circuit.
+	 * @param rawData Raw data blocks read from an binary circuit file, or null
+	 */
+	public static Component deserializeComponent(Circuit circuit, String componentClassName, JsonObject json, Map<String, ByteBuffer> rawData) throws ReflectiveOperationException {
+		@SuppressWarnings("unchecked")
+		Class<? extends Component> componentClass = (Class<? extends Component>) Class.forName(componentClassName);
+		Component component = componentClass.getConstructor(Circuit.class).newInstance(circuit);
+		if (rawData != null) {
+			for (Map.Entry<String, ByteBuffer> entry : rawData.entrySet()) {
+				if (!component.deserializeRawData(entry.getKey(), entry.getValue().duplicate())) {
+					JsonArray array = new JsonArray(entry.getValue().remaining());
+					for (int i = entry.getValue().position(); i < entry.getValue().limit(); i++) array.add(entry.getValue().get(i));
+					json.add(entry.getKey(), array);
+				}
+			}
+		}
+		component.deserialize(json);
+		circuit.add(component);
+		return component;
+	}
+	
+	public static void deserializeCircuit(Circuit circuit, JsonObject json) {
+		
+		deserializeCircuitSettings(circuit, json);
 		
 		JsonArray components = json.get("components").getAsJsonArray();
+		List<Component> componentList = new ArrayList<>(components.size());
 		
 		components.forEach(componentJson -> {
 			try {
 				String componentClassName = componentJson.getAsJsonObject().get("id").getAsString();
-				@SuppressWarnings("unchecked")
-				Class<? extends Component> componentClass = (Class<? extends Component>) Class.forName(componentClassName);
-				Component component = componentClass.getConstructor(Circuit.class).newInstance(circuit);
-				component.deserialize(componentJson.getAsJsonObject());
-				circuit.add(component);
+				componentList.add(deserializeComponent(circuit, componentClassName, componentJson.getAsJsonObject(), null));
 			} catch (Exception e) {
 				System.err.println("Failed to load component '" + componentJson.toString() + "'");
-				Editor parentWindow = LogicSim.getInstance().getLastInteractedEditor();
+				Editor parentWindow = LogicSim.getInstance() != null ? LogicSim.getInstance().getLastInteractedEditor() : null;
 				if (parentWindow != null) Editor.showErrorInfo(parentWindow.getShell(), "editor.window.error.parse_file", e);
 				e.printStackTrace();
 			}
 		});
 		
-		circuit.getComponents().forEach(component -> circuit.reconnect(false, component));
+		circuit.connectAll(componentList);
 		
 	}
 	
@@ -141,6 +376,8 @@ public class CircuitSerializer {
 		JsonObject json = new JsonObject();
 		
 		json.addProperty("shortCircuitType", circuit.getShortCircuitMode().toString());
+		json.addProperty("updateMode", circuit.getUpdateMode().toString());
+		json.addProperty("partitionCount", circuit.getPartitionCount());
 		
 		JsonArray components = new JsonArray();
 		
@@ -0,0 +1,107 @@
+package de.m_marvin.logicsim.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.JsonObject;
+
+import de.m_marvin.logicsim.LogicSim;
+import de.m_marvin.logicsim.logic.Circuit;
+import de.m_marvin.logicsim.logic.Component;
+import de.m_marvin.logicsim.logic.simulator.LaneTable;
+import de.m_marvin.logicsim.ui.windows.Editor;
+
+/**
+ * Caches the circuits loaded as sub-circuits, so that every circuit file is only read and parsed once, even if it is placed many times.
+ * The cache holds an connected template circuit for each file, keyed by its canonical path and modification time.
+ * New instances are created from the data of the template components, and get their networks copied from the template instead of connecting all nodes again.
+ *
+ * @author Marvin K.
+ *
+ */
+public class CircuitTemplateCache {
+
+	protected static record CircuitTemplate(long lastModified, Circuit circuit, List<String> componentClasses, List<JsonObject> componentData) {}
+
+	protected static final Map<String, CircuitTemplate> templates = new HashMap<>();
+	protected static long hitCount;
+	protected static long missCount;
+
+	/**
+	 * Returns an new instance of the circuit stored in the file.
+	 * The file is only loaded if it is not cached yet or has been modified since it was cached.
+	 * 
+	 * @param laneTable The lane table of the new instance, the table of the circuit the instance gets placed in
+	 */
+	public static synchronized Circuit instantiate(File circuitFile, LaneTable laneTable) throws IOException {
+		if (!circuitFile.isFile()) return CircuitSerializer.loadCircuit(circuitFile, laneTable, null);
+
+		String path = circuitFile.getCanonicalPath();
+		long lastModified = circuitFile.lastModified();
+		CircuitTemplate template = templates.get(path);
+		if (template == null || template.lastModified() != lastModified) {
+			missCount++;
+			template = createTemplate(circuitFile, lastModified);
+			templates.put(path, template);
+		} else {
+			hitCount++;
+		}
+
+		Circuit circuit = new Circuit(false, laneTable);
+		circuit.setCircuitFile(circuitFile);
+		circuit.setShortCircuitMode(template.circuit().getShortCircuitMode());
+		circuit.setUpdateMode(template.circuit().getUpdateMode());
+		circuit.setPartitionCount(template.circuit().getPartitionCount());
+
+		for (int i = 0; i < template.componentData().size(); i++) {
+			try {
+				CircuitSerializer.deserializeComponent(circuit, template.componentClasses().get(i), template.componentData().get(i), null);
+			} catch (Exception e) {
+				System.err.println("Failed to copy component '" + template.componentData().get(i) + "'");
+				Editor parentWindow = LogicSim.getInstance() != null ? LogicSim.getInstance().getLastInteractedEditor() : null;
+				if (parentWindow != null) Editor.showErrorInfo(parentWindow.getShell(), "editor.window.error.parse_file", e);
+				e.printStackTrace();
+			}
+		}
+
+		circuit.copyNetworks(template.circuit());
+		return circuit;
+	}
+
+	protected static CircuitTemplate createTemplate(File circuitFile, long lastModified) throws IOException {
+		Circuit circuit = CircuitSerializer.loadCircuit(circuitFile);
+		List<String> componentClasses = new ArrayList<>(circuit.getComponents().size());
+		List<JsonObject> componentData = new ArrayList<>(circuit.getComponents().size());
+		for (Component component : circuit.getComponents()) {
+			JsonObject json = new JsonObject();
+			component.serialize(json);
+			componentClasses.add(component.getClass().getName());
+			componentData.add(json);
+		}
+		return new CircuitTemplate(lastModified, circuit, componentClasses, componentData);
+	}
+
+	/**
+	 * Removes all templates, the files get loaded again on the next access.
+	 */
+	public static synchronized void clear() {
+		templates.clear();
+	}
+
+	public static synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public static synchronized long getMissCount() {
+		return missCount;
+	}
+
+	public static synchronized int getTemplateCount() {
+		return templates.size();
+	}
+
+}
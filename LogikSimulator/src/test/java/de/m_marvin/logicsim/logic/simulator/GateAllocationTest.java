@@ -0,0 +1,67 @@
+package de.m_marvin.logicsim.logic.simulator;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import com.sun.management.ThreadMXBean;
+
+import de.m_marvin.logicsim.benchmark.SyntheticCircuits;
+import de.m_marvin.logicsim.benchmark.SyntheticCircuits.SyntheticCircuit;
+import de.m_marvin.logicsim.logic.Circuit;
+import de.m_marvin.logicsim.logic.Circuit.UpdateMode;
+import de.m_marvin.logicsim.logic.simulator.CircuitProcessor.ExecutionBackend;
+
+/**
+ * Checks in the normal build that the ticks of an circuit made only of gates do not allocate memory, the same check as the GateAllocationBenchmark without the benchmark harness.
+ * The input of the gate chain changes every tick, so every gate changes its output in every tick.
+ * The circuit is simulated until the code is compiled by the JIT, then the allocated bytes of all measured ticks together have to stay below {@link #ALLOCATION_ALLOWANCE}.
+ *
+ * @author Marvin K.
+ *
+ */
+public class GateAllocationTest {
+
+	/** The bytes the measurement itself may allocate, independent of the number of ticks */
+	public static final long ALLOCATION_ALLOWANCE = 4096;
+	public static final int CIRCUIT_SIZE = 256;
+	public static final int WARMUP_TICKS = 20000;
+	public static final int MEASURED_TICKS = 10000;
+
+	@ParameterizedTest
+	@EnumSource(UpdateMode.class)
+	public void gateTicksDoNotAllocate(UpdateMode updateMode) {
+		ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+		SyntheticCircuit synthetic = SyntheticCircuits.gateChain(CIRCUIT_SIZE);
+		for (Circuit circuit : synthetic.getAllCircuits()) {
+			circuit.setUpdateMode(updateMode);
+			circuit.setPartitionCount(1);
+		}
+		
+		CircuitProcessor processor = new CircuitProcessor(ExecutionBackend.SYNCHRONOUS);
+		try {
+			processor.addProcess(null, synthetic.circuit);
+			processor.start();
+			
+			int tick = 0;
+			for (; tick < WARMUP_TICKS; tick++) {
+				synthetic.stimulate(tick);
+				processor.tick();
+			}
+			long startBytes = threadBean.getCurrentThreadAllocatedBytes();
+			for (; tick < WARMUP_TICKS + MEASURED_TICKS; tick++) {
+				synthetic.stimulate(tick);
+				processor.tick();
+			}
+			long allocatedBytes = threadBean.getCurrentThreadAllocatedBytes() - startBytes;
+			
+			assertTrue(allocatedBytes <= ALLOCATION_ALLOWANCE, "Gate circuit allocated " + allocatedBytes + " bytes in " + MEASURED_TICKS + " ticks in the " + updateMode + " mode!");
+		} finally {
+			processor.terminate();
+		}
+	}
+
+}